@@ -0,0 +1,42 @@
+// JMH benchmarks for each phase of running a program: lexing, parsing and execution.
+// Run all of them with `./gradlew :benchmarks:jmh`, or a subset with e.g.
+// `./gradlew :benchmarks:jmh -Pjmh.includes=ExecuteBenchmark`.
+// Results, including the allocation rate from the GC profiler, are written to
+// benchmarks/build/results/jmh/results.json.
+plugins {
+    java
+    id("me.champeau.jmh") version "0.7.3"
+}
+
+repositories {
+    mavenCentral()
+}
+
+java {
+    toolchain {
+        languageVersion = JavaLanguageVersion.of(21)
+    }
+}
+
+dependencies {
+    jmh(rootProject)
+}
+
+// The example programs are benchmark inputs, loaded as resources.
+sourceSets.named("jmh") {
+    resources.srcDir(rootProject.file("examples"))
+}
+
+jmh {
+    jmhVersion = "1.37"
+    fork = 1
+    warmupIterations = 3
+    warmup = "1s"
+    iterations = 5
+    timeOnIteration = "1s"
+    benchmarkMode = listOf("thrpt")
+    timeUnit = "s"
+    profilers = listOf("gc")
+    resultFormat = "JSON"
+    providers.gradleProperty("jmh.includes").orNull?.let { includes = listOf(it) }
+}
@@ -0,0 +1,114 @@
+import benchmark.Phases;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Implements the benchmark phases on the interpreter (see benchmark.Phases).
+public class PhaseDriver implements Phases {
+    @Override
+    public int lex(String source) {
+        Lexer lexer = new Lexer(source);
+        int tokens = 0;
+        while (lexer.nextToken() != TokenType.EOF) {
+            tokens++;
+        }
+        return tokens;
+    }
+
+    @Override
+    public void parse(String source, Consumer<Object> statements) {
+        Parser parser = new Parser(new Lexer(source));
+        while (!parser.isAtEnd()) {
+            statements.accept(parser.parseStatement());
+        }
+    }
+
+    @Override
+    public void parseParallel(String source, Consumer<Object> statements) {
+        ParallelParser.parse(source, statements::accept);
+    }
+
+    @Override
+    public Runnable prepare(String source, String mode) {
+        ExecutionMode executionMode = ExecutionMode.valueOf(mode);
+        Resolver resolver = new Resolver();
+        List<Node> statements = resolve(source, resolver);
+        statements = new Optimizer().optimize(statements);
+        statements = new LoopOptimizer(resolver, executionMode == ExecutionMode.JIT,
+                executionMode.exactArithmetic()).optimize(statements);
+        if (executionMode.executesNodes()) {
+            statements.replaceAll(new Fuser()::fuse);
+        }
+        return runner(executionMode, resolver, statements);
+    }
+
+    @Override
+    public Runnable prepareUnoptimized(String source, String mode) {
+        Resolver resolver = new Resolver();
+        return runner(ExecutionMode.valueOf(mode), resolver, resolve(source, resolver));
+    }
+
+    @Override
+    public Supplier<Object> prepareFlatten(String source) {
+        List<Node> statements = resolve(source, new Resolver());
+        return () -> FlatAst.flatten(statements);
+    }
+
+    @Override
+    public Footprint footprint(String source) {
+        long baseline = usedHeap();
+        List<Node> statements = resolve(source, new Resolver());
+        long treeBytes = usedHeap() - baseline;
+        FlatAst flat = FlatAst.flatten(statements);
+        long flatBytes = usedHeap() - baseline - treeBytes;
+        // Keep the tree reachable until the heap has been measured.
+        Reference.reachabilityFence(statements);
+        return new Footprint(flat.nodeCount(), treeBytes, flatBytes);
+    }
+
+    // Returns the heap in use after collecting garbage.
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    // Parses a program and resolves each statement.
+    // @param source The program.
+    // @param resolver The resolver to resolve the statements with.
+    // @return The top-level statements.
+    private static List<Node> resolve(String source, Resolver resolver) {
+        Parser parser = new Parser(new Lexer(source));
+        List<Node> statements = new ArrayList<>();
+        while (!parser.isAtEnd()) {
+            Node statement = parser.parseStatement();
+            resolver.resolve(statement);
+            statements.add(statement);
+        }
+        return statements;
+    }
+
+    // Returns a Runnable that runs prepared statements on one engine of a mode.
+    private static Runnable runner(ExecutionMode executionMode, Resolver resolver, List<Node> statements) {
+        // Every run declares the program's variables again, so runs do not depend on each other.
+        ExecutionEngine engine = executionMode.create(resolver, new DiscardingSink());
+        // The flat engine runs the program flattened once, as it would be for a large program.
+        if (engine instanceof FlatInterpreter flat) {
+            FlatAst program = FlatAst.flatten(statements);
+            return () -> flat.run(program);
+        }
+        List<Node> program = statements;
+        return () -> {
+            for (Node statement : program) {
+                engine.execute(statement);
+            }
+        };
+    }
+}
@@ -0,0 +1,31 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Measures executing programs that use arrays, which only the tree and jit modes support. The
+// "sieve" array is backed by an int[]; the "large-array" one is off the heap, and its accesses
+// skip their bounds checks after the check hoisted out of each loop.
+@State(Scope.Benchmark)
+public class ArrayBenchmark {
+    @Param({"sieve", "large-array"})
+    public String program;
+
+    @Param({"TREE", "JIT"})
+    public String mode;
+
+    private Runnable run;
+
+    @Setup
+    public void setUp() {
+        run = Phases.load().prepare(Programs.source(program), mode);
+    }
+
+    @Benchmark
+    public void execute() {
+        run.run();
+    }
+}
@@ -0,0 +1,34 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Measures executing a parsed, resolved and optimized program on each execution engine, with the
+// output discarded. The engine and the program are set up once per trial, so the measurement
+// shows the steady state: statements the bytecode and closure engines compile on each run are
+// compiled inside the measurement, and loops the JIT has compiled stay compiled.
+@State(Scope.Benchmark)
+public class ExecuteBenchmark {
+    @Param({"factorial", "fibonacci", "gcd", "is_palindrome", "is_prime", "largest_digit",
+            "multiplication_table", "reverse_number", "sum_first_n", "sum_of_digits", "test",
+            "straight-line", "nested-loops", "long-loop"})
+    public String program;
+
+    @Param({"TREE", "JIT", "BYTECODE", "CLOSURE", "SPECIALIZING", "FLAT"})
+    public String mode;
+
+    private Runnable run;
+
+    @Setup
+    public void setUp() {
+        run = Phases.load().prepare(Programs.source(program), mode);
+    }
+
+    @Benchmark
+    public void execute() {
+        run.run();
+    }
+}
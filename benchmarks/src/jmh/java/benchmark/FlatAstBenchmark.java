@@ -0,0 +1,56 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.function.Supplier;
+
+// Compares the flattened AST (FlatAst) with the object tree on the "large-body" program, whose
+// loop body has too many nodes for the CPU caches. execute runs the program on the tree-walking
+// Interpreter and on the FlatInterpreter; neither form is optimized or fused, so both engines
+// execute the same nodes. flatten measures building the FlatAst from the tree. The heap each form
+// takes up is printed once per trial.
+@State(Scope.Benchmark)
+public class FlatAstBenchmark {
+    private Phases phases;
+    private String source;
+    private Supplier<Object> flatten;
+
+    // The engine that executes the program.
+    @State(Scope.Benchmark)
+    public static class Engine {
+        @Param({"TREE", "FLAT"})
+        public String mode;
+
+        private Runnable run;
+
+        @Setup
+        public void setUp(FlatAstBenchmark benchmark) {
+            run = benchmark.phases.prepareUnoptimized(benchmark.source, mode);
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        phases = Phases.load();
+        source = Programs.source("large-body");
+        flatten = phases.prepareFlatten(source);
+        Phases.Footprint footprint = phases.footprint(source);
+        System.out.printf("%nHeap: tree %.1f MB (%.1f bytes/node), flat %.1f MB (%.1f bytes/node), %d nodes%n",
+                footprint.treeBytes() / 1e6, (double) footprint.treeBytes() / footprint.nodes(),
+                footprint.flatBytes() / 1e6, (double) footprint.flatBytes() / footprint.nodes(), footprint.nodes());
+    }
+
+    @Benchmark
+    public void execute(Engine engine) {
+        engine.run.run();
+    }
+
+    @Benchmark
+    public Object flatten() {
+        return flatten.get();
+    }
+}
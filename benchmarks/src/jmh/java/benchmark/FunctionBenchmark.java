@@ -0,0 +1,31 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Measures executing programs that call functions, which only the tree and jit modes support.
+// "tail-calls" runs a million calls in one reused frame; "recursion" nests calls, each in the
+// preallocated frame of its depth.
+@State(Scope.Benchmark)
+public class FunctionBenchmark {
+    @Param({"tail-calls", "recursion"})
+    public String program;
+
+    @Param({"TREE", "JIT"})
+    public String mode;
+
+    private Runnable run;
+
+    @Setup
+    public void setUp() {
+        run = Phases.load().prepare(Programs.source(program), mode);
+    }
+
+    @Benchmark
+    public void execute() {
+        run.run();
+    }
+}
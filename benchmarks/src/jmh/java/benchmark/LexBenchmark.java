@@ -0,0 +1,30 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Measures lexing a whole program, pulling every token from the Lexer.
+@State(Scope.Benchmark)
+public class LexBenchmark {
+    @Param({"factorial", "fibonacci", "gcd", "is_palindrome", "is_prime", "largest_digit",
+            "multiplication_table", "reverse_number", "sum_first_n", "sum_of_digits", "test",
+            "straight-line", "nested-loops", "long-loop"})
+    public String program;
+
+    private Phases phases;
+    private String source;
+
+    @Setup
+    public void setUp() {
+        phases = Phases.load();
+        source = Programs.source(program);
+    }
+
+    @Benchmark
+    public int lex() {
+        return phases.lex(source);
+    }
+}
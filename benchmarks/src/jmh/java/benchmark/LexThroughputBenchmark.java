@@ -0,0 +1,39 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Measures the lexer's throughput on large programs in megabytes per second, reported as the
+// "megabytes" counter next to the number of programs lexed per second.
+@State(Scope.Benchmark)
+public class LexThroughputBenchmark {
+    @Param({"large-program", "straight-line"})
+    public String program;
+
+    private Phases phases;
+    private String source;
+
+    // The megabytes lexed; JMH reports the counter per second.
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Throughput {
+        public double megabytes;
+    }
+
+    @Setup
+    public void setUp() {
+        phases = Phases.load();
+        source = Programs.source(program);
+    }
+
+    @Benchmark
+    public int lex(Throughput throughput) {
+        // The programs are ASCII, one byte per character.
+        throughput.megabytes += source.length() / 1e6;
+        return phases.lex(source);
+    }
+}
@@ -0,0 +1,32 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Measures parsing a whole program with Parser.parseStatement. The parser pulls its tokens from
+// the lexer as it goes, so this includes lexing; compare with LexBenchmark to separate the two.
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+    @Param({"factorial", "fibonacci", "gcd", "is_palindrome", "is_prime", "largest_digit",
+            "multiplication_table", "reverse_number", "sum_first_n", "sum_of_digits", "test",
+            "straight-line", "nested-loops", "long-loop"})
+    public String program;
+
+    private Phases phases;
+    private String source;
+
+    @Setup
+    public void setUp() {
+        phases = Phases.load();
+        source = Programs.source(program);
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        phases.parse(source, blackhole::consume);
+    }
+}
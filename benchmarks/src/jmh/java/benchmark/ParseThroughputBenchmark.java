@@ -0,0 +1,63 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Measures lexing, parsing and parallel parsing throughput on a large program, reported as the
+// "megabytes" and "tokens" counters next to the number of programs processed per second. parse
+// pulls its tokens from the lexer as it goes, so it includes lexing; parseParallel splits the
+// program into sections parsed on the threads of the common ForkJoinPool (see ParallelParser).
+@State(Scope.Benchmark)
+public class ParseThroughputBenchmark {
+    @Param({"many-statements"})
+    public String program;
+
+    private Phases phases;
+    private String source;
+    private int tokens;
+
+    // The megabytes and tokens processed; JMH reports the counters per second.
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Throughput {
+        public double megabytes;
+        public long tokens;
+    }
+
+    @Setup
+    public void setUp() {
+        phases = Phases.load();
+        source = Programs.source(program);
+        tokens = phases.lex(source);
+    }
+
+    @Benchmark
+    public int lex(Throughput throughput) {
+        count(throughput);
+        return phases.lex(source);
+    }
+
+    @Benchmark
+    public void parse(Throughput throughput, Blackhole blackhole) {
+        count(throughput);
+        phases.parse(source, blackhole::consume);
+    }
+
+    @Benchmark
+    public void parseParallel(Throughput throughput, Blackhole blackhole) {
+        count(throughput);
+        phases.parseParallel(source, blackhole::consume);
+    }
+
+    // Adds one program to the counters.
+    private void count(Throughput throughput) {
+        // The programs are ASCII, one byte per character.
+        throughput.megabytes += source.length() / 1e6;
+        throughput.tokens += tokens;
+    }
+}
@@ -0,0 +1,65 @@
+package benchmark;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// The phases of running a program, as seen by the benchmarks. The interpreter lives in the
+// unnamed package, which code in a named package such as this one cannot refer to, and JMH only
+// accepts benchmarks in a named package. So the benchmarks reach the interpreter through this
+// interface, implemented by PhaseDriver in the unnamed package and loaded by name.
+public interface Phases {
+    // Lexes a program to the end.
+    // @param source The program.
+    // @return The number of tokens.
+    int lex(String source);
+
+    // Parses a program to the end, handing each statement to a consumer.
+    // @param source The program.
+    // @param statements Receives each parsed statement.
+    void parse(String source, Consumer<Object> statements);
+
+    // Parses a program with the ParallelParser, on the threads of the common ForkJoinPool.
+    // @param source The program.
+    // @param statements Receives each parsed statement, in source order.
+    void parseParallel(String source, Consumer<Object> statements);
+
+    // Parses, resolves and optimizes a program for an execution mode, as the ScriptRunner does.
+    // @param source The program.
+    // @param mode The name of an ExecutionMode (e.g. "BYTECODE").
+    // @return Runs the whole program on one engine of that mode each time it is called,
+    //         with the output discarded.
+    Runnable prepare(String source, String mode);
+
+    // Parses and resolves a program without optimizing or fusing it, so that the engines of
+    // different modes execute the same nodes.
+    // @param source The program.
+    // @param mode The name of an ExecutionMode (e.g. "FLAT").
+    // @return Runs the whole program on one engine of that mode each time it is called,
+    //         with the output discarded.
+    Runnable prepareUnoptimized(String source, String mode);
+
+    // Parses and resolves a program without optimizing it.
+    // @param source The program.
+    // @return Flattens the program into a new FlatAst each time it is called, and returns it.
+    Supplier<Object> prepareFlatten(String source);
+
+    // The heap a program takes up as a tree of nodes and as a FlatAst, measured after garbage
+    // collections.
+    record Footprint(int nodes, long treeBytes, long flatBytes) {
+    }
+
+    // Parses, resolves and flattens a program, measuring the heap each form takes up.
+    // @param source The program.
+    // @return The number of nodes and the bytes of each form.
+    Footprint footprint(String source);
+
+    // Loads the implementation from the unnamed package.
+    // @return The phases of the interpreter.
+    static Phases load() {
+        try {
+            return (Phases) Class.forName("PhaseDriver").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot load PhaseDriver", e);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+// The benchmark inputs: the programs in examples/, by file name without ".go", and generated
+// programs that scale up one dimension of a program each:
+// - "straight-line": a long program without loops, which stresses the lexer and parser.
+// - "nested-loops": loops nested six deep with a few iterations each.
+// - "long-loop": a single loop running millions of iterations.
+// - "long-operands": a loop whose sum grows past the int range, so the tree-walking Interpreter
+//   computes it with longs (the other engines stop it with an integer overflow).
+// - "huge-operands": factorials far past the long range, computed with BigIntegers.
+// - "sieve": the sieve of Eratosthenes on an array small enough to live on the Java heap.
+// - "large-array": running sums over an array long enough to be stored off the heap.
+// - "tail-calls": a function calling itself a million times in tail position.
+// - "recursion": the naive recursive Fibonacci function, making tens of thousands of calls.
+// - "large-program": several megabytes of functions, loops, arrays and comments, for measuring
+//   the lexer's throughput.
+// - "many-statements": hundreds of thousands of statements mixing declarations, every precedence
+//   level, loops, conditions and prints, large enough for the ParallelParser to split.
+// - "large-body": a loop whose body has hundreds of thousands of statements, too many nodes for
+//   the CPU caches, for comparing the object tree with the FlatAst.
+// Only the tree and jit modes support arrays and functions, so the sieve and large-array programs
+// are measured by ArrayBenchmark, and tail-calls and recursion by FunctionBenchmark. Only the tree
+// mode computes past the int range, so WideArithmeticBenchmark measures long-operands and
+// huge-operands.
+final class Programs {
+    private Programs() {
+    }
+
+    // Returns the source of a benchmark input.
+    // @param name The name of an example or of a generated program.
+    // @return The source code.
+    static String source(String name) {
+        return switch (name) {
+            case "straight-line" -> straightLine(20_000);
+            case "nested-loops" -> nestedLoops(6, 8);
+            case "long-loop" -> longLoop(2_000_000);
+            case "long-operands" -> sumOfSquares(1_000_000);
+            case "huge-operands" -> factorials(500, 20);
+            case "sieve" -> sieve(200_000);
+            case "large-array" -> runningSums(4_000_000, 3);
+            case "tail-calls" -> tailCalls(1_000_000);
+            case "recursion" -> fibonacci(22);
+            case "large-program" -> largeProgram(15_000);
+            case "many-statements" -> manyStatements(200_000);
+            case "large-body" -> largeBody(300_000, 10);
+            default -> example(name);
+        };
+    }
+
+    // Loads an example program from the resources.
+    private static String example(String name) {
+        try (InputStream in = Programs.class.getClassLoader().getResourceAsStream(name + ".go")) {
+            if (in == null) {
+                throw new IllegalArgumentException("Unknown program: " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.US_ASCII);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Generates a program of declarations, assignments and prints without any loops.
+    // @param statements The number of statements.
+    private static String straightLine(int statements) {
+        StringBuilder source = new StringBuilder();
+        source.append("var a = 7\nvar b = 3\n");
+        for (int i = 0; i < statements; i++) {
+            switch (i % 4) {
+                case 0 -> source.append("var v").append(i).append(" = a * ").append(i % 97).append(" + b % 5 - (a - b) / 2\n");
+                case 1 -> source.append("a = a + v").append(i - 1).append(" % 13\n");
+                case 2 -> source.append("if a > b { b = b + 1 } else { a = a - 1 }\n");
+                default -> source.append("print(a - b * 2 <= v").append(i - 3).append(")\n");
+            }
+        }
+        return source.toString();
+    }
+
+    // Generates loops nested to a given depth, each running a given number of iterations, with
+    // arithmetic and a condition in the innermost body.
+    // @param depth The number of nested loops.
+    // @param iterations The number of iterations of each loop.
+    private static String nestedLoops(int depth, int iterations) {
+        StringBuilder source = new StringBuilder("var total = 0\n");
+        for (int level = 0; level < depth; level++) {
+            source.append("var i").append(level).append(" = 0\n");
+            source.append("while i").append(level).append(" < ").append(iterations).append(" {\n");
+        }
+        source.append("total = total + i0 * i").append(depth - 1).append(" % 7\n");
+        source.append("if total > 1000000 { total = total - 1000000 }\n");
+        for (int level = depth - 1; level >= 0; level--) {
+            source.append("i").append(level).append(" = i").append(level).append(" + 1\n}\n");
+        }
+        return source.append("print(total)\n").toString();
+    }
+
+    // Generates one loop that runs a given number of iterations of a Collatz-style step, which
+    // the optimizers cannot compute in closed form.
+    // @param iterations The number of iterations.
+    private static String longLoop(int iterations) {
+        return """
+                var x = 27
+                var steps = 0
+                var i = 0
+                while i < %d {
+                    if x %% 2 == 0 {
+                        x = x / 2
+                    } else {
+                        x = 3 * x + 1
+                    }
+                    if x == 1 {
+                        x = i %% 1000 + 27
+                        steps = steps + 1
+                    }
+                    i = i + 1
+                }
+                print(steps)
+                """.formatted(iterations);
+    }
+
+    // Generates a loop adding up the squares of the numbers below a given one. The sum leaves the
+    // int range after about 1800 iterations and the squares after about 46000.
+    // @param count The number of squares.
+    private static String sumOfSquares(int count) {
+        return """
+                var sum = 0
+                var i = 0
+                while i < %d {
+                    sum = sum + i * i
+                    i = i + 1
+                }
+                print(sum)
+                """.formatted(count);
+    }
+
+    // Generates loops computing the factorial of a number several times.
+    // @param n The number.
+    // @param times How often to compute its factorial.
+    private static String factorials(int n, int times) {
+        return """
+                var f = 1
+                var round = 0
+                while round < %d {
+                    f = 1
+                    var k = 1
+                    while k <= %d {
+                        f = f * k
+                        k = k + 1
+                    }
+                    round = round + 1
+                }
+                print(f %% 1000000007)
+                """.formatted(times, n);
+    }
+
+    // Generates the sieve of Eratosthenes, counting the primes up to a given number.
+    // @param n The largest number sieved.
+    private static String sieve(int n) {
+        return """
+                var n = %d
+                var composite[n + 1]
+                var count = 0
+                var i = 2
+                while i <= n {
+                    if composite[i] == 0 {
+                        count = count + 1
+                        var j = i * 2
+                        while j <= n {
+                            composite[j] = 1
+                            j = j + i
+                        }
+                    }
+                    i = i + 1
+                }
+                print(count)
+                """.formatted(n);
+    }
+
+    // Generates passes that replace each element of an array by the running sum of the elements
+    // up to it, modulo a prime. The indexes follow the loop counters, so their bounds checks are
+    // hoisted out of the loops.
+    // @param length The length of the array.
+    // @param passes The number of passes over the array.
+    private static String runningSums(int length, int passes) {
+        return """
+                var n = %d
+                var a[n]
+                var i = 0
+                while i < n {
+                    a[i] = i %% 1000
+                    i = i + 1
+                }
+                var pass = 0
+                while pass < %d {
+                    i = 1
+                    while i < n {
+                        a[i] = (a[i] + a[i - 1]) %% 1000003
+                        i = i + 1
+                    }
+                    pass = pass + 1
+                }
+                print(a[n - 1])
+                """.formatted(length, passes);
+    }
+
+    // Generates a function summing the remainders of the numbers up to n, which passes the sum
+    // along and calls itself in tail position, so it runs without growing the stack.
+    // @param n The number of calls.
+    private static String tailCalls(int n) {
+        return """
+                func sum(n, total) {
+                    if n == 0 {
+                        return total
+                    }
+                    return sum(n - 1, total + n %% 7)
+                }
+                print(sum(%d, 0))
+                """.formatted(n);
+    }
+
+    // Generates the naive recursive Fibonacci function, which makes a call for every number it
+    // adds up. It is not marked pure, so its results are not remembered.
+    // @param n The Fibonacci number to compute.
+    private static String fibonacci(int n) {
+        return """
+                func fib(n) {
+                    if n < 2 {
+                        return n
+                    }
+                    return fib(n - 1) + fib(n - 2)
+                }
+                print(fib(%d))
+                """.formatted(n);
+    }
+
+    // Generates a long program using every kind of token: functions, loops, arrays, comments,
+    // keywords, long names and numbers. It is only lexed, never run.
+    // @param functions The number of functions; each takes about 350 bytes.
+    private static String largeProgram(int functions) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < functions; i++) {
+            source.append("""
+                    // Sums the values from start, skipping multiples of %1$d.
+                    func accumulate%1$d(start, limit) {
+                        var values[64]
+                        var total = 0
+                        var index = start
+                        while index < limit {
+                            if index %% %2$d == 0 { index = index + 1 continue } else { total = total + values[index] * 31 }
+                            index = index + 1
+                        }
+                        if total >= 1000000 { total = total / 2 }
+                        if limit != 64 { return total }
+                        return 0 - total
+                    }
+                    """.formatted(i, i % 13 + 2));
+        }
+        return source.toString();
+    }
+
+    // Generates a program of roughly the given number of statements, mixing declarations,
+    // arithmetic with every precedence level, loops, conditions and prints. It is only parsed.
+    // @param statements The approximate number of top-level statements.
+    private static String manyStatements(int statements) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < statements; i++) {
+            switch (i % 5) {
+                case 0 -> source.append("var v").append(i).append(" = ").append(i).append(" * (3 + 4) - 12 / 2 % 5\n");
+                case 1 -> source.append("v").append(i - 1).append(" = v").append(i - 1).append(" + 1\n");
+                case 2 -> source.append("while v").append(i - 2).append(" * v").append(i - 2)
+                        .append(" <= 100 + ").append(i).append(" {\n    v").append(i - 2).append(" = v").append(i - 2)
+                        .append(" + 1\n}\n");
+                case 3 -> source.append("if v").append(i - 3).append(" % 7 == 0 {\n    print(v").append(i - 3)
+                        .append(")\n    break\n}\n");
+                default -> source.append("print(v").append(i - 4).append(" + 2 * (v").append(i - 4)
+                        .append(" - 1) != 5)\n");
+            }
+        }
+        return source.toString();
+    }
+
+    // Generates a program whose main loop has a large body, so the nodes of one iteration do not
+    // fit in the CPU caches. The body mixes arithmetic, increments, conditions and inner loops
+    // over a thousand variables; the program prints a checksum at the end. Values stay within the
+    // int range, so every engine runs it without an overflow.
+    // @param statements The number of statements in the loop body.
+    // @param iterations The number of times the body runs.
+    private static String largeBody(int statements, int iterations) {
+        int variables = 1000;
+        StringBuilder source = new StringBuilder();
+        for (int v = 0; v < variables; v++) {
+            source.append("var v").append(v).append(" = ").append(v).append('\n');
+        }
+        source.append("var round = 0\nwhile round < ").append(iterations).append(" {\n");
+        for (int i = 0; i < statements; i++) {
+            String x = "v" + (i % variables);
+            String y = "v" + (i * 7 % variables);
+            String z = "v" + (i * 13 % variables);
+            switch (i % 5) {
+                case 0 -> source.append(x).append(" = ").append(y).append(" * (3 + 4) % 1000 - ").append(z)
+                        .append(" / 2 % 5\n");
+                case 1 -> source.append(x).append(" = ").append(x).append(" + 1\n");
+                case 2 -> source.append("if ").append(x).append(" % 7 == 0 {\n").append(y).append(" = ").append(y)
+                        .append(" - ").append(x).append("\n} else {\n").append(y).append(" = ").append(y)
+                        .append(" + 1\n}\n");
+                case 3 -> source.append("while ").append(x).append(" > 100 {\n").append(x).append(" = ").append(x)
+                        .append(" / 2\n}\n");
+                default -> source.append(x).append(" = ").append(x).append(" * 3 % 1000 + ").append(z).append('\n');
+            }
+        }
+        source.append("round = round + 1\n}\n");
+        source.append("var checksum = 0\n");
+        for (int v = 0; v < variables; v++) {
+            source.append("checksum = checksum * 31 % 1000003 + v").append(v).append('\n');
+        }
+        source.append("print(checksum)\n");
+        return source.toString();
+    }
+}
@@ -0,0 +1,31 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Measures executing programs whose values leave the int range, which only the tree mode computes;
+// the other modes stop them with an integer overflow. "long-operands" runs on longs, and
+// "huge-operands" on BigIntegers.
+@State(Scope.Benchmark)
+public class WideArithmeticBenchmark {
+    @Param({"long-operands", "huge-operands"})
+    public String program;
+
+    @Param({"TREE"})
+    public String mode;
+
+    private Runnable run;
+
+    @Setup
+    public void setUp() {
+        run = Phases.load().prepare(Programs.source(program), mode);
+    }
+
+    @Benchmark
+    public void execute() {
+        run.run();
+    }
+}
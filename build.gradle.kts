@@ -0,0 +1,39 @@
+// The interpreter itself: the Java sources and the Kotlin TokenType, all in src/, and its tests in
+// test/.
+plugins {
+    kotlin("jvm") version "2.2.20"
+    application
+}
+
+repositories {
+    mavenCentral()
+}
+
+kotlin {
+    jvmToolchain(21)
+}
+
+dependencies {
+    testImplementation(platform("org.junit:junit-bom:5.11.3"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+}
+
+sourceSets {
+    main {
+        java.setSrcDirs(listOf("src"))
+        kotlin.setSrcDirs(listOf("src"))
+    }
+    test {
+        java.setSrcDirs(listOf("test"))
+        kotlin.setSrcDirs(listOf("test"))
+    }
+}
+
+tasks.test {
+    useJUnitPlatform()
+}
+
+application {
+    mainClass = "ScriptRunner"
+}
@@ -0,0 +1,20 @@
+// A call statement on the line after 'break' or 'continue' is not a loop label. Prints 100,
+// 102 and 104, then 3.
+func show(n) {
+    print(n)
+    return 0
+}
+var i = 0
+while i < 10 {
+    i = i + 1
+    if i % 2 == 0 {
+        continue
+        show(i)
+    }
+    show(i + 99)
+    if i >= 5 {
+        break
+        show(i)
+    }
+}
+print(i - 2)
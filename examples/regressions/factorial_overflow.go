@@ -0,0 +1,11 @@
+// Factorials past the int range. tree mode prints 479001600 and then
+// 15511210043330985984000000; jit mode prints 479001600 and then fails with "integer overflow"
+// rather than printing the wrapped 2076180480. The other modes do not support functions.
+func factorial(n) {
+    if n <= 1 {
+        return 1
+    }
+    return n * factorial(n - 1)
+}
+print(factorial(12))
+print(factorial(25))
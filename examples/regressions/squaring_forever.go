@@ -0,0 +1,8 @@
+// Squares a number forever. Under the ScriptScheduler, wide values are limited to 65,536 bits, so
+// this stops within a second with "Integer too large" instead of spending minutes on a single
+// multiplication, and the scripts queued behind it still run:
+// java ScriptScheduler --slots=1 --max-millis=1000 --max-steps=1000000 squaring_forever.go ../gcd.go
+var x = 3
+while 1 < 2 {
+    x = x * x
+}
@@ -0,0 +1,6 @@
+// A variable whose declaration did not run reads as 0. Run one statement at a time, as from
+// standard input (java ScriptRunner bytecode - < stale_register.go), the bytecode engine used to
+// give x the register that held the constant 7 of the first statement. Prints 7, then false.
+print(7)
+if 1 > 2 { var x = 1 }
+print(x)
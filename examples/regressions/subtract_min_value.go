@@ -0,0 +1,10 @@
+// Subtracting MIN_VALUE from a variable must not be fused into adding its negation, which wraps
+// around to MIN_VALUE again. Prints 2147483653 twice in tree mode; the other modes fail with
+// "integer overflow" at the first subtraction.
+var x = 5
+x = x - (0 - 2147483647 - 1)
+print(x)
+var y = 5
+var m = 0 - 2147483647 - 1
+y = y - m
+print(y)
@@ -0,0 +1,4 @@
+rootProject.name = "fop-project"
+
+// The JMH benchmarks of the lexer, the parser and the execution engines.
+include("benchmarks")
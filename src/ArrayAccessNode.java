@@ -0,0 +1,38 @@
+// Represents a read of an array element in the Abstract Syntax Tree (AST), e.g. 'a[i]'.
+class ArrayAccessNode extends Node {
+    // The name of the array.
+    public String name;
+    // The frame slot assigned to the array by the Resolver.
+    public int slot = -1;
+    // The AST node representing the index.
+    public Node index;
+    // The slot of the BoundsCheckNode result that makes checking the index unnecessary, or -1 if
+    // the index is always checked. Set by the LoopOptimizer, together with the loop counter and
+    // the constant the index adds to it, so a guarded index is read without evaluating it.
+    public int guardSlot = -1;
+    public int counter;
+    public int offset;
+
+    // Constructor for creating an ArrayAccessNode.
+    // @param name The name of the array.
+    // @param index The index expression node.
+    public ArrayAccessNode(String name, Node index) {
+        this.name = name;
+        this.index = adopt(index);
+    }
+
+    // Only the tree-walking Interpreter supports arrays.
+    @Override
+    int evaluate(int[] frame) {
+        throw IntArray.unsupported("specializing");
+    }
+
+    @Override
+    void replaceChild(Node oldChild, Node newChild) {
+        if (index == oldChild) {
+            index = newChild;
+        } else {
+            super.replaceChild(oldChild, newChild);
+        }
+    }
+}
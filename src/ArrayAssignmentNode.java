@@ -0,0 +1,43 @@
+// Represents an assignment to an array element in the Abstract Syntax Tree (AST), e.g. 'a[i] = 1'.
+class ArrayAssignmentNode extends Node {
+    // The name of the array.
+    public String name;
+    // The frame slot assigned to the array by the Resolver.
+    public int slot = -1;
+    // The AST nodes representing the index and the value to be assigned.
+    public Node index;
+    public Node value;
+    // The slot of the BoundsCheckNode result that makes checking the index unnecessary, or -1 if
+    // the index is always checked. Set by the LoopOptimizer, together with the loop counter and
+    // the constant the index adds to it, so a guarded index is read without evaluating it.
+    public int guardSlot = -1;
+    public int counter;
+    public int offset;
+
+    // Constructor for creating an ArrayAssignmentNode.
+    // @param name The name of the array.
+    // @param index The index expression node.
+    // @param value The value expression node.
+    public ArrayAssignmentNode(String name, Node index, Node value) {
+        this.name = name;
+        this.index = adopt(index);
+        this.value = adopt(value);
+    }
+
+    // Only the tree-walking Interpreter supports arrays.
+    @Override
+    int execute(int[] frame) {
+        throw IntArray.unsupported("specializing");
+    }
+
+    @Override
+    void replaceChild(Node oldChild, Node newChild) {
+        if (index == oldChild) {
+            index = newChild;
+        } else if (value == oldChild) {
+            value = newChild;
+        } else {
+            super.replaceChild(oldChild, newChild);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+// Represents an array declaration node in the Abstract Syntax Tree (AST), e.g. 'var a[10]'.
+// The declaration creates a new array of the given length with every element 0.
+class ArrayDeclarationNode extends Node {
+    // The name of the array being declared.
+    public final String name;
+    // The frame slot assigned to the array by the Resolver.
+    public int slot = -1;
+    // The AST node representing the length of the array.
+    public Node length;
+
+    // Constructor for creating an ArrayDeclarationNode.
+    // @param name The name of the array.
+    // @param length The length expression node.
+    public ArrayDeclarationNode(String name, Node length) {
+        this.name = name;
+        this.length = adopt(length);
+    }
+
+    // Only the tree-walking Interpreter supports arrays.
+    @Override
+    int execute(int[] frame) {
+        throw IntArray.unsupported("specializing");
+    }
+
+    @Override
+    void replaceChild(Node oldChild, Node newChild) {
+        if (length == oldChild) {
+            length = newChild;
+        } else {
+            super.replaceChild(oldChild, newChild);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// A CharSequence view of ASCII text in a ByteBuffer, such as a memory-mapped script file.
+// Characters are read straight from the buffer; nothing is copied until toString() is called.
+class AsciiCharSequence implements CharSequence {
+    // The buffer holding the text, from index 0 to its limit.
+    private final ByteBuffer buffer;
+
+    // Constructor for creating an AsciiCharSequence.
+    // @param buffer The buffer holding the text; its position and limit delimit the text.
+    public AsciiCharSequence(ByteBuffer buffer) {
+        this.buffer = buffer.slice();
+    }
+
+    @Override
+    public int length() {
+        return buffer.limit();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (buffer.get(index) & 0xff);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new AsciiCharSequence(buffer.slice(start, end - start));
+    }
+
+    @Override
+    public String toString() {
+        byte[] bytes = new byte[buffer.limit()];
+        buffer.get(0, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -2,6 +2,8 @@
 class AssignmentNode extends Node {
     // The name of the variable being assigned to.
     public String variable;
+    // The frame slot assigned to the variable by the Resolver.
+    public int slot = -1;
     // The AST node representing the value to be assigned to the variable.
     public Node value;
 
@@ -10,6 +12,21 @@ class AssignmentNode extends Node {
     // @param value The AST node representing the value.
     public AssignmentNode(String variable, Node value) {
         this.variable = variable;
-        this.value = value;
+        this.value = adopt(value);
+    }
+
+    // On first execution, replace this node with a specialized store.
+    @Override
+    int execute(int[] frame) {
+        return replace(SpecializedNodes.specializeStore(slot, value)).execute(frame);
+    }
+
+    @Override
+    void replaceChild(Node oldChild, Node newChild) {
+        if (value == oldChild) {
+            value = newChild;
+        } else {
+            super.replaceChild(oldChild, newChild);
+        }
     }
 }
@@ -0,0 +1,153 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+// An on-disk cache of parsed programs, so a script that has not changed is neither lexed nor
+// parsed again. Each entry is a file named after the SHA-256 hash of the source text and holds
+// the program encoded by the AstCodec; it is memory-mapped when loaded.
+// The cache keeps its files below a total size by evicting the least recently used ones, using
+// each file's modification time as its last use. Entries are written to a temporary file and
+// renamed into place, so a reader never sees a partial entry. An entry that cannot be decoded,
+// including one written with another format version, is deleted and treated as a miss.
+class AstCache {
+    // The size bound used when none is given: 64 MB.
+    static final long DEFAULT_MAX_BYTES = 64L << 20;
+    // The file name extension of cache entries.
+    private static final String EXTENSION = ".ast";
+
+    // The directory holding the cache entries.
+    private final Path directory;
+    // The most bytes the entries may take up together.
+    private final long maxBytes;
+
+    // Constructor for creating an AstCache.
+    // @param directory The directory holding the entries; created if missing.
+    // @param maxBytes The most bytes the entries may take up together.
+    // @throws IOException if the directory cannot be created.
+    public AstCache(Path directory, long maxBytes) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+    }
+
+    // Loads the cached parse of a source text.
+    // @param key The key of the source text (see key).
+    // @return The parsed, unresolved top-level statements, or null if the source is not cached.
+    public List<Node> load(String key) {
+        Path entry = directory.resolve(key + EXTENSION);
+        if (!Files.exists(entry)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            List<Node> statements = AstCodec.decode(buffer);
+            // Mark the entry as recently used.
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return statements;
+        } catch (IOException e) {
+            // Evicted or replaced by another process since it was found.
+            return null;
+        } catch (RuntimeException e) {
+            // Corrupt, or written with another format version.
+            delete(entry);
+            return null;
+        }
+    }
+
+    // Stores the parse of a source text, then evicts entries until the cache fits its bound.
+    // @param key The key of the source text (see key).
+    // @param statements The top-level statements parsed from it; resolving them does not matter,
+    //        but they must not have been optimized yet.
+    // @throws IOException if the entry cannot be written.
+    public void store(String key, List<Node> statements) throws IOException {
+        byte[] encoded = AstCodec.encode(statements);
+        if (encoded.length > maxBytes) {
+            return;
+        }
+        Path entry = directory.resolve(key + EXTENSION);
+        Path temporary = Files.createTempFile(directory, "entry", ".tmp");
+        try {
+            Files.write(temporary, encoded);
+            try {
+                Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        evict();
+    }
+
+    // Deletes the least recently used entries until the rest fit in maxBytes.
+    private void evict() throws IOException {
+        record Entry(Path file, FileTime used, long size) {
+        }
+        List<Entry> entries = new ArrayList<>();
+        long total = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(file -> file.getFileName().toString().endsWith(EXTENSION)).toList()) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    entries.add(new Entry(file, attributes.lastModifiedTime(), attributes.size()));
+                    total += attributes.size();
+                } catch (IOException e) {
+                    // Removed by another process meanwhile.
+                }
+            }
+        }
+        entries.sort(Comparator.comparing(Entry::used));
+        for (int i = 0; i < entries.size() && total > maxBytes; i++) {
+            delete(entries.get(i).file());
+            total -= entries.get(i).size();
+        }
+    }
+
+    // Deletes an entry, ignoring one that is already gone or still in use.
+    private static void delete(Path entry) {
+        try {
+            Files.deleteIfExists(entry);
+        } catch (IOException e) {
+            // Left for a later eviction.
+        }
+    }
+
+    // Returns the key of a source text: its SHA-256 hash in hex. The characters are hashed as
+    // UTF-16, so different texts never share a key, whatever their encoding on disk.
+    // @param source The source text.
+    // @return The key.
+    static String key(CharSequence source) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] chunk = new byte[8192];
+        int filled = 0;
+        for (int i = 0; i < source.length(); i++) {
+            char c = source.charAt(i);
+            chunk[filled++] = (byte) (c >>> 8);
+            chunk[filled++] = (byte) c;
+            if (filled == chunk.length) {
+                digest.update(chunk, 0, filled);
+                filled = 0;
+            }
+        }
+        digest.update(chunk, 0, filled);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -0,0 +1,365 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// A compact binary format for parsed programs, used by the AstCache. It stores the AST as the
+// Parser builds it, before resolving, so the same encoding serves every execution mode.
+// The layout is:
+//     "FOPA", the format version (4 bytes), the number of statements, then each statement
+// where a node is a tag byte, its source line as the difference from the line of the node before,
+// then its fields in prefix order. Counts, numbers, lines and string references are
+// variable-length integers of 7 bits per byte; numbers and line differences are zigzag-encoded so
+// small negative values stay short. Each distinct name is written once and then referred to by index.
+// Any change to the layout, the tags or the order of the Operator constants must bump VERSION.
+final class AstCodec {
+    // The format version. Data written with another version is rejected.
+    static final int VERSION = 4;
+    // The bytes every encoded program starts with.
+    private static final byte[] MAGIC = {'F', 'O', 'P', 'A'};
+
+    // The node tags.
+    private static final int NUMBER = 0;
+    private static final int VARIABLE = 1;
+    private static final int BINARY = 2;
+    private static final int DECLARATION = 3;
+    private static final int ASSIGNMENT = 4;
+    private static final int PRINT = 5;
+    private static final int WHILE = 6;
+    private static final int IF = 7;
+    private static final int BREAK = 8;
+    private static final int CONTINUE = 9;
+    private static final int ARRAY_DECLARATION = 10;
+    private static final int ARRAY_ASSIGNMENT = 11;
+    private static final int ARRAY_ACCESS = 12;
+    private static final int FUNCTION = 13;
+    private static final int CALL = 14;
+    private static final int RETURN = 15;
+
+    private static final Operator[] OPERATORS = Operator.values();
+
+    private AstCodec() {
+    }
+
+    // Encodes a parsed program.
+    // @param statements The top-level statements, as built by the Parser.
+    // @return The encoded program.
+    // @throws RuntimeException if the program contains nodes the Parser does not build.
+    static byte[] encode(List<Node> statements) {
+        Encoder encoder = new Encoder();
+        encoder.out.writeBytes(MAGIC);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            encoder.out.write(VERSION >>> shift);
+        }
+        encoder.block(statements);
+        return encoder.out.toByteArray();
+    }
+
+    // Decodes a program written by encode. The decoded nodes are new and unresolved.
+    // @param buffer The encoded program, from its position to its limit.
+    // @return The top-level statements.
+    // @throws RuntimeException if the data is not a complete program of the current version.
+    static List<Node> decode(ByteBuffer buffer) {
+        try {
+            for (byte expected : MAGIC) {
+                if (buffer.get() != expected) {
+                    throw new RuntimeException("Not an encoded program");
+                }
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new RuntimeException("Unsupported AST format version: " + version);
+            }
+            List<Node> statements = new Decoder(buffer).block();
+            if (buffer.hasRemaining()) {
+                throw new RuntimeException("Trailing data after the encoded program");
+            }
+            return statements;
+        } catch (BufferUnderflowException e) {
+            throw new RuntimeException("Truncated encoded program", e);
+        }
+    }
+
+    // Writes nodes in prefix order.
+    private static final class Encoder {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // The index of each name written so far.
+        private final Map<String, Integer> names = new HashMap<>();
+        // The line of the node written last.
+        private int line = 0;
+
+        private void block(List<Node> statements) {
+            writeVarint(statements.size());
+            for (Node statement : statements) {
+                node(statement);
+            }
+        }
+
+        private void node(Node node) {
+            out.write(tag(node));
+            int delta = node.line - line;
+            writeVarint((delta << 1) ^ (delta >> 31));
+            line = node.line;
+            if (node instanceof NumberNode number) {
+                writeVarint((number.value << 1) ^ (number.value >> 31));
+            } else if (node instanceof VariableNode variable) {
+                name(variable.name);
+            } else if (node instanceof BinaryOpNode binOp) {
+                out.write(binOp.operator.ordinal());
+                node(binOp.left);
+                node(binOp.right);
+            } else if (node instanceof VarDeclarationNode varDec) {
+                name(varDec.variableName);
+                node(varDec.initializer);
+            } else if (node instanceof AssignmentNode assign) {
+                name(assign.variable);
+                node(assign.value);
+            } else if (node instanceof PrintNode printNode) {
+                node(printNode.expression);
+            } else if (node instanceof WhileNode whileNode) {
+                name(whileNode.label);
+                node(whileNode.condition);
+                block(whileNode.body);
+            } else if (node instanceof IfNode ifNode) {
+                node(ifNode.condition);
+                block(ifNode.thenBranch);
+                block(ifNode.elseBranch);
+            } else if (node instanceof BreakNode breakNode) {
+                name(breakNode.label);
+            } else if (node instanceof ContinueNode continueNode) {
+                name(continueNode.label);
+            } else if (node instanceof ArrayDeclarationNode arrayDec) {
+                name(arrayDec.name);
+                node(arrayDec.length);
+            } else if (node instanceof ArrayAssignmentNode arrayAssign) {
+                name(arrayAssign.name);
+                node(arrayAssign.index);
+                node(arrayAssign.value);
+            } else if (node instanceof ArrayAccessNode arrayAccess) {
+                name(arrayAccess.name);
+                node(arrayAccess.index);
+            } else if (node instanceof FunctionNode function) {
+                name(function.name);
+                out.write(function.pure ? 1 : 0);
+                writeVarint(function.parameters.size());
+                for (String parameter : function.parameters) {
+                    name(parameter);
+                }
+                block(function.body);
+            } else if (node instanceof CallNode call) {
+                name(call.name);
+                block(call.arguments);
+            } else if (node instanceof ReturnNode returnNode) {
+                node(returnNode.value);
+            }
+        }
+
+        // Returns the tag of a node.
+        // @throws RuntimeException if the Parser does not build such nodes.
+        private static int tag(Node node) {
+            if (node instanceof NumberNode) {
+                return NUMBER;
+            } else if (node instanceof VariableNode) {
+                return VARIABLE;
+            } else if (node instanceof BinaryOpNode) {
+                return BINARY;
+            } else if (node instanceof VarDeclarationNode) {
+                return DECLARATION;
+            } else if (node instanceof AssignmentNode) {
+                return ASSIGNMENT;
+            } else if (node instanceof PrintNode) {
+                return PRINT;
+            } else if (node instanceof WhileNode) {
+                return WHILE;
+            } else if (node instanceof IfNode) {
+                return IF;
+            } else if (node instanceof BreakNode) {
+                return BREAK;
+            } else if (node instanceof ContinueNode) {
+                return CONTINUE;
+            } else if (node instanceof ArrayDeclarationNode) {
+                return ARRAY_DECLARATION;
+            } else if (node instanceof ArrayAssignmentNode) {
+                return ARRAY_ASSIGNMENT;
+            } else if (node instanceof ArrayAccessNode) {
+                return ARRAY_ACCESS;
+            } else if (node instanceof FunctionNode) {
+                return FUNCTION;
+            } else if (node instanceof CallNode) {
+                return CALL;
+            } else if (node instanceof ReturnNode) {
+                return RETURN;
+            }
+            throw new RuntimeException("Cannot encode node: " + node.getClass().getName());
+        }
+
+        // Writes a name: 0 for null, the index + 1 of a name written before, or the next index
+        // + 1 followed by the UTF-8 bytes of a new name.
+        private void name(String name) {
+            if (name == null) {
+                writeVarint(0);
+                return;
+            }
+            Integer index = names.get(name);
+            if (index != null) {
+                writeVarint(index + 1);
+                return;
+            }
+            names.put(name, names.size());
+            writeVarint(names.size());
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            out.writeBytes(bytes);
+        }
+
+        private void writeVarint(int value) {
+            while ((value & ~0x7f) != 0) {
+                out.write((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+    }
+
+    // Reads nodes in prefix order.
+    private static final class Decoder {
+        private final ByteBuffer in;
+        // The names read so far, by index.
+        private final List<String> names = new ArrayList<>();
+        // The line of the node read last.
+        private int line = 0;
+
+        Decoder(ByteBuffer in) {
+            this.in = in;
+        }
+
+        private List<Node> block() {
+            int size = readVarint();
+            // Every node takes at least one byte, which bounds the count of a corrupt block.
+            if (size < 0 || size > in.remaining()) {
+                throw new RuntimeException("Corrupt block size: " + size);
+            }
+            List<Node> statements = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                statements.add(node());
+            }
+            return statements;
+        }
+
+        private Node node() {
+            int tag = in.get();
+            int delta = readVarint();
+            line += (delta >>> 1) ^ -(delta & 1);
+            int nodeLine = line;
+            Node node = switch (tag) {
+                case NUMBER -> {
+                    int zigzag = readVarint();
+                    yield new NumberNode((zigzag >>> 1) ^ -(zigzag & 1));
+                }
+                case VARIABLE -> new VariableNode(name());
+                case BINARY -> {
+                    int operator = in.get();
+                    if (operator < 0 || operator >= OPERATORS.length) {
+                        throw new RuntimeException("Corrupt operator: " + operator);
+                    }
+                    Node left = node();
+                    yield new BinaryOpNode(left, OPERATORS[operator], node());
+                }
+                case DECLARATION -> {
+                    String name = name();
+                    yield new VarDeclarationNode(name, node());
+                }
+                case ASSIGNMENT -> {
+                    String name = name();
+                    yield new AssignmentNode(name, node());
+                }
+                case PRINT -> new PrintNode(node());
+                case WHILE -> {
+                    String label = name();
+                    Node condition = node();
+                    yield new WhileNode(label, condition, block());
+                }
+                case IF -> {
+                    Node condition = node();
+                    List<Node> thenBranch = block();
+                    yield new IfNode(condition, thenBranch, block());
+                }
+                case BREAK -> new BreakNode(name());
+                case CONTINUE -> new ContinueNode(name());
+                case ARRAY_DECLARATION -> {
+                    String name = name();
+                    yield new ArrayDeclarationNode(name, node());
+                }
+                case ARRAY_ASSIGNMENT -> {
+                    String name = name();
+                    Node index = node();
+                    yield new ArrayAssignmentNode(name, index, node());
+                }
+                case ARRAY_ACCESS -> {
+                    String name = name();
+                    yield new ArrayAccessNode(name, node());
+                }
+                case FUNCTION -> {
+                    String name = name();
+                    boolean pure = in.get() != 0;
+                    int count = readVarint();
+                    // Every parameter name takes at least one byte.
+                    if (count < 0 || count > in.remaining()) {
+                        throw new RuntimeException("Corrupt parameter count: " + count);
+                    }
+                    List<String> parameters = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        parameters.add(name());
+                    }
+                    yield new FunctionNode(name, parameters, block(), pure);
+                }
+                case CALL -> {
+                    String name = name();
+                    yield new CallNode(name, block());
+                }
+                case RETURN -> new ReturnNode(node());
+                default -> throw new RuntimeException("Corrupt node tag: " + tag);
+            };
+            node.line = nodeLine;
+            return node;
+        }
+
+        private String name() {
+            int reference = readVarint();
+            if (reference == 0) {
+                return null;
+            }
+            if (reference <= names.size()) {
+                return names.get(reference - 1);
+            }
+            if (reference != names.size() + 1) {
+                throw new RuntimeException("Corrupt name reference: " + reference);
+            }
+            int length = readVarint();
+            if (length < 0 || length > in.remaining()) {
+                throw new RuntimeException("Corrupt name length: " + length);
+            }
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            String name = new String(bytes, StandardCharsets.UTF_8);
+            names.add(name);
+            return name;
+        }
+
+        private int readVarint() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = in.get();
+                value |= (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new RuntimeException("Corrupt variable-length integer");
+        }
+    }
+}
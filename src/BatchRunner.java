@@ -0,0 +1,199 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Runs many independent scripts concurrently, one virtual thread per script. Each script runs on
+// its own engine and prints to its own CapturingSink, and the results come back in the order the
+// scripts were submitted. A script that fails does not affect the others; its error is part of
+// its result.
+// Every distinct source is parsed, resolved and optimized once. The prepared program is shared by
+// all runs of that source, since the engines only read the AST and keep variables in their own
+// frame. Modes whose engines change the AST as they run (see ExecutionMode.changesAst) prepare a
+// program for every run instead.
+// Usage: java BatchRunner [--repeat=<n>] [mode] <file-or-directory>...
+// runs the scripts (every *.go file of a directory) n times over as one batch, prints the output
+// of each in order, and reports the throughput.
+public class BatchRunner {
+    // The outcome of one script: what it printed, and the error that stopped it, if any. Besides a
+    // RuntimeException, the error may be a StackOverflowError or OutOfMemoryError, which a script
+    // causes by nesting too deeply or growing a value too large; these stop only that script.
+    record Result(String output, Throwable error) {
+        // Returns the message of the error, or its name if it has none, as a StackOverflowError.
+        String errorMessage() {
+            return error.getMessage() != null ? error.getMessage() : error.toString();
+        }
+    }
+
+    // A parsed, resolved and optimized program, and for the flat mode its flattened form. Neither
+    // is changed once prepared.
+    record Program(Resolver resolver, List<Node> statements, FlatAst flat) {
+    }
+
+    // The mode of the engines running the scripts.
+    private final ExecutionMode mode;
+    // The prepared programs by source, kept for the lifetime of the runner.
+    private final Map<String, CompletableFuture<Program>> programs = new ConcurrentHashMap<>();
+
+    // Constructor for creating a BatchRunner.
+    // @param mode The execution mode of the engines running the scripts.
+    public BatchRunner(ExecutionMode mode) {
+        this.mode = mode;
+    }
+
+    // Runs scripts concurrently and waits for all of them.
+    // @param sources The source code of the scripts; the same source may occur many times.
+    // @return The result of each script, in the order of sources.
+    public List<Result> run(List<String> sources) {
+        List<Future<Result>> futures = new ArrayList<>(sources.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String source : sources) {
+                futures.add(executor.submit(() -> runOne(source)));
+            }
+        }
+        // Closing the executor has waited for every script.
+        List<Result> results = new ArrayList<>(futures.size());
+        for (Future<Result> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return results;
+    }
+
+    // Runs one script on a new engine.
+    private Result runOne(String source) {
+        CapturingSink sink = new CapturingSink();
+        try {
+            Program program = program(source);
+            ExecutionEngine engine = mode.create(program.resolver(), sink);
+            if (engine instanceof FlatInterpreter flatInterpreter) {
+                flatInterpreter.run(program.flat());
+            } else {
+                for (Node statement : program.statements()) {
+                    engine.execute(statement);
+                }
+            }
+            return new Result(sink.output(), null);
+        } catch (RuntimeException | StackOverflowError | OutOfMemoryError e) {
+            return new Result(sink.output(), e);
+        }
+    }
+
+    // Returns the prepared program of a source, preparing it if no other run has.
+    // @throws RuntimeException if the source does not parse or resolve.
+    // @throws StackOverflowError if it nests too deeply to parse.
+    private Program program(String source) {
+        if (mode.changesAst()) {
+            return prepare(source, mode);
+        }
+        CompletableFuture<Program> created = new CompletableFuture<>();
+        CompletableFuture<Program> existing = programs.putIfAbsent(source, created);
+        if (existing == null) {
+            // Prepare outside the map, so runs of other sources are not held up.
+            try {
+                created.complete(prepare(source, mode));
+            } catch (RuntimeException | StackOverflowError | OutOfMemoryError e) {
+                created.completeExceptionally(e);
+            }
+            existing = created;
+        }
+        try {
+            return existing.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    // Parses, resolves and optimizes a source, as the ScriptRunner does.
+    // @param source The source code.
+    // @param mode The execution mode the program is prepared for.
+    // @return The prepared program.
+    // @throws RuntimeException if the source does not parse or resolve.
+    static Program prepare(String source, ExecutionMode mode) {
+        Parser parser = new Parser(new Lexer(source));
+        Resolver resolver = new Resolver();
+        List<Node> statements = new ArrayList<>();
+        while (!parser.isAtEnd()) {
+            Node statement = parser.parseStatement();
+            resolver.resolve(statement);
+            statements.add(statement);
+        }
+        statements = new Optimizer().optimize(statements);
+        statements = new LoopOptimizer(resolver, mode == ExecutionMode.JIT, mode.exactArithmetic())
+                .optimize(statements);
+        if (mode.executesNodes()) {
+            statements.replaceAll(new Fuser()::fuse);
+        }
+        return new Program(resolver, List.copyOf(statements),
+                mode == ExecutionMode.FLAT ? FlatAst.flatten(statements) : null);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int first = 0;
+        int repeat = 1;
+        if (first < args.length && args[first].startsWith("--repeat=")) {
+            repeat = Integer.parseInt(args[first].substring("--repeat=".length()));
+            first++;
+        }
+        ExecutionMode mode = ExecutionMode.TREE;
+        if (first < args.length && !Files.exists(Path.of(args[first]))) {
+            mode = ExecutionMode.valueOf(args[first].toUpperCase());
+            first++;
+        }
+        if (first >= args.length) {
+            System.err.println("Usage: java BatchRunner [--repeat=<n>] [mode] <file-or-directory>...");
+            System.exit(2);
+        }
+        List<Path> scripts = new ArrayList<>();
+        for (int i = first; i < args.length; i++) {
+            scripts.addAll(ScriptRunner.scripts(Path.of(args[i])));
+        }
+        List<String> sources = new ArrayList<>();
+        for (Path script : scripts) {
+            sources.add(Files.readString(script));
+        }
+        List<String> batch = new ArrayList<>();
+        for (int r = 0; r < repeat; r++) {
+            batch.addAll(sources);
+        }
+
+        long start = System.nanoTime();
+        List<Result> results = new BatchRunner(mode).run(batch);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        // Only the first round is printed; the others repeat it.
+        int failed = 0;
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i);
+            if (result.error() != null) {
+                failed++;
+            }
+            if (i < scripts.size()) {
+                System.out.println(scripts.get(i));
+                System.out.print(result.output());
+                if (result.error() != null) {
+                    System.out.println("Error: " + result.errorMessage());
+                }
+                System.out.println("----------------------");
+            }
+        }
+        System.out.printf("[%d scripts (%d files), %d failed, %.1f ms, %.0f scripts/s on %d cores]%n",
+                results.size(), sources.size(), failed, seconds * 1e3, results.size() / seconds,
+                Runtime.getRuntime().availableProcessors());
+    }
+}
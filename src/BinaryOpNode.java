@@ -2,18 +2,41 @@
 class BinaryOpNode extends Node {
     // The AST node representing the left operand.
     public Node left;
-    // The operator of the binary operation (e.g., "+", "-", "*").
-    public String operator;
+    // The operator of the binary operation (e.g., ADD, SUBTRACT, MULTIPLY).
+    public Operator operator;
     // The AST node representing the right operand.
     public Node right;
 
     // Constructor for creating a BinaryOpNode.
     // @param left The left operand node.
-    // @param operator The operator string.
+    // @param operator The operator.
     // @param right The right operand node.
-    public BinaryOpNode(Node left, String operator, Node right) {
-        this.left = left;
+    public BinaryOpNode(Node left, Operator operator, Node right) {
+        this.left = adopt(left);
         this.operator = operator;
-        this.right = right;
+        this.right = adopt(right);
+    }
+
+    // On first evaluation, replace this node with one specialized for its operator and operands.
+    @Override
+    int evaluate(int[] frame) {
+        return replace(SpecializedNodes.specialize(this)).evaluate(frame);
+    }
+
+    // On first evaluation as a condition, replace this node with a direct boolean comparison.
+    @Override
+    boolean evaluateCondition(int[] frame) {
+        return replace(SpecializedNodes.specializeCondition(this)).evaluateCondition(frame);
+    }
+
+    @Override
+    void replaceChild(Node oldChild, Node newChild) {
+        if (left == oldChild) {
+            left = newChild;
+        } else if (right == oldChild) {
+            right = newChild;
+        } else {
+            super.replaceChild(oldChild, newChild);
+        }
     }
 }
\ No newline at end of file
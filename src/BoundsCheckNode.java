@@ -0,0 +1,64 @@
+// A statement the LoopOptimizer puts before a while loop to check, once, the indexes the loop can
+// use for one array: those of the form 'i + c' for the loop's induction variable i and constants c.
+// The loop condition bounds i on one side and its start value on the other, so if both ends of
+// that range are in bounds, every access in the loop is, and the accesses skip their own checks.
+// The statement stores 1 in a temporary slot if the range is in bounds and 0 otherwise; the
+// accesses it covers name that slot as their guardSlot.
+class BoundsCheckNode extends Node {
+    // The slot the result is stored in.
+    public final int slot;
+    // The slot of the array.
+    public final int array;
+    // The slot of the induction variable, and its constant step.
+    public final int counter;
+    public final int step;
+    // The slot of the loop limit, or -1 if the limit is the constant limitValue.
+    public final int limitSlot;
+    public final int limitValue;
+    // What to add to the limit to get the last value of the counter for which the condition holds:
+    // -1 for 'i < n', 0 for 'i <= n' or 'i >= n', 1 for 'i > n'.
+    public final int limitAdjust;
+    // The smallest and largest constant added to the counter in the covered indexes. An access
+    // made after the counter is stepped in the loop body counts the step in its offset.
+    public final int minOffset;
+    public final int maxOffset;
+
+    // Constructor for creating a BoundsCheckNode. The parameters are those of the fields.
+    BoundsCheckNode(int slot, int array, int counter, int step, int limitSlot, int limitValue, int limitAdjust,
+                    int minOffset, int maxOffset) {
+        this.slot = slot;
+        this.array = array;
+        this.counter = counter;
+        this.step = step;
+        this.limitSlot = limitSlot;
+        this.limitValue = limitValue;
+        this.limitAdjust = limitAdjust;
+        this.minOffset = minOffset;
+        this.maxOffset = maxOffset;
+    }
+
+    // Returns whether every index the loop can use is in bounds, given the values before the loop.
+    // The counter must also stay clear of int overflow, which could wrap it around to an index the
+    // check did not cover.
+    // @param frame The frame storing variable values.
+    // @param arrays The arrays, by slot.
+    boolean holds(int[] frame, IntArray[] arrays) {
+        IntArray target = arrays[array];
+        if (target == null) {
+            return false;
+        }
+        long start = frame[counter];
+        long bound = (long) (limitSlot >= 0 ? frame[limitSlot] : limitValue) + limitAdjust;
+        long low = step > 0 ? start : bound;
+        long high = step > 0 ? bound : start;
+        long next = step > 0 ? high + step : low + step;
+        return low + minOffset >= 0 && high + maxOffset < target.length()
+                && next >= Integer.MIN_VALUE && next <= Integer.MAX_VALUE;
+    }
+
+    // Only the tree-walking Interpreter supports arrays.
+    @Override
+    int execute(int[] frame) {
+        throw IntArray.unsupported("specializing");
+    }
+}
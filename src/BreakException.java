@@ -1,3 +0,0 @@
-// An exception class used to signal a 'break' statement during execution.
-class BreakException extends RuntimeException {
-}
@@ -1,3 +1,24 @@
 // Represents a 'break' statement node in the Abstract Syntax Tree (AST).
 class BreakNode extends Node {
-}
\ No newline at end of file
+    // The label of the loop to exit, or null for the innermost enclosing loop.
+    public final String label;
+    // The number of loops between this statement and the loop it exits, set by the Resolver.
+    public int depth = -1;
+
+    // Constructor for creating a BreakNode that exits the innermost enclosing loop.
+    public BreakNode() {
+        this(null);
+    }
+
+    // Constructor for creating a BreakNode.
+    // @param label The label of the loop to exit, or null for the innermost enclosing loop.
+    public BreakNode(String label) {
+        this.label = label;
+    }
+
+    @Override
+    int execute(int[] frame) {
+        // Complete abruptly; the target loop stops when the status reaches it.
+        return Completion.of(Completion.BREAK, depth);
+    }
+}
@@ -0,0 +1,296 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// The BytecodeCompiler translates resolved AST statements into Chunks for the VirtualMachine.
+// Expressions are compiled to three-address instructions over registers, so a variable or a
+// literal operand costs no instruction at all.
+class BytecodeCompiler {
+    // The resolver that assigned the variable slots; variables occupy the first registers.
+    private final Resolver resolver;
+    // The instruction stream being built.
+    private int[] code = new int[64];
+    // The number of ints written to the instruction stream.
+    private int size = 0;
+    // The constant values of the chunk, and the register assigned to each distinct value.
+    private final List<Integer> constants = new ArrayList<>();
+    private final Map<Integer, Integer> constantRegisters = new HashMap<>();
+    // The number of variable registers, and the number of temporaries in use and at most.
+    private int variableCount = 0;
+    private int temps = 0;
+    private int maxTemps = 0;
+    // For each enclosing loop, innermost last, the addresses of the 'break' jump operands to patch
+    // at its exit and of the 'continue' jump operands to patch at its condition.
+    private final List<List<Integer>> breakJumps = new ArrayList<>();
+    private final List<List<Integer>> continueJumps = new ArrayList<>();
+    // The loops run whole by RUN_LOOP instructions.
+    private final List<CompiledLoop> loops = new ArrayList<>();
+
+    // Constructor for creating a BytecodeCompiler.
+    // @param resolver The resolver that resolves the statements to compile.
+    public BytecodeCompiler(Resolver resolver) {
+        this.resolver = resolver;
+    }
+
+    // Compiles a single resolved statement into a Chunk.
+    // @param node The statement to compile.
+    // @return The compiled chunk.
+    public Chunk compile(Node node) {
+        size = 0;
+        constants.clear();
+        constantRegisters.clear();
+        variableCount = resolver.slotCount();
+        temps = 0;
+        maxTemps = 0;
+        breakJumps.clear();
+        continueJumps.clear();
+        loops.clear();
+        // Constants and temporaries are numbered from zero while compiling and relocated below.
+        compileStatement(node);
+        emit(OpCode.HALT);
+        int[] chunkCode = Arrays.copyOf(code, size);
+        relocate(chunkCode);
+        int[] values = constants.stream().mapToInt(Integer::intValue).toArray();
+        return new Chunk(chunkCode, values, variableCount, variableCount + values.length + maxTemps,
+                loops.toArray(new CompiledLoop[0]));
+    }
+
+    // Emits the instructions for a statement.
+    // @param node The statement to compile.
+    private void compileStatement(Node node) {
+        if (node instanceof VarDeclarationNode varDec) {
+            compileInto(varDec.initializer, varDec.slot);
+        } else if (node instanceof AssignmentNode assign) {
+            // Compile 'x = x + c' and 'x = x - c' to an in-place increment. Subtracting MIN_VALUE
+            // cannot be written as adding its negation, which is MIN_VALUE again.
+            if (assign.value instanceof BinaryOpNode binOp
+                    && binOp.left instanceof VariableNode variable && variable.slot == assign.slot
+                    && binOp.right instanceof NumberNode number
+                    && (binOp.operator == Operator.ADD
+                        || binOp.operator == Operator.SUBTRACT && number.value != Integer.MIN_VALUE)) {
+                emit(OpCode.INC, assign.slot, binOp.operator == Operator.ADD ? number.value : -number.value);
+                return;
+            }
+            compileInto(assign.value, assign.slot);
+        } else if (node instanceof PrintNode printNode) {
+            int mark = temps;
+            emit(OpCode.PRINT, compileExpression(printNode.expression));
+            temps = mark;
+        } else if (node instanceof WhileNode whileNode && whileNode.compiled != null) {
+            // A loop computed in closed form runs as a single instruction.
+            emit(OpCode.RUN_LOOP, loops.size());
+            loops.add(whileNode.compiled);
+        } else if (node instanceof WhileNode whileNode) {
+            // The condition is tested at the bottom of the loop, so each iteration takes one jump:
+            //     jump test; body: <body> test: <jump to body if condition holds> exit:
+            emit(OpCode.JUMP, -1);
+            int entryJump = size - 1;
+            int body = size;
+            breakJumps.add(new ArrayList<>());
+            continueJumps.add(new ArrayList<>());
+            compileBlock(whileNode.body);
+            code[entryJump] = size;
+            for (int operand : continueJumps.remove(continueJumps.size() - 1)) {
+                code[operand] = size;
+            }
+            compileConditionJump(whileNode.condition, false, body);
+            for (int operand : breakJumps.remove(breakJumps.size() - 1)) {
+                code[operand] = size;
+            }
+        } else if (node instanceof IfNode ifNode) {
+            int skipJump = compileConditionJump(ifNode.condition, true, -1);
+            compileBlock(ifNode.thenBranch);
+            if (ifNode.elseBranch.isEmpty()) {
+                code[skipJump] = size;
+            } else {
+                emit(OpCode.JUMP, -1);
+                int endJump = size - 1;
+                code[skipJump] = size;
+                compileBlock(ifNode.elseBranch);
+                code[endJump] = size;
+            }
+        } else if (node instanceof BreakNode breakNode) {
+            // The Resolver has checked that the target loop exists.
+            emit(OpCode.JUMP, -1);
+            breakJumps.get(breakJumps.size() - 1 - breakNode.depth).add(size - 1);
+        } else if (node instanceof ContinueNode continueNode) {
+            emit(OpCode.JUMP, -1);
+            continueJumps.get(continueJumps.size() - 1 - continueNode.depth).add(size - 1);
+        } else if (IntArray.isArrayStatement(node)) {
+            throw IntArray.unsupported("bytecode");
+        } else if (FunctionNode.isFunctionStatement(node)) {
+            throw FunctionNode.unsupported("bytecode");
+        } else {
+            throw new RuntimeException("Unknown node type");
+        }
+    }
+
+    // Emits the instructions for each statement of a block.
+    // @param statements The statements to compile.
+    private void compileBlock(List<Node> statements) {
+        for (Node statement : statements) {
+            compileStatement(statement);
+        }
+    }
+
+    // Emits a conditional jump on a comparison.
+    // @param node The condition node; must be a comparison.
+    // @param whenFalse Whether to jump when the condition is false rather than true.
+    // @param target The jump target, or -1 if the caller patches it later.
+    // @return The address of the jump target operand.
+    private int compileConditionJump(Node node, boolean whenFalse, int target) {
+        if (!(node instanceof BinaryOpNode binOp)) {
+            throw new RuntimeException("Cannot evaluate condition");
+        }
+        int opcode = switch (binOp.operator) {
+            case LESS_EQUAL -> whenFalse ? OpCode.JUMP_IF_GT : OpCode.JUMP_IF_LE;
+            case GREATER_EQUAL -> whenFalse ? OpCode.JUMP_IF_LT : OpCode.JUMP_IF_GE;
+            case LESS -> whenFalse ? OpCode.JUMP_IF_GE : OpCode.JUMP_IF_LT;
+            case GREATER -> whenFalse ? OpCode.JUMP_IF_LE : OpCode.JUMP_IF_GT;
+            case EQUAL -> whenFalse ? OpCode.JUMP_IF_NE : OpCode.JUMP_IF_EQ;
+            case NOT_EQUAL -> whenFalse ? OpCode.JUMP_IF_EQ : OpCode.JUMP_IF_NE;
+            default -> throw new RuntimeException("Unknown comparison operator: " + binOp.operator);
+        };
+        int mark = temps;
+        int left = compileExpression(binOp.left);
+        int right = compileExpression(binOp.right);
+        temps = mark;
+        emit(opcode, left, right, target);
+        return size - 1;
+    }
+
+    // Emits the instructions that store the value of an expression into a register.
+    // @param node The expression to compile.
+    // @param dst The destination register.
+    private void compileInto(Node node, int dst) {
+        int mark = temps;
+        if (node instanceof BinaryOpNode binOp) {
+            int left = compileExpression(binOp.left);
+            int right = compileExpression(binOp.right);
+            emit(binaryOpcode(binOp.operator), dst, left, right);
+        } else {
+            emit(OpCode.MOVE, dst, compileExpression(node));
+        }
+        temps = mark;
+    }
+
+    // Emits the instructions that compute an expression and returns the register holding its value.
+    // Variables and literals need no instructions: their own register is returned.
+    // @param node The expression to compile.
+    // @return The register holding the value.
+    private int compileExpression(Node node) {
+        if (node instanceof NumberNode numberNode) {
+            return constantRegister(numberNode.value);
+        } else if (node instanceof VariableNode variableNode) {
+            return variableNode.slot;
+        } else if (node instanceof BinaryOpNode binOp) {
+            int left = compileExpression(binOp.left);
+            int right = compileExpression(binOp.right);
+            // Operands that were temporaries are dead after this instruction, so reuse them.
+            temps = Math.min(temps, Math.min(tempIndex(left), tempIndex(right)));
+            int dst = allocateTemp();
+            emit(binaryOpcode(binOp.operator), dst, left, right);
+            return dst;
+        } else if (node instanceof ArrayAccessNode) {
+            throw IntArray.unsupported("bytecode");
+        } else if (node instanceof CallNode) {
+            throw FunctionNode.unsupported("bytecode");
+        }
+        throw new RuntimeException("Unknown node type");
+    }
+
+    // Returns the opcode of a binary operator.
+    private static int binaryOpcode(Operator operator) {
+        return switch (operator) {
+            case ADD -> OpCode.ADD;
+            case SUBTRACT -> OpCode.SUB;
+            case MULTIPLY -> OpCode.MUL;
+            case DIVIDE -> OpCode.DIV;
+            case REMAINDER -> OpCode.MOD;
+            case LESS_EQUAL -> OpCode.LE;
+            case GREATER_EQUAL -> OpCode.GE;
+            case LESS -> OpCode.LT;
+            case GREATER -> OpCode.GT;
+            case EQUAL -> OpCode.EQ;
+            case NOT_EQUAL -> OpCode.NE;
+        };
+    }
+
+    // Register numbering while compiling: variables use their slot, constants are encoded as
+    // CONSTANT_TAG + index and temporaries as TEMP_TAG + index. relocate() rewrites both once the
+    // number of constants is known.
+    private static final int CONSTANT_TAG = 1 << 29;
+    private static final int TEMP_TAG = 1 << 30;
+
+    // Returns the register holding a constant value, allocating one if needed.
+    private int constantRegister(int value) {
+        return constantRegisters.computeIfAbsent(value, v -> {
+            constants.add(v);
+            return CONSTANT_TAG + constants.size() - 1;
+        });
+    }
+
+    // Allocates a temporary register.
+    private int allocateTemp() {
+        maxTemps = Math.max(maxTemps, temps + 1);
+        return TEMP_TAG + temps++;
+    }
+
+    // Returns the temporary index of a register, or Integer.MAX_VALUE if it is not a temporary.
+    private static int tempIndex(int register) {
+        return register >= TEMP_TAG ? register - TEMP_TAG : Integer.MAX_VALUE;
+    }
+
+    // Rewrites the tagged constant and temporary operands to their final register indices.
+    // @param chunkCode The instruction stream to rewrite in place.
+    private void relocate(int[] chunkCode) {
+        int pc = 0;
+        while (pc < chunkCode.length) {
+            int opcode = chunkCode[pc++];
+            int registers = switch (opcode) {
+                case OpCode.MOVE -> 2;
+                case OpCode.ADD, OpCode.SUB, OpCode.MUL, OpCode.DIV, OpCode.MOD,
+                     OpCode.LT, OpCode.LE, OpCode.GT, OpCode.GE, OpCode.EQ, OpCode.NE -> 3;
+                case OpCode.JUMP_IF_LT, OpCode.JUMP_IF_LE, OpCode.JUMP_IF_GT,
+                     OpCode.JUMP_IF_GE, OpCode.JUMP_IF_EQ, OpCode.JUMP_IF_NE -> 2;
+                case OpCode.INC, OpCode.PRINT -> 1;
+                default -> 0;
+            };
+            for (int i = 0; i < registers; i++) {
+                int register = chunkCode[pc + i];
+                if (register >= TEMP_TAG) {
+                    chunkCode[pc + i] = variableCount + constants.size() + register - TEMP_TAG;
+                } else if (register >= CONSTANT_TAG) {
+                    chunkCode[pc + i] = variableCount + register - CONSTANT_TAG;
+                }
+            }
+            pc += operandCount(opcode);
+        }
+    }
+
+    // Returns the number of operands that follow an opcode.
+    static int operandCount(int opcode) {
+        return switch (opcode) {
+            case OpCode.MOVE, OpCode.INC -> 2;
+            case OpCode.ADD, OpCode.SUB, OpCode.MUL, OpCode.DIV, OpCode.MOD,
+                 OpCode.LT, OpCode.LE, OpCode.GT, OpCode.GE, OpCode.EQ, OpCode.NE,
+                 OpCode.JUMP_IF_LT, OpCode.JUMP_IF_LE, OpCode.JUMP_IF_GT,
+                 OpCode.JUMP_IF_GE, OpCode.JUMP_IF_EQ, OpCode.JUMP_IF_NE -> 3;
+            case OpCode.JUMP, OpCode.PRINT, OpCode.RUN_LOOP -> 1;
+            default -> 0;
+        };
+    }
+
+    // Appends an instruction with the given operands.
+    private void emit(int opcode, int... operands) {
+        if (size + 1 + operands.length > code.length) {
+            code = Arrays.copyOf(code, code.length * 2);
+        }
+        code[size++] = opcode;
+        for (int operand : operands) {
+            code[size++] = operand;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+import java.util.List;
+
+// Represents a function call in the Abstract Syntax Tree (AST), e.g. 'gcd(a, b)'. A call is an
+// expression, and also a statement when its result is not used.
+class CallNode extends Node {
+    // The name of the function called.
+    public final String name;
+    // The AST nodes representing the arguments, in order.
+    public final List<Node> arguments;
+    // The function called. Set by the Resolver.
+    public FunctionNode function;
+
+    // Constructor for creating a CallNode.
+    // @param name The name of the function.
+    // @param arguments The argument expression nodes.
+    public CallNode(String name, List<Node> arguments) {
+        this.name = name;
+        this.arguments = arguments;
+        arguments.forEach(this::adopt);
+    }
+
+    // Only the tree-walking Interpreter supports functions.
+    @Override
+    int execute(int[] frame) {
+        throw FunctionNode.unsupported("specializing");
+    }
+
+    @Override
+    int evaluate(int[] frame) {
+        throw FunctionNode.unsupported("specializing");
+    }
+
+    @Override
+    void replaceChild(Node oldChild, Node newChild) {
+        if (arguments.contains(oldChild)) {
+            arguments.set(arguments.indexOf(oldChild), newChild);
+        } else {
+            super.replaceChild(oldChild, newChild);
+        }
+    }
+}
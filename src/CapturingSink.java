@@ -0,0 +1,38 @@
+import java.util.ArrayList;
+import java.util.List;
+
+// An OutputSink that keeps the printed lines in memory, for checking the output of a program in
+// tests and benchmarks.
+class CapturingSink implements OutputSink {
+    // The printed lines, formatted as they would be printed.
+    private final List<String> lines = new ArrayList<>();
+
+    @Override
+    public void print(int value) {
+        lines.add(OutputSink.format(value));
+    }
+
+    @Override
+    public void print(Number value) {
+        lines.add(OutputSink.format(value));
+    }
+
+    // Returns the lines printed so far.
+    public List<String> lines() {
+        return lines;
+    }
+
+    // Returns the output printed so far, each line ending with '\n'.
+    public String output() {
+        StringBuilder output = new StringBuilder();
+        for (String line : lines) {
+            output.append(line).append('\n');
+        }
+        return output.toString();
+    }
+
+    // Forgets the output printed so far.
+    public void clear() {
+        lines.clear();
+    }
+}
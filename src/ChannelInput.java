@@ -0,0 +1,86 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// LexerInput that reads ASCII text from a channel, such as standard input, as the Lexer asks for it.
+// Only a window of the text is kept in memory: text before the offset passed to release() is
+// discarded when the window is refilled, so the memory used depends on the longest token rather
+// than on the length of the input.
+class ChannelInput implements LexerInput {
+    // The size of each read from the channel.
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    // The channel the text is read from.
+    private final ReadableByteChannel channel;
+    // The window of text read so far and not yet discarded.
+    private byte[] window = new byte[CHUNK_SIZE];
+    // The absolute offset of window[0], and the number of bytes in the window.
+    private long windowStart = 0;
+    private int filled = 0;
+    // The offset before which the text is no longer needed.
+    private long released = 0;
+    // Whether the end of the channel has been reached.
+    private boolean ended = false;
+
+    // Constructor for creating a ChannelInput.
+    // @param channel The channel to read from.
+    public ChannelInput(ReadableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public int charAt(long offset) {
+        long index = offset - windowStart;
+        while (index >= filled) {
+            if (!fill()) {
+                return -1;
+            }
+            index = offset - windowStart;
+        }
+        return window[(int) index] & 0xff;
+    }
+
+    @Override
+    public String text(long start, long end) {
+        // Make sure the whole range is in the window.
+        charAt(end - 1);
+        return new String(window, (int) (start - windowStart), (int) (end - start), StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public void release(long offset) {
+        released = offset;
+    }
+
+    // Reads the next chunk of the channel into the window, first discarding released text.
+    // @return False if the end of the channel has been reached.
+    private boolean fill() {
+        if (ended) {
+            return false;
+        }
+        int discard = (int) (released - windowStart);
+        if (discard > 0) {
+            System.arraycopy(window, discard, window, 0, filled - discard);
+            filled -= discard;
+            windowStart = released;
+        }
+        // The window only grows when a single token is longer than what is left of it.
+        if (window.length - filled < CHUNK_SIZE) {
+            window = Arrays.copyOf(window, Math.max(window.length * 2, filled + CHUNK_SIZE));
+        }
+        try {
+            int read = channel.read(ByteBuffer.wrap(window, filled, window.length - filled));
+            if (read < 0) {
+                ended = true;
+                return false;
+            }
+            filled += read;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
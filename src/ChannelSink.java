@@ -0,0 +1,117 @@
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+// An OutputSink that writes printed values as ASCII into a reusable byte buffer and writes the
+// buffer to a channel in large chunks. Values are converted digit by digit straight into the
+// buffer, so printing allocates nothing and there is no write per line. Lines end with '\n'.
+class ChannelSink implements OutputSink {
+    // The size of the buffer, and so of most writes to the channel.
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // The longest line a value prints as: "-2147483648\n".
+    private static final int MAX_LINE = 12;
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e', '\n'};
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e', '\n'};
+
+    // The channel the output is written to.
+    private final WritableByteChannel channel;
+    // The buffered output, and the number of bytes of it not yet written.
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int size = 0;
+
+    // Constructor for creating a ChannelSink.
+    // @param channel The channel to write the output to. It is not closed by the sink.
+    public ChannelSink(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    // Returns a sink writing to the standard output of the process.
+    public static ChannelSink standardOutput() {
+        return new ChannelSink(new FileOutputStream(FileDescriptor.out).getChannel());
+    }
+
+    @Override
+    public void print(int value) {
+        if (size > BUFFER_SIZE - MAX_LINE) {
+            flush();
+        }
+        if (value == 0) {
+            put(FALSE);
+        } else if (value == 1) {
+            put(TRUE);
+        } else {
+            // Work on the magnitude as a long, since -Integer.MIN_VALUE does not fit an int.
+            long magnitude = value;
+            if (value < 0) {
+                buffer[size++] = '-';
+                magnitude = -magnitude;
+            }
+            int end = size + digits(magnitude);
+            for (int i = end - 1; i >= size; i--) {
+                buffer[i] = (byte) ('0' + magnitude % 10);
+                magnitude /= 10;
+            }
+            size = end;
+            buffer[size++] = '\n';
+        }
+    }
+
+    // Wide values are rare, so they are formatted through a String.
+    @Override
+    public void print(Number value) {
+        if (value instanceof Integer i) {
+            print(i.intValue());
+            return;
+        }
+        String text = value.toString();
+        if (size > BUFFER_SIZE - text.length() - 1) {
+            flush();
+        }
+        // A BigInteger may have more digits than the buffer holds.
+        for (int i = 0; i < text.length(); i++) {
+            if (size == BUFFER_SIZE) {
+                flush();
+            }
+            buffer[size++] = (byte) text.charAt(i);
+        }
+        if (size == BUFFER_SIZE) {
+            flush();
+        }
+        buffer[size++] = '\n';
+    }
+
+    // Returns the number of decimal digits of a non-negative number.
+    private static int digits(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    // Appends a constant line to the buffer.
+    private void put(byte[] line) {
+        System.arraycopy(line, 0, buffer, size, line.length);
+        size += line.length;
+    }
+
+    // Writes the buffered output to the channel.
+    // @throws UncheckedIOException if the channel cannot be written.
+    @Override
+    public void flush() {
+        ByteBuffer pending = ByteBuffer.wrap(buffer, 0, size);
+        try {
+            while (pending.hasRemaining()) {
+                channel.write(pending);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+// LexerInput over text that is already in memory, such as a String or a memory-mapped file.
+class CharSequenceInput implements LexerInput {
+    // The text.
+    private final CharSequence text;
+    // The offset the input ends at: the length of the text, or less.
+    private final int length;
+
+    // Constructor for creating a CharSequenceInput.
+    // @param text The text to read.
+    public CharSequenceInput(CharSequence text) {
+        this(text, text.length());
+    }
+
+    // Constructor for creating a CharSequenceInput that ends before the end of a text.
+    // @param text The text to read.
+    // @param end The offset the input ends at.
+    public CharSequenceInput(CharSequence text, int end) {
+        this.text = text;
+        this.length = end;
+    }
+
+    @Override
+    public int charAt(long offset) {
+        return offset < length ? text.charAt((int) offset) : -1;
+    }
+
+    @Override
+    public String text(long start, long end) {
+        return text.subSequence((int) start, (int) end).toString();
+    }
+}
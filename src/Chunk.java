@@ -0,0 +1,29 @@
+// A compiled statement: a flat instruction stream for the VirtualMachine.
+// The register file of a chunk is laid out as [variables | constants | temporaries]: variables
+// keep the slots assigned by the Resolver, and constants are copied in before the code runs.
+class Chunk {
+    // The instructions and their operands.
+    public final int[] code;
+    // The values of the constant registers.
+    public final int[] constants;
+    // The register index of the first constant.
+    public final int constantBase;
+    // The total number of registers the code uses.
+    public final int registerCount;
+    // The loops run by RUN_LOOP instructions.
+    public final CompiledLoop[] loops;
+
+    // Constructor for creating a Chunk.
+    // @param code The instruction stream.
+    // @param constants The constant values.
+    // @param constantBase The register index of the first constant.
+    // @param registerCount The total number of registers used.
+    // @param loops The loops run by RUN_LOOP instructions.
+    public Chunk(int[] code, int[] constants, int constantBase, int registerCount, CompiledLoop[] loops) {
+        this.code = code;
+        this.constants = constants;
+        this.constantBase = constantBase;
+        this.registerCount = registerCount;
+        this.loops = loops;
+    }
+}
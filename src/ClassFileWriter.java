@@ -0,0 +1,193 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Writes a minimal JVM class file: a single class with a no-argument constructor, implementing
+// one interface, with one additional method. Used by the LoopCompiler to build hidden classes.
+class ClassFileWriter {
+    // Constant pool tags.
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    // The encoded constant pool entries, and the index of each entry already added.
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> poolIndex = new HashMap<>();
+    private int poolCount = 1;
+
+    // The internal names of this class, its superclass and the interface it implements.
+    private final int thisClass;
+    private final int superClass;
+    private final int interfaceClass;
+
+    // Constructor for creating a ClassFileWriter.
+    // @param className The internal name of the class (e.g. "CompiledLoop$1").
+    // @param interfaceName The internal name of the interface the class implements.
+    public ClassFileWriter(String className, String interfaceName) {
+        thisClass = classConstant(className);
+        superClass = classConstant("java/lang/Object");
+        interfaceClass = classConstant(interfaceName);
+    }
+
+    // Returns the index of the constant pool entry of this class.
+    public int thisClass() {
+        return thisClass;
+    }
+
+    // Returns the index of a CONSTANT_Utf8 entry, adding it if needed.
+    public int utf8(String value) {
+        return constant("U" + value, out -> {
+            out.writeByte(CONSTANT_UTF8);
+            out.writeUTF(value);
+        });
+    }
+
+    // Returns the index of a CONSTANT_Integer entry, adding it if needed.
+    public int integer(int value) {
+        return constant("I" + value, out -> {
+            out.writeByte(CONSTANT_INTEGER);
+            out.writeInt(value);
+        });
+    }
+
+    // Returns the index of a CONSTANT_Class entry, adding it if needed.
+    public int classConstant(String internalName) {
+        int name = utf8(internalName);
+        return constant("C" + internalName, out -> {
+            out.writeByte(CONSTANT_CLASS);
+            out.writeShort(name);
+        });
+    }
+
+    // Returns the index of a CONSTANT_Methodref entry, adding it if needed.
+    public int methodRef(String owner, String name, String descriptor) {
+        int ownerIndex = classConstant(owner);
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int nameAndType = constant("N" + name + descriptor, out -> {
+            out.writeByte(CONSTANT_NAME_AND_TYPE);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+        return constant("M" + owner + "." + name + descriptor, out -> {
+            out.writeByte(CONSTANT_METHODREF);
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    // Writes the body of a constant pool entry.
+    private interface EntryWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    // Adds a constant pool entry unless an identical one exists, and returns its index.
+    private int constant(String key, EntryWriter writer) {
+        Integer existing = poolIndex.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            writer.write(poolOut);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        poolIndex.put(key, poolCount);
+        return poolCount++;
+    }
+
+    // A public method of the class: its code, limits, exception handlers and StackMapTable frames.
+    private record Method(int name, int descriptor, byte[] code, int maxStack, int maxLocals,
+                          int[] exceptionTable, byte[] stackMapTable, int frameCount) {
+    }
+
+    private final List<Method> methods = new ArrayList<>();
+
+    // Adds a public method.
+    // @param name The method name.
+    // @param descriptor The method descriptor.
+    // @param code The bytecode of the method.
+    // @param maxStack The maximum operand stack depth.
+    // @param maxLocals The number of local variable slots.
+    // @param exceptionTable The exception handlers, four values each: the start (inclusive) and end
+    //        (exclusive) of the code they cover, the handler's position and the class constant of
+    //        the exceptions they catch.
+    // @param stackMapTable The encoded StackMapTable entries (may be empty).
+    // @param frameCount The number of StackMapTable entries.
+    public void addMethod(String name, String descriptor, byte[] code, int maxStack, int maxLocals,
+                          int[] exceptionTable, byte[] stackMapTable, int frameCount) {
+        methods.add(new Method(utf8(name), utf8(descriptor), code, maxStack, maxLocals, exceptionTable,
+                stackMapTable, frameCount));
+    }
+
+    // Adds a public no-argument constructor that calls Object's constructor.
+    public void addDefaultConstructor() {
+        int objectInit = methodRef("java/lang/Object", "<init>", "()V");
+        byte[] code = {
+                0x2a,                                                    // aload_0
+                (byte) 0xb7, (byte) (objectInit >> 8), (byte) objectInit, // invokespecial Object.<init>
+                (byte) 0xb1                                              // return
+        };
+        addMethod("<init>", "()V", code, 1, 1, new int[0], new byte[0], 0);
+    }
+
+    // Encodes the class file.
+    // @return The bytes of the class file.
+    public byte[] toByteArray() {
+        int codeAttribute = utf8("Code");
+        int stackMapAttribute = utf8("StackMapTable");
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);  // minor version
+            out.writeShort(52); // major version: Java 8, the first to require StackMapTable frames
+            out.writeShort(poolCount);
+            pool.writeTo(out);
+            out.writeShort(0x0010 | 0x0020); // ACC_FINAL | ACC_SUPER
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(interfaceClass);
+            out.writeShort(0); // fields
+            out.writeShort(methods.size());
+            for (Method method : methods) {
+                out.writeShort(0x0001); // ACC_PUBLIC
+                out.writeShort(method.name);
+                out.writeShort(method.descriptor);
+                out.writeShort(1); // attributes: Code
+                boolean hasFrames = method.frameCount > 0;
+                int stackMapLength = hasFrames ? 2 + method.stackMapTable.length : 0;
+                out.writeShort(codeAttribute);
+                out.writeInt(12 + method.code.length + 2 * method.exceptionTable.length
+                        + (hasFrames ? 6 + stackMapLength : 0));
+                out.writeShort(method.maxStack);
+                out.writeShort(method.maxLocals);
+                out.writeInt(method.code.length);
+                out.write(method.code);
+                out.writeShort(method.exceptionTable.length / 4);
+                for (int value : method.exceptionTable) {
+                    out.writeShort(value);
+                }
+                out.writeShort(hasFrames ? 1 : 0);
+                if (hasFrames) {
+                    out.writeShort(stackMapAttribute);
+                    out.writeInt(stackMapLength);
+                    out.writeShort(method.frameCount);
+                    out.write(method.stackMapTable);
+                }
+            }
+            out.writeShort(0); // class attributes
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
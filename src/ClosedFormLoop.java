@@ -0,0 +1,117 @@
+// An accumulation loop computed in closed form, found by the LoopOptimizer. It replaces loops like
+//     while i <= n { sum = sum + i; i = i + 1 }
+// where i steps by a positive constant, n does not change in the loop and sum adds either i or a
+// constant. The result is computed exactly in long arithmetic; if it does not fit in an int, the
+// loop runs iteration by iteration instead, so that it fails where the loop would overflow.
+class ClosedFormLoop implements CompiledLoop {
+    // The frame slots of the counter, the accumulator and the limit (-1 if the limit is constant).
+    private final int counter;
+    private final int accumulator;
+    private final int limitSlot;
+    // The limit when it is a constant.
+    private final int limitValue;
+    // Whether the condition is 'counter <= limit' rather than 'counter < limit'.
+    private final boolean inclusive;
+    // The constant step of the counter.
+    private final int step;
+    // Whether the accumulator adds the counter (true) or the constant addend (false).
+    private final boolean addsCounter;
+    private final int addend;
+    // Whether the counter is stepped before the accumulator adds it.
+    private final boolean stepFirst;
+
+    // Constructor for creating a ClosedFormLoop.
+    // @param counter The slot of the counter.
+    // @param accumulator The slot of the accumulator.
+    // @param limitSlot The slot of the limit, or -1 if the limit is the constant limitValue.
+    // @param limitValue The constant limit.
+    // @param inclusive Whether the condition is 'counter <= limit' rather than 'counter < limit'.
+    // @param step The positive step of the counter.
+    // @param addsCounter Whether the accumulator adds the counter rather than the constant addend.
+    // @param addend The constant the accumulator adds.
+    // @param stepFirst Whether the counter is stepped before the accumulator adds it.
+    ClosedFormLoop(int counter, int accumulator, int limitSlot, int limitValue, boolean inclusive,
+                   int step, boolean addsCounter, int addend, boolean stepFirst) {
+        this.counter = counter;
+        this.accumulator = accumulator;
+        this.limitSlot = limitSlot;
+        this.limitValue = limitValue;
+        this.inclusive = inclusive;
+        this.step = step;
+        this.addsCounter = addsCounter;
+        this.addend = addend;
+        this.stepFirst = stepFirst;
+    }
+
+    // Runs the loop, failing with an ArithmeticException if a value does not fit in an int, as the
+    // engines without exact arithmetic do.
+    @Override
+    public void run(int[] frame) {
+        if (!runExact(frame)) {
+            // Find where the loop overflows.
+            iterate(frame);
+        }
+    }
+
+    // Runs the loop with exact arithmetic: the counter and the accumulator must end within the int
+    // range. Exact sums do not depend on the order of additions, so the values the
+    // accumulator passes through on the way do not matter.
+    // @param frame The frame storing variable values.
+    // @return Whether the loop ran; false, with the frame unchanged, if a result would not fit in
+    //         an int, so the caller must run the loop one iteration at a time.
+    boolean runExact(int[] frame) {
+        long start = frame[counter];
+        long limit = limitSlot >= 0 ? frame[limitSlot] : limitValue;
+        long last = inclusive ? limit : limit - 1;
+        if (start > last) {
+            return true;
+        }
+        long iterations = (last - start) / step + 1;
+        long end = start + iterations * step;
+        if (end > Integer.MAX_VALUE) {
+            return false;
+        }
+        long accumulated;
+        try {
+            long total;
+            if (addsCounter) {
+                long first = stepFirst ? start + step : start;
+                total = Math.addExact(Math.multiplyExact(iterations, first),
+                        Math.multiplyExact(step, triangle(iterations)));
+            } else {
+                total = Math.multiplyExact(iterations, addend);
+            }
+            accumulated = Math.addExact(frame[accumulator], total);
+        } catch (ArithmeticException e) {
+            return false;
+        }
+        if ((int) accumulated != accumulated) {
+            return false;
+        }
+        frame[accumulator] = (int) accumulated;
+        frame[counter] = (int) end;
+        return true;
+    }
+
+    // Returns k * (k - 1) / 2, dividing whichever factor is even.
+    private static long triangle(long k) {
+        return k % 2 == 0 ? k / 2 * (k - 1) : (k - 1) / 2 * k;
+    }
+
+    // Runs the loop one iteration at a time, failing on int overflow.
+    private void iterate(int[] frame) {
+        while (inclusive ? frame[counter] <= limit(frame) : frame[counter] < limit(frame)) {
+            if (stepFirst) {
+                frame[counter] = Math.addExact(frame[counter], step);
+            }
+            frame[accumulator] = Math.addExact(frame[accumulator], addsCounter ? frame[counter] : addend);
+            if (!stepFirst) {
+                frame[counter] = Math.addExact(frame[counter], step);
+            }
+        }
+    }
+
+    private int limit(int[] frame) {
+        return limitSlot >= 0 ? frame[limitSlot] : limitValue;
+    }
+}
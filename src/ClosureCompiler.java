@@ -0,0 +1,327 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntSupplier;
+
+// The ClosureCompiler pre-binds resolved AST statements into a tree of closures: expressions
+// become IntSuppliers, conditions BooleanSuppliers and statements Statements, which return their
+// Completion status. Each statement is compiled once, so running it involves no instanceof checks
+// or operator string switches.
+// Closures are specialized on the shape of their operands (variable, constant or expression).
+// Arithmetic is in ints; a result that does not fit stops the script with an ArithmeticException.
+class ClosureCompiler implements ExecutionEngine {
+    // The resolver that assigns frame slots to the variables of the program.
+    private final Resolver resolver;
+    // The frame storing variable values, indexed by the slot assigned by the Resolver.
+    private int[] frame = new int[16];
+    // The sink printed values are written to.
+    private final OutputSink sink;
+
+    // Constructor for creating a ClosureCompiler.
+    // @param resolver The resolver used to resolve the statements passed to execute.
+    // @param sink The sink to print to.
+    public ClosureCompiler(Resolver resolver, OutputSink sink) {
+        this.resolver = resolver;
+        this.sink = sink;
+    }
+
+    // A compiled statement.
+    @FunctionalInterface
+    interface Statement {
+        // Runs the statement.
+        // @return The Completion status: NORMAL, or the 'break' or 'continue' that ended the statement.
+        int run();
+    }
+
+    // Compiles and runs a resolved statement.
+    // @param node The statement to execute.
+    @Override
+    public void execute(Node node) {
+        try {
+            compile(node).run();
+        } finally {
+            sink.flush();
+        }
+    }
+
+    // Compiles a resolved statement into a closure bound to the current frame.
+    // @param node The statement to compile.
+    // @return The closure that executes the statement.
+    public Statement compile(Node node) {
+        // Grow the frame before compiling: closures capture the frame array directly.
+        if (frame.length < resolver.slotCount()) {
+            frame = Arrays.copyOf(frame, Math.max(frame.length * 2, resolver.slotCount()));
+        }
+        return statement(node);
+    }
+
+    // Compiles a statement.
+    private Statement statement(Node node) {
+        if (node instanceof VarDeclarationNode varDec) {
+            return store(varDec.slot, varDec.initializer);
+        } else if (node instanceof AssignmentNode assign) {
+            return store(assign.slot, assign.value);
+        } else if (node instanceof PrintNode printNode) {
+            IntSupplier expression = expression(printNode.expression);
+            final OutputSink s = sink;
+            return () -> {
+                s.print(expression.getAsInt());
+                return Completion.NORMAL;
+            };
+        } else if (node instanceof WhileNode whileNode && whileNode.compiled != null) {
+            // A loop computed in closed form runs whole.
+            CompiledLoop loop = whileNode.compiled;
+            final int[] f = frame;
+            return () -> {
+                loop.run(f);
+                return Completion.NORMAL;
+            };
+        } else if (node instanceof WhileNode whileNode) {
+            BooleanSupplier condition = condition(whileNode.condition);
+            Statement body = block(whileNode.body);
+            // Only loops whose body can break or continue check the completion status.
+            if (!jumpsOut(whileNode.body, 0)) {
+                return () -> {
+                    while (condition.getAsBoolean()) {
+                        body.run();
+                    }
+                    return Completion.NORMAL;
+                };
+            }
+            return () -> {
+                while (condition.getAsBoolean()) {
+                    int status = body.run();
+                    if (status == Completion.BREAK) {
+                        break;
+                    }
+                    if (status != Completion.NORMAL && status != Completion.CONTINUE) {
+                        // The 'break' or 'continue' targets an enclosing loop.
+                        return Completion.enclosing(status);
+                    }
+                }
+                return Completion.NORMAL;
+            };
+        } else if (node instanceof IfNode ifNode) {
+            BooleanSupplier condition = condition(ifNode.condition);
+            Statement thenBranch = block(ifNode.thenBranch);
+            if (ifNode.elseBranch.isEmpty()) {
+                return () -> condition.getAsBoolean() ? thenBranch.run() : Completion.NORMAL;
+            }
+            Statement elseBranch = block(ifNode.elseBranch);
+            return () -> condition.getAsBoolean() ? thenBranch.run() : elseBranch.run();
+        } else if (node instanceof BreakNode breakNode) {
+            int status = Completion.of(Completion.BREAK, breakNode.depth);
+            return () -> status;
+        } else if (node instanceof ContinueNode continueNode) {
+            int status = Completion.of(Completion.CONTINUE, continueNode.depth);
+            return () -> status;
+        } else if (IntArray.isArrayStatement(node)) {
+            throw IntArray.unsupported("closure");
+        } else if (FunctionNode.isFunctionStatement(node)) {
+            throw FunctionNode.unsupported("closure");
+        }
+        throw new RuntimeException("Unknown node type");
+    }
+
+    // Compiles a store of an expression into a frame slot.
+    private Statement store(int slot, Node value) {
+        final int[] f = frame;
+        // Specialize 'x = x + c' and 'x = x - c' into an in-place increment. Subtracting MIN_VALUE
+        // cannot be written as adding its negation, which is MIN_VALUE again.
+        if (value instanceof BinaryOpNode binOp
+                && binOp.left instanceof VariableNode variable && variable.slot == slot
+                && binOp.right instanceof NumberNode number
+                && (binOp.operator == Operator.ADD
+                    || binOp.operator == Operator.SUBTRACT && number.value != Integer.MIN_VALUE)) {
+            int delta = binOp.operator == Operator.ADD ? number.value : -number.value;
+            return () -> {
+                f[slot] = Math.addExact(f[slot], delta);
+                return Completion.NORMAL;
+            };
+        }
+        if (value instanceof NumberNode number) {
+            int constant = number.value;
+            return () -> {
+                f[slot] = constant;
+                return Completion.NORMAL;
+            };
+        }
+        if (value instanceof VariableNode variable) {
+            int source = variable.slot;
+            return () -> {
+                f[slot] = f[source];
+                return Completion.NORMAL;
+            };
+        }
+        IntSupplier expression = expression(value);
+        return () -> {
+            f[slot] = expression.getAsInt();
+            return Completion.NORMAL;
+        };
+    }
+
+    // Compiles a block into a single closure.
+    private Statement block(List<Node> statements) {
+        Statement[] compiled = statements.stream().map(this::statement).toArray(Statement[]::new);
+        // A block without 'break' or 'continue' always completes normally, so it skips the status checks.
+        boolean checked = jumpsOut(statements, 0);
+        return switch (compiled.length) {
+            case 0 -> () -> Completion.NORMAL;
+            case 1 -> compiled[0];
+            case 2 -> {
+                Statement first = compiled[0];
+                Statement second = compiled[1];
+                if (!checked) {
+                    yield () -> {
+                        first.run();
+                        return second.run();
+                    };
+                }
+                yield () -> {
+                    int status = first.run();
+                    return status != Completion.NORMAL ? status : second.run();
+                };
+            }
+            default -> {
+                if (!checked) {
+                    yield () -> {
+                        for (Statement statement : compiled) {
+                            statement.run();
+                        }
+                        return Completion.NORMAL;
+                    };
+                }
+                yield () -> {
+                    for (Statement statement : compiled) {
+                        int status = statement.run();
+                        if (status != Completion.NORMAL) {
+                            return status;
+                        }
+                    }
+                    return Completion.NORMAL;
+                };
+            }
+        };
+    }
+
+    // Returns whether a block contains a 'break' or 'continue' aimed at a loop outside of it.
+    // Statements inside nested loops only count if they target a loop beyond the nested ones.
+    // @param statements The block.
+    // @param loops The number of loops within the block that enclose the statements.
+    private static boolean jumpsOut(List<Node> statements, int loops) {
+        for (Node statement : statements) {
+            if (statement instanceof BreakNode breakNode && breakNode.depth >= loops
+                    || statement instanceof ContinueNode continueNode && continueNode.depth >= loops
+                    || statement instanceof IfNode ifNode
+                    && (jumpsOut(ifNode.thenBranch, loops) || jumpsOut(ifNode.elseBranch, loops))
+                    || statement instanceof WhileNode whileNode && jumpsOut(whileNode.body, loops + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Compiles a comparison used as a while or if condition directly into a boolean closure.
+    private BooleanSupplier condition(Node node) {
+        final int[] f = frame;
+        if (!(node instanceof BinaryOpNode binOp)) {
+            throw new RuntimeException("Cannot evaluate condition");
+        }
+        Operator operator = binOp.operator;
+        if (binOp.left instanceof VariableNode left && binOp.right instanceof NumberNode right) {
+            int a = left.slot;
+            int c = right.value;
+            return switch (operator) {
+                case LESS_EQUAL -> () -> f[a] <= c;
+                case GREATER_EQUAL -> () -> f[a] >= c;
+                case LESS -> () -> f[a] < c;
+                case GREATER -> () -> f[a] > c;
+                case EQUAL -> () -> f[a] == c;
+                case NOT_EQUAL -> () -> f[a] != c;
+                default -> throw new RuntimeException("Unknown comparison operator: " + operator);
+            };
+        }
+        if (binOp.left instanceof VariableNode left && binOp.right instanceof VariableNode right) {
+            int a = left.slot;
+            int b = right.slot;
+            return switch (operator) {
+                case LESS_EQUAL -> () -> f[a] <= f[b];
+                case GREATER_EQUAL -> () -> f[a] >= f[b];
+                case LESS -> () -> f[a] < f[b];
+                case GREATER -> () -> f[a] > f[b];
+                case EQUAL -> () -> f[a] == f[b];
+                case NOT_EQUAL -> () -> f[a] != f[b];
+                default -> throw new RuntimeException("Unknown comparison operator: " + operator);
+            };
+        }
+        IntSupplier l = expression(binOp.left);
+        IntSupplier r = expression(binOp.right);
+        return switch (operator) {
+            case LESS_EQUAL -> () -> l.getAsInt() <= r.getAsInt();
+            case GREATER_EQUAL -> () -> l.getAsInt() >= r.getAsInt();
+            case LESS -> () -> l.getAsInt() < r.getAsInt();
+            case GREATER -> () -> l.getAsInt() > r.getAsInt();
+            case EQUAL -> () -> l.getAsInt() == r.getAsInt();
+            case NOT_EQUAL -> () -> l.getAsInt() != r.getAsInt();
+            default -> throw new RuntimeException("Unknown comparison operator: " + operator);
+        };
+    }
+
+    // Compiles an expression.
+    private IntSupplier expression(Node node) {
+        final int[] f = frame;
+        if (node instanceof NumberNode numberNode) {
+            int value = numberNode.value;
+            return () -> value;
+        } else if (node instanceof VariableNode variableNode) {
+            int slot = variableNode.slot;
+            return () -> f[slot];
+        } else if (node instanceof BinaryOpNode binOp) {
+            Operator operator = binOp.operator;
+            if (operator.isComparison()) {
+                // Comparisons used as values produce 1 for true and 0 for false.
+                BooleanSupplier comparison = condition(binOp);
+                return () -> comparison.getAsBoolean() ? 1 : 0;
+            }
+            if (binOp.left instanceof VariableNode left && binOp.right instanceof NumberNode right) {
+                int a = left.slot;
+                int c = right.value;
+                return switch (operator) {
+                    case ADD -> () -> Math.addExact(f[a], c);
+                    case SUBTRACT -> () -> Math.subtractExact(f[a], c);
+                    case MULTIPLY -> () -> Math.multiplyExact(f[a], c);
+                    case DIVIDE -> () -> Math.divideExact(f[a], c);
+                    case REMAINDER -> () -> f[a] % c;
+                    default -> throw new RuntimeException("Unknown operator: " + operator);
+                };
+            }
+            if (binOp.left instanceof VariableNode left && binOp.right instanceof VariableNode right) {
+                int a = left.slot;
+                int b = right.slot;
+                return switch (operator) {
+                    case ADD -> () -> Math.addExact(f[a], f[b]);
+                    case SUBTRACT -> () -> Math.subtractExact(f[a], f[b]);
+                    case MULTIPLY -> () -> Math.multiplyExact(f[a], f[b]);
+                    case DIVIDE -> () -> Math.divideExact(f[a], f[b]);
+                    case REMAINDER -> () -> f[a] % f[b];
+                    default -> throw new RuntimeException("Unknown operator: " + operator);
+                };
+            }
+            IntSupplier l = expression(binOp.left);
+            IntSupplier r = expression(binOp.right);
+            return switch (operator) {
+                case ADD -> () -> Math.addExact(l.getAsInt(), r.getAsInt());
+                case SUBTRACT -> () -> Math.subtractExact(l.getAsInt(), r.getAsInt());
+                case MULTIPLY -> () -> Math.multiplyExact(l.getAsInt(), r.getAsInt());
+                case DIVIDE -> () -> Math.divideExact(l.getAsInt(), r.getAsInt());
+                case REMAINDER -> () -> l.getAsInt() % r.getAsInt();
+                default -> throw new RuntimeException("Unknown operator: " + operator);
+            };
+        } else if (node instanceof ArrayAccessNode) {
+            throw IntArray.unsupported("closure");
+        } else if (node instanceof CallNode) {
+            throw FunctionNode.unsupported("closure");
+        }
+        throw new RuntimeException("Unknown node type");
+    }
+}
@@ -0,0 +1,7 @@
+// A while loop compiled to JVM bytecode by the LoopCompiler, or computed in closed form
+// (see ClosedFormLoop).
+interface CompiledLoop {
+    // Runs the loop to completion, reading and writing variables in the interpreter's frame.
+    // @param frame The frame storing variable values, indexed by the slots assigned by the Resolver.
+    void run(int[] frame);
+}
@@ -0,0 +1,36 @@
+// Completion status codes returned by executing a statement. A statement either completes
+// normally or completes abruptly through a 'break' or 'continue' that unwinds to an enclosing
+// loop, or a 'return' that unwinds to the function. Control flow is passed along as a plain int,
+// so it never allocates or throws.
+// The low two bits hold the kind; for 'break' and 'continue' the bits above hold how many more
+// loops to leave before the target loop is reached (0 for the innermost enclosing loop).
+final class Completion {
+    // The statement completed normally.
+    static final int NORMAL = 0;
+    // A 'break' or 'continue' whose target is the innermost enclosing loop.
+    static final int BREAK = 1;
+    static final int CONTINUE = 2;
+    // A 'return'; the Interpreter keeps the value returned.
+    static final int RETURN = 3;
+    // The step between the statuses of the same kind aimed at successive enclosing loops.
+    private static final int LOOP = 4;
+
+    private Completion() {
+    }
+
+    // Returns the status of a 'break' or 'continue'.
+    // @param kind BREAK or CONTINUE.
+    // @param depth The number of loops between the statement and its target loop.
+    // @return The completion status.
+    static int of(int kind, int depth) {
+        return depth * LOOP + kind;
+    }
+
+    // Returns the status a loop passes on when a 'break' or 'continue' targets an outer loop, or
+    // a 'return' leaves the loop.
+    // @param status A status that is neither NORMAL nor aimed at the loop itself.
+    // @return The same status, aimed one loop further out; RETURN for a 'return'.
+    static int enclosing(int status) {
+        return status == RETURN ? RETURN : status - LOOP;
+    }
+}
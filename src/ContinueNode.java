@@ -0,0 +1,24 @@
+// Represents a 'continue' statement node in the Abstract Syntax Tree (AST).
+class ContinueNode extends Node {
+    // The label of the loop to continue, or null for the innermost enclosing loop.
+    public final String label;
+    // The number of loops between this statement and the loop it continues, set by the Resolver.
+    public int depth = -1;
+
+    // Constructor for creating a ContinueNode that continues the innermost enclosing loop.
+    public ContinueNode() {
+        this(null);
+    }
+
+    // Constructor for creating a ContinueNode.
+    // @param label The label of the loop to continue, or null for the innermost enclosing loop.
+    public ContinueNode(String label) {
+        this.label = label;
+    }
+
+    @Override
+    int execute(int[] frame) {
+        // Complete abruptly; the target loop starts its next iteration when the status reaches it.
+        return Completion.of(Completion.CONTINUE, depth);
+    }
+}
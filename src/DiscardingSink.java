@@ -0,0 +1,11 @@
+// An OutputSink that throws printed values away, for benchmarking computation without I/O.
+// The printed expressions are still evaluated; only the output is dropped.
+class DiscardingSink implements OutputSink {
+    @Override
+    public void print(int value) {
+    }
+
+    @Override
+    public void print(Number value) {
+    }
+}
@@ -0,0 +1,195 @@
+import java.math.BigInteger;
+
+// Exact integer arithmetic for the tree-walking Interpreter. Values are ints on the fast path; a
+// result that does not fit in an int is promoted to a long, and one that does not fit in a long to
+// a BigInteger. Wide values are Numbers (Integer, Long or BigInteger), always narrowed to the
+// smallest of those that holds them, so a value that shrinks back into the int range returns to
+// the fast path.
+// The int operations (see also Operator.applyExact) check for overflow with a few bit operations and signal it by throwing the
+// preallocated OVERFLOW, which costs no allocation; the caller then evaluates the expression again
+// with wide values. Apart from calls, expressions have no side effects, so evaluating one again is
+// safe; the int path never calls a function, and signals that the expression must be evaluated
+// with wide values instead.
+// Values can grow without limit. Under a step budget (see Interpreter.limitSteps), however, they
+// are limited to MAX_BITS bits (see checkWidth), so that a single operation takes at most
+// milliseconds and the budget can stop the script between operations; a loop squaring a number
+// would otherwise soon spend minutes on one multiplication. Operations on BigIntegers also cost
+// interpreter steps in proportion to their size (see cost), so the budget accounts for them.
+final class ExactArithmetic {
+    // Signals that an int operation overflowed, that an operand is a wide value, or that the
+    // expression calls a function.
+    static final class Overflow extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private Overflow() {
+            super("Integer overflow", null, false, false);
+        }
+    }
+
+    // The one instance of Overflow; it has no stack trace.
+    static final Overflow OVERFLOW = new Overflow();
+
+    // The widest value arithmetic may produce under a step budget: 65,536 bits, almost 20,000
+    // decimal digits.
+    static final int MAX_BITS = 1 << 16;
+    // Multiplying, dividing or printing BigIntegers costs a step per this many pairs of 64-bit words.
+    private static final int WORD_PAIRS_PER_STEP = 16;
+
+    private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+    private ExactArithmetic() {
+    }
+
+    // Adds two ints exactly.
+    // @throws Overflow if the sum does not fit in an int.
+    static int add(int left, int right) {
+        int sum = left + right;
+        // Overflow if both operands have the sign the sum lacks.
+        if (((left ^ sum) & (right ^ sum)) < 0) {
+            throw OVERFLOW;
+        }
+        return sum;
+    }
+
+    // Subtracts two ints exactly.
+    // @throws Overflow if the difference does not fit in an int.
+    static int subtract(int left, int right) {
+        int difference = left - right;
+        if (((left ^ right) & (left ^ difference)) < 0) {
+            throw OVERFLOW;
+        }
+        return difference;
+    }
+
+    // Multiplies two ints exactly.
+    // @throws Overflow if the product does not fit in an int.
+    static int multiply(int left, int right) {
+        long product = (long) left * right;
+        if ((int) product != product) {
+            throw OVERFLOW;
+        }
+        return (int) product;
+    }
+
+    // Divides two ints exactly; only MIN_VALUE / -1 overflows.
+    // @throws Overflow if the quotient does not fit in an int.
+    // @throws ArithmeticException for a division by zero.
+    static int divide(int left, int right) {
+        if (left == Integer.MIN_VALUE && right == -1) {
+            throw OVERFLOW;
+        }
+        return left / right;
+    }
+
+    // Applies an operator to two values of any width exactly.
+    // @param operator The operator.
+    // @param left The left operand: an Integer, Long or BigInteger.
+    // @param right The right operand.
+    // @return The narrowed result; Integer 1 or 0 for a comparison.
+    // @throws ArithmeticException for a division or remainder by zero.
+    static Number apply(Operator operator, Number left, Number right) {
+        if (operator.isComparison()) {
+            return operator.test(compare(left, right), 0) ? 1 : 0;
+        }
+        if ((operator == Operator.DIVIDE || operator == Operator.REMAINDER) && isZero(right)) {
+            // The same error as int division.
+            throw new ArithmeticException("/ by zero");
+        }
+        if (!(left instanceof BigInteger) && !(right instanceof BigInteger)) {
+            long l = left.longValue();
+            long r = right.longValue();
+            try {
+                return narrow(switch (operator) {
+                    case ADD -> Math.addExact(l, r);
+                    case SUBTRACT -> Math.subtractExact(l, r);
+                    case MULTIPLY -> Math.multiplyExact(l, r);
+                    case DIVIDE -> Math.divideExact(l, r);
+                    default -> l % r;
+                });
+            } catch (ArithmeticException e) {
+                // The result does not fit in a long.
+            }
+        }
+        BigInteger l = big(left);
+        BigInteger r = big(right);
+        return narrow(switch (operator) {
+            case ADD -> l.add(r);
+            case SUBTRACT -> l.subtract(r);
+            case MULTIPLY -> l.multiply(r);
+            case DIVIDE -> l.divide(r);
+            default -> l.remainder(r);
+        });
+    }
+
+    // Compares two values of any width.
+    // @return A negative number, zero or a positive number as left is less than, equal to or greater than right.
+    static int compare(Number left, Number right) {
+        if (left instanceof BigInteger || right instanceof BigInteger) {
+            return big(left).compareTo(big(right));
+        }
+        return Long.compare(left.longValue(), right.longValue());
+    }
+
+    // Returns a long as the narrowest Number that holds it.
+    static Number narrow(long value) {
+        return (int) value == value ? (Number) (int) value : (Number) value;
+    }
+
+    // Returns a BigInteger as the narrowest Number that holds it.
+    static Number narrow(BigInteger value) {
+        if (value.compareTo(LONG_MIN) >= 0 && value.compareTo(LONG_MAX) <= 0) {
+            return narrow(value.longValue());
+        }
+        return value;
+    }
+
+    // Checks that a value is at most MAX_BITS bits wide, as values computed under a step budget
+    // must be.
+    // @param value The value.
+    // @return The value.
+    // @throws RuntimeException if the value is wider than MAX_BITS.
+    static Number checkWidth(Number value) {
+        if (value instanceof BigInteger big && big.bitLength() > MAX_BITS) {
+            throw new RuntimeException("Integer too large: more than " + MAX_BITS + " bits");
+        }
+        return value;
+    }
+
+    // Returns the steps an operation costs beyond the step of the loop it runs in: nothing for
+    // ints and longs; for BigIntegers, a step per 64-bit word added, subtracted or compared, and
+    // for multiplication, division and remainder a step per WORD_PAIRS_PER_STEP pairs of words.
+    // @param operator The operator.
+    // @param left The left operand: an Integer, Long or BigInteger.
+    // @param right The right operand.
+    static long cost(Operator operator, Number left, Number right) {
+        if (!(left instanceof BigInteger) && !(right instanceof BigInteger)) {
+            return 0;
+        }
+        long leftWords = words(left);
+        long rightWords = words(right);
+        return switch (operator) {
+            case MULTIPLY, DIVIDE, REMAINDER -> 1 + leftWords * rightWords / WORD_PAIRS_PER_STEP;
+            default -> Math.max(leftWords, rightWords);
+        };
+    }
+
+    // Returns the steps printing a value costs: nothing for ints and longs, and for BigIntegers,
+    // whose conversion to decimal takes time quadratic in their length, as much as squaring it.
+    static long printCost(Number value) {
+        return value instanceof BigInteger ? cost(Operator.MULTIPLY, value, value) : 0;
+    }
+
+    // Returns the number of 64-bit words of a value.
+    private static long words(Number value) {
+        return value instanceof BigInteger big ? big.bitLength() / 64 + 1 : 1;
+    }
+
+    private static BigInteger big(Number value) {
+        return value instanceof BigInteger big ? big : BigInteger.valueOf(value.longValue());
+    }
+
+    private static boolean isZero(Number value) {
+        return value instanceof BigInteger big ? big.signum() == 0 : value.longValue() == 0;
+    }
+}
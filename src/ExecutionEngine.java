@@ -0,0 +1,7 @@
+// Common interface of the engines that can execute resolved AST statements.
+interface ExecutionEngine {
+    // Executes a statement that has already been resolved by the Resolver. Its output has been
+    // flushed to the engine's OutputSink when this returns, even if the statement fails.
+    // @param node The statement to execute.
+    void execute(Node node);
+}
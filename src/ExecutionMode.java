@@ -0,0 +1,61 @@
+import java.util.function.BiFunction;
+
+// Enumerates the available execution engines.
+// Only TREE computes exactly, promoting results past the int range to BigInteger (see
+// ExactArithmetic); the other engines keep 32-bit ints and stop the script with an "integer
+// overflow" ArithmeticException instead. A script that does not overflow therefore prints the same in
+// every mode, and one that does either prints the exact results or fails, never a wrapped value.
+enum ExecutionMode {
+    // Walks the AST directly.
+    TREE(Interpreter::new),
+    // Walks the AST and compiles hot while loops to JVM bytecode.
+    JIT((resolver, sink) -> new Interpreter(resolver, true, sink)),
+    // Compiles each statement to bytecode and runs it on the VirtualMachine.
+    BYTECODE(VirtualMachine::new),
+    // Pre-binds each statement into a tree of specialized closures.
+    CLOSURE(ClosureCompiler::new),
+    // Lets the AST nodes execute themselves, specializing in place as they run.
+    SPECIALIZING(NodeInterpreter::new),
+    // Flattens each statement into parallel arrays (see FlatAst) and walks those.
+    FLAT(FlatInterpreter::new);
+
+    // Creates an engine of this mode for a given resolver and output sink.
+    private final BiFunction<Resolver, OutputSink, ExecutionEngine> factory;
+
+    ExecutionMode(BiFunction<Resolver, OutputSink, ExecutionEngine> factory) {
+        this.factory = factory;
+    }
+
+    // Returns whether engines of this mode execute the AST nodes themselves, rather than compiling
+    // them, and so can run the fused nodes created by the Fuser.
+    public boolean executesNodes() {
+        return this == TREE || this == SPECIALIZING;
+    }
+
+    // Returns whether engines of this mode promote results past the int range instead of failing.
+    public boolean exactArithmetic() {
+        return this == TREE;
+    }
+
+    // Returns whether engines of this mode change the AST as they run it: the JIT counts and
+    // compiles loops in their nodes, and specializing nodes replace themselves. A program run by
+    // such an engine cannot be shared with other engines running at the same time.
+    public boolean changesAst() {
+        return this == JIT || this == SPECIALIZING;
+    }
+
+    // Creates a new engine of this mode that prints to the standard output.
+    // @param resolver The resolver that assigns frame slots to the statements the engine executes.
+    // @return A new execution engine.
+    public ExecutionEngine create(Resolver resolver) {
+        return create(resolver, ChannelSink.standardOutput());
+    }
+
+    // Creates a new engine of this mode.
+    // @param resolver The resolver that assigns frame slots to the statements the engine executes.
+    // @param sink The sink the engine prints to.
+    // @return A new execution engine.
+    public ExecutionEngine create(Resolver resolver, OutputSink sink) {
+        return factory.apply(resolver, sink);
+    }
+}
@@ -0,0 +1,177 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// A resolved program flattened into parallel primitive arrays, one entry per node, so that walking
+// it reads a few dense arrays instead of chasing references between small heap objects. Nodes are
+// identified by their int index. Every node has a kind, two operands A and B, and a run of
+// children: the children of a node are stored next to each other, starting at childStart.
+// The top-level statements are nodes 0 to statementCount - 1. Per kind:
+//     NUMBER       A = the value
+//     VARIABLE     A = the frame slot
+//     BINARY       A = the Operator ordinal; children: left, right
+//     STORE        A = the frame slot (declaration or assignment); child: the value
+//     PRINT        child: the expression
+//     WHILE        B = the index of the loop in loops, or -1; children: condition, body...
+//     IF           B = the number of 'then' statements; children: condition, then..., else...
+//     BREAK        A = the number of loops to leave, as bound by the Resolver
+//     CONTINUE     A = the number of loops to leave
+// Fused nodes are not flattened; run the Fuser only on programs for engines that execute nodes.
+final class FlatAst {
+    // The node kinds.
+    static final byte NUMBER = 0;
+    static final byte VARIABLE = 1;
+    static final byte BINARY = 2;
+    static final byte STORE = 3;
+    static final byte PRINT = 4;
+    static final byte WHILE = 5;
+    static final byte IF = 6;
+    static final byte BREAK = 7;
+    static final byte CONTINUE = 8;
+
+    // The parallel node arrays, indexed by node.
+    final byte[] kind;
+    final int[] operandA;
+    final int[] operandB;
+    final int[] childStart;
+    final int[] childCount;
+    // The loops the LoopOptimizer computes in closed form, referred to by WHILE nodes.
+    final CompiledLoop[] loops;
+    // The number of top-level statements, which are the first nodes.
+    final int statementCount;
+
+    private FlatAst(Builder builder, int statementCount) {
+        int size = builder.size;
+        this.kind = Arrays.copyOf(builder.kind, size);
+        this.operandA = Arrays.copyOf(builder.operandA, size);
+        this.operandB = Arrays.copyOf(builder.operandB, size);
+        this.childStart = Arrays.copyOf(builder.childStart, size);
+        this.childCount = Arrays.copyOf(builder.childCount, size);
+        this.loops = builder.loops.toArray(new CompiledLoop[0]);
+        this.statementCount = statementCount;
+    }
+
+    // Flattens resolved statements. The statements are not changed.
+    // @param statements The top-level statements, resolved by the Resolver.
+    // @return The flattened program.
+    // @throws RuntimeException if the statements contain fused or unknown nodes.
+    static FlatAst flatten(List<Node> statements) {
+        Builder builder = new Builder();
+        builder.children(statements, builder.reserve(statements.size()));
+        return new FlatAst(builder, statements.size());
+    }
+
+    // Returns the number of nodes.
+    public int nodeCount() {
+        return kind.length;
+    }
+
+    // Returns the number of bytes taken by the node arrays, excluding the closed-form loops.
+    public long footprint() {
+        // Five arrays with a 16-byte header each: the kinds take one byte per node, the rest four.
+        return 5 * 16L + kind.length * 17L;
+    }
+
+    // Appends nodes to growing arrays. A node's children are reserved as one run before any of
+    // them is filled in, so they end up next to each other.
+    private static final class Builder {
+        private byte[] kind = new byte[1024];
+        private int[] operandA = new int[1024];
+        private int[] operandB = new int[1024];
+        private int[] childStart = new int[1024];
+        private int[] childCount = new int[1024];
+        private final List<CompiledLoop> loops = new ArrayList<>();
+        private int size = 0;
+
+        // Reserves a run of consecutive nodes.
+        // @param count The number of nodes.
+        // @return The index of the first node.
+        private int reserve(int count) {
+            if (size + count > kind.length) {
+                int capacity = Math.max(kind.length * 2, size + count);
+                kind = Arrays.copyOf(kind, capacity);
+                operandA = Arrays.copyOf(operandA, capacity);
+                operandB = Arrays.copyOf(operandB, capacity);
+                childStart = Arrays.copyOf(childStart, capacity);
+                childCount = Arrays.copyOf(childCount, capacity);
+            }
+            int first = size;
+            size += count;
+            return first;
+        }
+
+        // Fills in reserved nodes from a list of tree nodes.
+        private void children(List<Node> nodes, int first) {
+            for (int i = 0; i < nodes.size(); i++) {
+                node(nodes.get(i), first + i);
+            }
+        }
+
+        // Fills in a reserved node and, recursively, its children.
+        // @param node The tree node.
+        // @param index The index reserved for it.
+        private void node(Node node, int index) {
+            operandB[index] = -1;
+            if (node instanceof NumberNode number) {
+                set(index, NUMBER, number.value);
+            } else if (node instanceof VariableNode variable) {
+                set(index, VARIABLE, variable.slot);
+            } else if (node instanceof BinaryOpNode binOp) {
+                set(index, BINARY, binOp.operator.ordinal());
+                int first = parent(index, 2);
+                node(binOp.left, first);
+                node(binOp.right, first + 1);
+            } else if (node instanceof VarDeclarationNode varDec) {
+                set(index, STORE, varDec.slot);
+                node(varDec.initializer, parent(index, 1));
+            } else if (node instanceof AssignmentNode assign) {
+                set(index, STORE, assign.slot);
+                node(assign.value, parent(index, 1));
+            } else if (node instanceof PrintNode printNode) {
+                set(index, PRINT, 0);
+                node(printNode.expression, parent(index, 1));
+            } else if (node instanceof WhileNode whileNode) {
+                set(index, WHILE, 0);
+                if (whileNode.compiled != null) {
+                    operandB[index] = loops.size();
+                    loops.add(whileNode.compiled);
+                }
+                int first = parent(index, 1 + whileNode.body.size());
+                node(whileNode.condition, first);
+                children(whileNode.body, first + 1);
+            } else if (node instanceof IfNode ifNode) {
+                set(index, IF, 0);
+                operandB[index] = ifNode.thenBranch.size();
+                int first = parent(index, 1 + ifNode.thenBranch.size() + ifNode.elseBranch.size());
+                node(ifNode.condition, first);
+                children(ifNode.thenBranch, first + 1);
+                children(ifNode.elseBranch, first + 1 + ifNode.thenBranch.size());
+            } else if (node instanceof BreakNode breakNode) {
+                set(index, BREAK, breakNode.depth);
+            } else if (node instanceof ContinueNode continueNode) {
+                set(index, CONTINUE, continueNode.depth);
+            } else if (IntArray.isArrayStatement(node) || node instanceof ArrayAccessNode) {
+                throw IntArray.unsupported("flat");
+            } else if (FunctionNode.isFunctionStatement(node)) {
+                throw FunctionNode.unsupported("flat");
+            } else {
+                throw new RuntimeException("Cannot flatten node: " + node.getClass().getName());
+            }
+        }
+
+        private void set(int index, byte nodeKind, int a) {
+            kind[index] = nodeKind;
+            operandA[index] = a;
+        }
+
+        // Reserves the children of a node.
+        // @return The index of the first child.
+        private int parent(int index, int count) {
+            // Reserve first: it may replace the arrays.
+            int first = reserve(count);
+            childStart[index] = first;
+            childCount[index] = count;
+            return first;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+import java.util.Arrays;
+import java.util.List;
+
+// Executes programs in their flattened form (see FlatAst), `flat` mode. Each node is an int index
+// into the FlatAst arrays, so the interpreter reads primitive arrays rather than following
+// references between node objects. Statements passed to execute are flattened first; a whole
+// program flattened once can be run with run(FlatAst), after which its tree is no longer needed.
+class FlatInterpreter implements ExecutionEngine {
+    // The resolver that assigns frame slots to the variables of the program.
+    private final Resolver resolver;
+    // The sink printed values are written to.
+    private final OutputSink sink;
+    // The frame storing variable values, indexed by the slot assigned by the Resolver.
+    private int[] frame = new int[16];
+    // The arrays of the program being run.
+    private byte[] kind;
+    private int[] operandA;
+    private int[] operandB;
+    private int[] childStart;
+    private int[] childCount;
+    private CompiledLoop[] loops;
+
+    private static final Operator[] OPERATORS = Operator.values();
+
+    // Constructor for creating a FlatInterpreter.
+    // @param resolver The resolver used to resolve the statements passed to execute.
+    // @param sink The sink to print to.
+    public FlatInterpreter(Resolver resolver, OutputSink sink) {
+        this.resolver = resolver;
+        this.sink = sink;
+    }
+
+    // Flattens a resolved statement and executes it.
+    // @param node The statement to execute.
+    @Override
+    public void execute(Node node) {
+        run(FlatAst.flatten(List.of(node)));
+    }
+
+    // Executes the top-level statements of a flattened program, flushing the output after each.
+    // @param program The program, flattened from statements resolved by this engine's resolver.
+    public void run(FlatAst program) {
+        // Grow the frame if the resolver has handed out new slots since the last program.
+        if (frame.length < resolver.slotCount()) {
+            frame = Arrays.copyOf(frame, Math.max(frame.length * 2, resolver.slotCount()));
+        }
+        kind = program.kind;
+        operandA = program.operandA;
+        operandB = program.operandB;
+        childStart = program.childStart;
+        childCount = program.childCount;
+        loops = program.loops;
+        for (int statement = 0; statement < program.statementCount; statement++) {
+            try {
+                run(statement);
+            } finally {
+                sink.flush();
+            }
+        }
+    }
+
+    // Executes a statement node.
+    // @param node The index of the node.
+    // @return The Completion status: NORMAL, or the 'break' or 'continue' that ended the statement.
+    private int run(int node) {
+        switch (kind[node]) {
+            case FlatAst.STORE -> frame[operandA[node]] = evaluate(childStart[node]);
+            case FlatAst.PRINT -> sink.print(evaluate(childStart[node]));
+            case FlatAst.WHILE -> {
+                if (operandB[node] >= 0) {
+                    loops[operandB[node]].run(frame);
+                    return Completion.NORMAL;
+                }
+                int condition = childStart[node];
+                int bodyEnd = condition + childCount[node];
+                while (evaluateCondition(condition)) {
+                    int status = runBlock(condition + 1, bodyEnd);
+                    if (status == Completion.BREAK) {
+                        break;
+                    }
+                    // A 'break' or 'continue' aimed at an enclosing loop ends this loop and unwinds further.
+                    if (status != Completion.NORMAL && status != Completion.CONTINUE) {
+                        return Completion.enclosing(status);
+                    }
+                }
+            }
+            case FlatAst.IF -> {
+                int condition = childStart[node];
+                int elseStart = condition + 1 + operandB[node];
+                return evaluateCondition(condition)
+                        ? runBlock(condition + 1, elseStart)
+                        : runBlock(elseStart, condition + childCount[node]);
+            }
+            case FlatAst.BREAK -> {
+                return Completion.of(Completion.BREAK, operandA[node]);
+            }
+            case FlatAst.CONTINUE -> {
+                return Completion.of(Completion.CONTINUE, operandA[node]);
+            }
+            default -> throw new RuntimeException("Unknown node type");
+        }
+        return Completion.NORMAL;
+    }
+
+    // Executes a run of statement nodes until one completes abruptly.
+    // @param start The index of the first statement.
+    // @param end The index after the last statement.
+    // @return NORMAL, or the status of the 'break' or 'continue' that ended the block.
+    private int runBlock(int start, int end) {
+        for (int statement = start; statement < end; statement++) {
+            int status = run(statement);
+            if (status != Completion.NORMAL) {
+                return status;
+            }
+        }
+        return Completion.NORMAL;
+    }
+
+    // Evaluates an expression node.
+    // @param node The index of the node.
+    // @return The integer value of the expression.
+    private int evaluate(int node) {
+        switch (kind[node]) {
+            case FlatAst.NUMBER -> {
+                return operandA[node];
+            }
+            case FlatAst.VARIABLE -> {
+                return frame[operandA[node]];
+            }
+            case FlatAst.BINARY -> {
+                int left = evaluate(childStart[node]);
+                int right = evaluate(childStart[node] + 1);
+                return switch (OPERATORS[operandA[node]]) {
+                    case ADD -> Math.addExact(left, right);
+                    case SUBTRACT -> Math.subtractExact(left, right);
+                    case MULTIPLY -> Math.multiplyExact(left, right);
+                    case DIVIDE -> Math.divideExact(left, right);
+                    case REMAINDER -> left % right;
+                    case LESS_EQUAL -> left <= right ? 1 : 0;
+                    case GREATER_EQUAL -> left >= right ? 1 : 0;
+                    case LESS -> left < right ? 1 : 0;
+                    case GREATER -> left > right ? 1 : 0;
+                    case EQUAL -> left == right ? 1 : 0;
+                    case NOT_EQUAL -> left != right ? 1 : 0;
+                };
+            }
+            default -> throw new RuntimeException("Unknown node type");
+        }
+    }
+
+    // Evaluates the condition of a while or if statement.
+    // @param node The index of the condition node.
+    // @return True if the condition is met, false otherwise.
+    private boolean evaluateCondition(int node) {
+        if (kind[node] != FlatAst.BINARY) {
+            throw new RuntimeException("Cannot evaluate condition");
+        }
+        int left = evaluate(childStart[node]);
+        int right = evaluate(childStart[node] + 1);
+        return switch (OPERATORS[operandA[node]]) {
+            case LESS_EQUAL -> left <= right;
+            case GREATER_EQUAL -> left >= right;
+            case LESS -> left < right;
+            case GREATER -> left > right;
+            case EQUAL -> left == right;
+            case NOT_EQUAL -> left != right;
+            default -> throw new RuntimeException("Unknown comparison operator: " + OPERATORS[operandA[node]]);
+        };
+    }
+}
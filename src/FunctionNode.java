@@ -0,0 +1,64 @@
+import java.util.List;
+
+// Represents a function declaration in the Abstract Syntax Tree (AST), e.g. 'func gcd(a, b) { ... }'.
+// A function marked pure, as in 'pure func fib(n) { ... }', neither prints nor calls functions
+// that are not pure, so its result depends only on its arguments and the Interpreter remembers
+// it for each distinct list of arguments.
+// Functions are declared at the top level, before they are called. A function sees only its
+// parameters and the variables and arrays it declares, which live in a frame of its own.
+class FunctionNode extends Node {
+    // The name of the function.
+    public final String name;
+    // The names of the parameters, in order.
+    public final List<String> parameters;
+    // The statements of the function body.
+    public final List<Node> body;
+    // Whether the function is marked pure.
+    public final boolean pure;
+    // The number of slots in a frame of the function, of which the parameters take the first,
+    // and whether it declares arrays. Set by the Resolver.
+    public int slotCount;
+    public boolean declaresArrays;
+    // The index of the function among those of the program, starting at 0. Set by the Resolver.
+    public int index = -1;
+
+    // Constructor for creating a FunctionNode.
+    // @param name The name of the function.
+    // @param parameters The names of the parameters.
+    // @param body The list of statements in the function body.
+    // @param pure Whether the function is marked pure.
+    public FunctionNode(String name, List<String> parameters, List<Node> body, boolean pure) {
+        this.name = name;
+        this.parameters = parameters;
+        this.body = body;
+        this.pure = pure;
+        body.forEach(this::adopt);
+    }
+
+    // Returns the error raised by the engines that do not support functions.
+    // @param mode The name of the execution mode.
+    static RuntimeException unsupported(String mode) {
+        return new RuntimeException("Functions are only supported in the tree and jit modes, not in " + mode + " mode");
+    }
+
+    // Returns whether a statement declares a function, calls one or returns from one; the engines
+    // that do not support functions reject these.
+    static boolean isFunctionStatement(Node node) {
+        return node instanceof FunctionNode || node instanceof CallNode || node instanceof ReturnNode;
+    }
+
+    // Only the tree-walking Interpreter supports functions.
+    @Override
+    int execute(int[] frame) {
+        throw unsupported("specializing");
+    }
+
+    @Override
+    void replaceChild(Node oldChild, Node newChild) {
+        if (body.contains(oldChild)) {
+            body.set(body.indexOf(oldChild), newChild);
+        } else {
+            super.replaceChild(oldChild, newChild);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+// The fused node classes the Fuser replaces common statement and condition shapes with. Each one
+// does the work of a small subtree (a store, its operator and its variable and constant operands)
+// in a single node, reading its operands straight from the frame instead of evaluating children.
+final class FusedNodes {
+    private FusedNodes() {
+    }
+
+    // Base class of the fused nodes.
+    abstract static class FusedNode extends Node {
+        // The number of AST nodes this node does the work of.
+        final int covers;
+        // The subtree this node replaced, set by the Fuser. The tree-walking Interpreter runs it
+        // instead when a result does not fit in an int or an operand is a wide value.
+        Node original;
+
+        FusedNode(int covers) {
+            this.covers = covers;
+        }
+
+        // Executes this node as a statement like execute, but with exact arithmetic.
+        // @param frame The frame storing variable values.
+        // @return The Completion status.
+        // @throws ExactArithmetic.Overflow, before changing the frame, if a result does not fit in an int.
+        int executeExact(int[] frame) {
+            return execute(frame);
+        }
+    }
+
+    // 'x = x + c' and 'x = x - c': adds a constant to a frame slot in place.
+    static final class IncrementNode extends FusedNode {
+        final int slot;
+        final int delta;
+
+        IncrementNode(int slot, int delta) {
+            super(4);
+            this.slot = slot;
+            this.delta = delta;
+        }
+
+        @Override
+        int execute(int[] frame) {
+            frame[slot] = Math.addExact(frame[slot], delta);
+            return Completion.NORMAL;
+        }
+
+        @Override
+        int executeExact(int[] frame) {
+            frame[slot] = ExactArithmetic.add(frame[slot], delta);
+            return Completion.NORMAL;
+        }
+    }
+
+    // 'x = a op b' and 'var x = a op b': stores an operation on two variables.
+    static final class StoreVariablesNode extends FusedNode {
+        final int target;
+        final Operator operator;
+        final int left;
+        final int right;
+
+        StoreVariablesNode(int target, Operator operator, int left, int right) {
+            super(4);
+            this.target = target;
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        int execute(int[] frame) {
+            frame[target] = operator.apply(frame[left], frame[right]);
+            return Completion.NORMAL;
+        }
+
+        @Override
+        int executeExact(int[] frame) {
+            frame[target] = operator.applyExact(frame[left], frame[right]);
+            return Completion.NORMAL;
+        }
+    }
+
+    // 'x = a op c' and 'var x = a op c': stores an operation on a variable and a constant.
+    static final class StoreVariableConstantNode extends FusedNode {
+        final int target;
+        final Operator operator;
+        final int left;
+        final int constant;
+
+        StoreVariableConstantNode(int target, Operator operator, int left, int constant) {
+            super(4);
+            this.target = target;
+            this.operator = operator;
+            this.left = left;
+            this.constant = constant;
+        }
+
+        @Override
+        int execute(int[] frame) {
+            frame[target] = operator.apply(frame[left], constant);
+            return Completion.NORMAL;
+        }
+
+        @Override
+        int executeExact(int[] frame) {
+            frame[target] = operator.applyExact(frame[left], constant);
+            return Completion.NORMAL;
+        }
+    }
+
+    // 'a op b' as a while or if condition: compares two variables.
+    static final class CompareVariablesNode extends FusedNode {
+        final Operator operator;
+        final int left;
+        final int right;
+
+        CompareVariablesNode(Operator operator, int left, int right) {
+            super(3);
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean evaluateCondition(int[] frame) {
+            return operator.test(frame[left], frame[right]);
+        }
+    }
+
+    // 'a op c' as a while or if condition: compares a variable with a constant.
+    static final class CompareVariableConstantNode extends FusedNode {
+        final Operator operator;
+        final int left;
+        final int constant;
+
+        CompareVariableConstantNode(Operator operator, int left, int constant) {
+            super(3);
+            this.operator = operator;
+            this.left = left;
+            this.constant = constant;
+        }
+
+        @Override
+        boolean evaluateCondition(int[] frame) {
+            return operator.test(frame[left], constant);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+import java.util.List;
+
+// The Fuser replaces the most frequently executed statement and condition shapes of a resolved
+// program with fused nodes (see FusedNodes), which do the work of the whole shape in one step:
+// - 'x = x + c' and 'x = x - c' become an in-place increment.
+// - 'x = a op b' and 'x = a op c', as assignments or declarations, become a single store.
+// - 'a op b' and 'a op c' as while or if conditions become a single comparison.
+// Here a and b are variables and c is a constant. The rewrite works one statement at a time, so it
+// can also be applied to a program that is streamed. Only engines that execute the AST nodes
+// themselves understand fused nodes (see ExecutionMode.executesNodes).
+class Fuser {
+    // The number of fused nodes created, and the number of AST nodes they replaced.
+    private int fusedNodes = 0;
+    private int replacedNodes = 0;
+
+    // Fuses the shapes in a resolved statement, including those nested in loops, ifs and functions.
+    // @param statement The statement to rewrite.
+    // @return The rewritten statement; a different node if the statement itself was fused.
+    public Node fuse(Node statement) {
+        if (statement instanceof VarDeclarationNode varDec) {
+            return store(statement, varDec.slot, varDec.initializer);
+        } else if (statement instanceof AssignmentNode assign) {
+            return store(statement, assign.slot, assign.value);
+        } else if (statement instanceof WhileNode whileNode) {
+            whileNode.condition = whileNode.adopt(condition(whileNode.condition));
+            block(whileNode, whileNode.body);
+        } else if (statement instanceof IfNode ifNode) {
+            ifNode.condition = ifNode.adopt(condition(ifNode.condition));
+            block(ifNode, ifNode.thenBranch);
+            block(ifNode, ifNode.elseBranch);
+        } else if (statement instanceof FunctionNode function) {
+            block(function, function.body);
+        }
+        return statement;
+    }
+
+    // Fuses the statements of a block in place.
+    private void block(Node parent, List<Node> statements) {
+        for (int i = 0; i < statements.size(); i++) {
+            statements.set(i, parent.adopt(fuse(statements.get(i))));
+        }
+    }
+
+    // Returns the fused form of a store, or the store itself if its value has another shape.
+    // @param statement The declaration or assignment.
+    // @param slot The slot it writes.
+    // @param value The value it stores.
+    private Node store(Node statement, int slot, Node value) {
+        if (!(value instanceof BinaryOpNode binOp) || !(binOp.left instanceof VariableNode left)) {
+            return statement;
+        }
+        FusedNodes.FusedNode fused;
+        if (binOp.right instanceof NumberNode number) {
+            if (left.slot == slot && binOp.operator == Operator.ADD) {
+                fused = new FusedNodes.IncrementNode(slot, number.value);
+            } else if (left.slot == slot && binOp.operator == Operator.SUBTRACT && number.value != Integer.MIN_VALUE) {
+                // Subtracting MIN_VALUE cannot be written as adding its negation, which is MIN_VALUE again.
+                fused = new FusedNodes.IncrementNode(slot, -number.value);
+            } else {
+                fused = new FusedNodes.StoreVariableConstantNode(slot, binOp.operator, left.slot, number.value);
+            }
+        } else if (binOp.right instanceof VariableNode right) {
+            fused = new FusedNodes.StoreVariablesNode(slot, binOp.operator, left.slot, right.slot);
+        } else {
+            return statement;
+        }
+        return replaced(fused, statement);
+    }
+
+    // Returns the fused form of a while or if condition, or the condition itself.
+    private Node condition(Node condition) {
+        // Anything but a comparison is left to fail as before.
+        if (!(condition instanceof BinaryOpNode binOp) || !binOp.operator.isComparison()
+                || !(binOp.left instanceof VariableNode left)) {
+            return condition;
+        }
+        if (binOp.right instanceof NumberNode number) {
+            return replaced(new FusedNodes.CompareVariableConstantNode(binOp.operator, left.slot, number.value), condition);
+        } else if (binOp.right instanceof VariableNode right) {
+            return replaced(new FusedNodes.CompareVariablesNode(binOp.operator, left.slot, right.slot), condition);
+        }
+        return condition;
+    }
+
+    // Records that a fused node replaced a subtree.
+    private Node replaced(FusedNodes.FusedNode fused, Node original) {
+        fusedNodes++;
+        replacedNodes += Optimizer.count(original);
+        fused.line = original.line;
+        fused.original = original;
+        return fused;
+    }
+
+    // Returns the number of fused nodes created.
+    public int fusedNodes() {
+        return fusedNodes;
+    }
+
+    // Returns the number of AST nodes the fused nodes replaced.
+    public int replacedNodes() {
+        return replacedNodes;
+    }
+}
@@ -1,17 +1,58 @@
+import java.util.ArrayList;
 import java.util.List;
 
 // Represents a node in the Abstract Syntax Tree (AST) for an 'if' statement.
 class IfNode extends Node {
     // The AST node representing the condition of the 'if' statement.
-    public final Node condition;
+    public Node condition;
     // A list of AST nodes representing the statements to execute if the condition is true.
     public final List<Node> thenBranch;
+    // A list of AST nodes representing the statements to execute if the condition is false.
+    // Empty if there is no 'else' block; an 'else if' is an 'else' block holding a single IfNode.
+    public final List<Node> elseBranch;
 
-    // Constructor for creating an IfNode.
+    // Constructor for creating an IfNode without an 'else' block.
     // @param condition The condition node.
     // @param thenBranch The list of statements in the 'then' block.
     public IfNode(Node condition, List<Node> thenBranch) {
-        this.condition = condition;
+        this(condition, thenBranch, new ArrayList<>());
+    }
+
+    // Constructor for creating an IfNode.
+    // @param condition The condition node.
+    // @param thenBranch The list of statements in the 'then' block.
+    // @param elseBranch The list of statements in the 'else' block.
+    public IfNode(Node condition, List<Node> thenBranch, List<Node> elseBranch) {
+        this.condition = adopt(condition);
         this.thenBranch = thenBranch;
+        this.elseBranch = elseBranch;
+        thenBranch.forEach(this::adopt);
+        elseBranch.forEach(this::adopt);
+    }
+
+    @Override
+    int execute(int[] frame) {
+        List<Node> branch = condition.evaluateCondition(frame) ? thenBranch : elseBranch;
+        for (int i = 0; i < branch.size(); i++) {
+            int status = branch.get(i).execute(frame);
+            // A 'break' or 'continue' skips the rest of the branch and unwinds to its loop.
+            if (status != Completion.NORMAL) {
+                return status;
+            }
+        }
+        return Completion.NORMAL;
+    }
+
+    @Override
+    void replaceChild(Node oldChild, Node newChild) {
+        if (condition == oldChild) {
+            condition = newChild;
+        } else if (thenBranch.contains(oldChild)) {
+            thenBranch.set(thenBranch.indexOf(oldChild), newChild);
+        } else if (elseBranch.contains(oldChild)) {
+            elseBranch.set(elseBranch.indexOf(oldChild), newChild);
+        } else {
+            super.replaceChild(oldChild, newChild);
+        }
     }
 }
\ No newline at end of file
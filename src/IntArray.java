@@ -0,0 +1,111 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+// An array of the language: a fixed number of int elements, all 0 when it is created.
+// Arrays shorter than OFF_HEAP_THRESHOLD are backed by an int[]. Longer ones live outside the Java
+// heap, in direct buffers, so the garbage collector neither copies nor scans their elements, and
+// a large array does not make every collection slower. The memory of a direct buffer is freed
+// once the buffer itself has been collected.
+// The elements are not checked against the array's length here; the Interpreter checks indexes
+// with its own error message, and the backing int[] or buffer still fails on a bad index.
+abstract class IntArray {
+    // The length from which arrays are stored off the heap: 4 MB of elements.
+    static final int OFF_HEAP_THRESHOLD = 1 << 20;
+
+    // Returns the number of elements.
+    abstract int length();
+
+    // Returns an element.
+    // @param index The index, from 0 to length() - 1.
+    abstract int get(int index);
+
+    // Sets an element.
+    // @param index The index, from 0 to length() - 1.
+    // @param value The new value.
+    abstract void set(int index, int value);
+
+    // Creates an array with every element 0, on or off the heap depending on its length.
+    // @param length The number of elements; must not be negative.
+    // @return The array.
+    // @throws RuntimeException if there is not enough memory for the array.
+    static IntArray allocate(int length) {
+        try {
+            return length < OFF_HEAP_THRESHOLD ? new OnHeap(length) : new OffHeap(length);
+        } catch (OutOfMemoryError e) {
+            throw new RuntimeException("Not enough memory for an array of " + length + " elements");
+        }
+    }
+
+    // Returns the error raised by the engines that do not support arrays.
+    // @param mode The name of the execution mode.
+    static RuntimeException unsupported(String mode) {
+        return new RuntimeException("Arrays are only supported in the tree and jit modes, not in " + mode + " mode");
+    }
+
+    // Returns whether a statement declares or assigns an array, or checks array bounds for a
+    // loop; the engines that do not support arrays reject these.
+    static boolean isArrayStatement(Node node) {
+        return node instanceof ArrayDeclarationNode || node instanceof ArrayAssignmentNode
+                || node instanceof BoundsCheckNode;
+    }
+
+    // An array backed by an int[].
+    static final class OnHeap extends IntArray {
+        private final int[] elements;
+
+        OnHeap(int length) {
+            elements = new int[length];
+        }
+
+        @Override
+        int length() {
+            return elements.length;
+        }
+
+        @Override
+        int get(int index) {
+            return elements[index];
+        }
+
+        @Override
+        void set(int index, int value) {
+            elements[index] = value;
+        }
+    }
+
+    // An array backed by direct buffers in native byte order. A direct buffer holds at most 2 GB,
+    // so the elements are split into chunks of 2^CHUNK_BITS; most arrays need only one.
+    static final class OffHeap extends IntArray {
+        private static final int CHUNK_BITS = 28;
+        private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+        private final int length;
+        private final IntBuffer[] chunks;
+
+        OffHeap(int length) {
+            this.length = length;
+            chunks = new IntBuffer[(int) (((long) length + CHUNK_MASK) >>> CHUNK_BITS)];
+            for (int i = 0; i < chunks.length; i++) {
+                int size = Math.min(CHUNK_MASK + 1, length - (i << CHUNK_BITS));
+                // Direct buffers start zeroed.
+                chunks[i] = ByteBuffer.allocateDirect(size * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+            }
+        }
+
+        @Override
+        int length() {
+            return length;
+        }
+
+        @Override
+        int get(int index) {
+            return chunks[index >>> CHUNK_BITS].get(index & CHUNK_MASK);
+        }
+
+        @Override
+        void set(int index, int value) {
+            chunks[index >>> CHUNK_BITS].put(index & CHUNK_MASK, value);
+        }
+    }
+}
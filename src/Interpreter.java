@@ -1,113 +1,873 @@
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 // The Interpreter class is responsible for executing the Abstract Syntax Tree (AST).
-class Interpreter {
-    // A symbol table to store variables and their values.
-    private final Map<String, Integer> symbolTable = new HashMap<>();
+// Statements must be resolved by the Resolver before they are executed. Fused nodes (see Fuser)
+// execute themselves.
+// Without the JIT, arithmetic is exact (see ExactArithmetic): values are ints while they fit, and
+// a variable whose value does not fit keeps it as a wide Number instead. An expression that
+// overflows is evaluated again with Numbers, reusing the results of the calls it made, and while
+// any variable is wide every expression is evaluated with Numbers, so the int path never checks
+// its variables. The JIT compiles loops to int arithmetic, so with it all arithmetic stays in ints
+// and an overflow stops the script with an ArithmeticException, as in the other engines (see
+// ExecutionMode).
+// Arrays (see IntArray) hold ints. Every index is checked against the array's length, except in
+// the accesses a BoundsCheckNode before the loop has already checked.
+// A function call runs with a frame of its own. The frames are kept by call depth and reused by
+// every call at that depth, so a call allocates nothing; the arguments are evaluated onto one
+// preallocated stack and copied into the frame. A 'return' of a call to a function that is not
+// pure replaces the current call instead of nesting in it (see ReturnNode).
+class Interpreter implements ExecutionEngine {
+    // The resolver that assigns frame slots to the variables of the program.
+    private final Resolver resolver;
+    // Whether hot while loops are compiled to JVM bytecode by the LoopCompiler.
+    private final boolean jit;
+    // The sink printed values are written to.
+    private final OutputSink sink;
+    // Whether arithmetic is exact; it is unless the JIT is on.
+    private final boolean exact;
+    // The frame storing variable values, indexed by the slot assigned by the Resolver.
+    private int[] frame = new int[16];
+    // The values of the variables that do not fit in an int, by slot (null until there are any),
+    // and how many there are. The frame slot of such a variable is unused.
+    private Number[] wide;
+    private int wideCount = 0;
+    // The arrays, by the slot assigned by the Resolver; null until the array is declared.
+    private IntArray[] arrays = new IntArray[16];
+    // While a function runs, frame, wide and arrays are those of its call. The frames of the calls
+    // by depth, starting at 1, with their wide values and arrays (each null until needed).
+    private int[][] frames = new int[16][];
+    private Number[][] wides = new Number[16][];
+    private IntArray[][] arrayFrames = new IntArray[16][];
+    // The depth of the call running, or 0 outside of functions.
+    private int depth = 0;
+    // The values of the arguments of the calls being prepared, in order. A wide argument is in
+    // wideArguments (otherwise null there).
+    private int[] arguments = new int[64];
+    private Number[] wideArguments = new Number[64];
+    private int argumentCount = 0;
+    // The value of the last 'return': returnWide if it is wide, otherwise returnValue.
+    private int returnValue;
+    private Number returnWide;
+    // With exact arithmetic, the results of the calls made by the int evaluations in progress,
+    // in order, as returnValue and returnWide. An expression that overflows is evaluated again
+    // with Numbers, which takes the results from replayNext to replayEnd instead of calling the
+    // functions again (see replayCalls).
+    private int[] callValues = new int[16];
+    private Number[] callWides = new Number[16];
+    private int callCount = 0;
+    private int replayNext = 0;
+    private int replayEnd = 0;
+    // The function a tail call runs next, in place of the returning one, with its arguments on
+    // the stack from tailArguments; or null.
+    private FunctionNode tailCall;
+    private int tailArguments;
+    // The results of the pure functions, by function index and then by arguments.
+    private final List<Map<Object, Number>> memos = new ArrayList<>();
+    // Whether nodes are counted or profiled. This is the only check a plain run makes per node.
+    private boolean instrumented = false;
+    // Whether to count the AST nodes executed, and how many of them were covered by fused nodes.
+    private boolean countNodes = false;
+    private long executedNodes = 0;
+    private long fusedNodes = 0;
+    // The profiler recording the time spent in each node, or null.
+    private Profiler profiler;
+    // The budget limiting the steps this interpreter takes, or null. A step is one loop iteration.
+    private StepBudget budget;
+    // The steps of the current quantum, and those left in it. Without a budget the steps left
+    // never run out, so the check at each back-edge costs a decrement and a comparison.
+    private long quantum;
+    private long stepsLeft = Long.MAX_VALUE;
+
+    // Constructor for creating an Interpreter.
+    // @param resolver The resolver used to resolve the statements passed to execute.
+    // @param sink The sink to print to.
+    public Interpreter(Resolver resolver, OutputSink sink) {
+        this(resolver, false, sink);
+    }
+
+    // Constructor for creating an Interpreter.
+    // @param resolver The resolver used to resolve the statements passed to execute.
+    // @param jit Whether to compile hot while loops to JVM bytecode.
+    // @param sink The sink to print to.
+    public Interpreter(Resolver resolver, boolean jit, OutputSink sink) {
+        this.resolver = resolver;
+        this.jit = jit;
+        this.exact = !jit;
+        this.sink = sink;
+    }
 
     // Executes a given AST node. This is the main entry point for interpreting the AST.
-    // @param node The AST node to execute.
+    // @param node The resolved AST node to execute.
+    @Override
     public void execute(Node node) {
+        // Grow the frame if the resolver has handed out new slots since the last statement.
+        if (frame.length < resolver.slotCount()) {
+            frame = Arrays.copyOf(frame, Math.max(frame.length * 2, resolver.slotCount()));
+            if (wide != null) {
+                wide = Arrays.copyOf(wide, frame.length);
+            }
+            arrays = Arrays.copyOf(arrays, frame.length);
+        }
+        // A statement that failed may have left call results behind.
+        callCount = 0;
+        replayNext = 0;
+        replayEnd = 0;
+        try {
+            run(node);
+        } finally {
+            sink.flush();
+        }
+    }
+
+    // Limits the steps this interpreter takes. Each loop iteration is a step, counted at the
+    // loop's back-edge, and so is each function call, including tail calls; a program can only
+    // run long by looping or calling.
+    // Every quantum steps the interpreter asks the budget for the next quantum. Loops compiled by
+    // the JIT run without taking steps, so limit interpreters that do not compile loops.
+    // @param budget The budget, called at the end of each quantum.
+    // @param quantum The steps of the first quantum; must be positive.
+    public void limitSteps(StepBudget budget, long quantum) {
+        this.budget = budget;
+        this.quantum = quantum;
+        this.stepsLeft = quantum;
+    }
+
+    // Ends the current quantum and starts the next one, as the budget decides.
+    // Wide arithmetic may have taken more steps than were left.
+    private void endQuantum() {
+        quantum = budget.endOfQuantum(quantum - stepsLeft);
+        stepsLeft = quantum;
+    }
+
+    // Takes the extra steps of an operation on wide values (see ExactArithmetic.cost); the budget
+    // may pause or stop the script here, in the middle of an expression.
+    // @param steps The steps the operation costs.
+    private void charge(long steps) {
+        if (steps > 0 && budget != null) {
+            stepsLeft -= steps;
+            if (stepsLeft <= 0) {
+                endQuantum();
+            }
+        }
+    }
+
+    // Starts counting the AST nodes executed. Each fused node counts as the nodes it replaced.
+    public void countNodes() {
+        countNodes = true;
+        instrumented = true;
+    }
+
+    // Starts recording the executions and time of each node, and the iterations of each loop.
+    // Loops compiled by the JIT are profiled as a whole.
+    // @param profiler The profiler to record into.
+    public void profile(Profiler profiler) {
+        this.profiler = profiler;
+        instrumented = true;
+    }
+
+    // Returns the number of AST nodes executed since counting started.
+    public long executedNodes() {
+        return executedNodes;
+    }
+
+    // Returns how many of the executed AST nodes were executed as part of a fused node.
+    public long fusedNodes() {
+        return fusedNodes;
+    }
+
+    // Counts the execution of a node.
+    private void count(Node node) {
+        if (node instanceof FusedNodes.FusedNode fused) {
+            executedNodes += fused.covers;
+            fusedNodes += fused.covers;
+        } else {
+            executedNodes++;
+        }
+    }
+
+    // Executes a resolved AST node against the current frame.
+    // @param node The AST node to execute.
+    // @return The Completion status: NORMAL, or the 'break' or 'continue' that ended the statement.
+    private int run(Node node) {
+        if (instrumented) {
+            if (countNodes) {
+                count(node);
+            }
+            if (profiler != null) {
+                profiler.enter(node);
+                try {
+                    return runNode(node);
+                } finally {
+                    profiler.exit();
+                }
+            }
+        }
+        return runNode(node);
+    }
+
+    // Executes a resolved AST node, without counting or profiling it.
+    private int runNode(Node node) {
+        // Fused statements write the frame directly.
+        if (node instanceof FusedNodes.FusedNode fused) {
+            return exact ? runFusedExact(fused) : fused.execute(frame);
+        }
         // Handle variable declarations.
-        if (node instanceof VarDeclarationNode varDec) {
-            // Evaluate the initializer expression.
-            int value = evaluate(varDec.initializer);
-            // Store the variable and its value in the symbol table.
-            symbolTable.put(varDec.variableName, value);
+        else if (node instanceof VarDeclarationNode varDec) {
+            // Evaluate the initializer expression and store it in the variable's slot.
+            store(varDec.slot, varDec.initializer);
         }
         // Handle assignment operations.
         else if (node instanceof AssignmentNode assign) {
-            // Evaluate the value to be assigned.
-            int value = evaluate(assign.value);
-            // Update the variable's value in the symbol table.
-            symbolTable.put(assign.variable, value);
+            // Evaluate the value to be assigned and update the variable's slot.
+            store(assign.slot, assign.value);
         }
         // Handle print statements.
         else if (node instanceof PrintNode printNode) {
             // Evaluate the expression to be printed.
-            int result = evaluate(printNode.expression);
-            // Print the result, handling boolean output (0 for false, 1 for true).
-            if (result == 0) {
-                System.out.println("false");
-            } else if (result == 1) {
-                System.out.println("true");
-            } else {
-                System.out.println(result); // For other non-boolean integer results
-            }
+            print(printNode.expression);
         }
         // Handle while loops.
         else if (node instanceof WhileNode whileNode) {
-            // Use a try-catch block to handle 'break' statements.
-            try {
+            // With exact arithmetic, a loop in closed form only runs as one if its results fit in
+            // an int; otherwise it is interpreted.
+            if (exact && whileNode.compiled instanceof ClosedFormLoop closedForm && wideCount == 0
+                    && closedForm.runExact(frame)) {
+                return Completion.NORMAL;
+            }
+            while (true) {
+                // Once the loop is compiled, switch over at the loop head. The compiled loop
+                // runs the remaining iterations and writes the variables back into the frame.
+                if (!exact && whileNode.compiled != null) {
+                    whileNode.compiled.run(frame);
+                    break;
+                }
                 // Continue looping as long as the condition evaluates to true.
-                while (evaluateCondition(whileNode.condition)) {
-                    // Execute each node in the body of the while loop.
-                    for (Node bodyNode : whileNode.body) {
-                        execute(bodyNode);
-                    }
+                if (!evaluateCondition(whileNode.condition)) {
+                    break;
+                }
+                // Execute the body of the while loop.
+                int status = runBlock(whileNode.body);
+                if (status == Completion.BREAK) {
+                    break;
+                }
+                // A 'break' or 'continue' aimed at an enclosing loop ends this loop and unwinds further.
+                if (status != Completion.NORMAL && status != Completion.CONTINUE) {
+                    return Completion.enclosing(status);
+                }
+                // Take a step at the back-edge; the budget may pause or stop the script here.
+                if (--stepsLeft <= 0) {
+                    endQuantum();
+                }
+                // Compile the loop once it is hot. Loops the compiler cannot handle stay interpreted.
+                if (jit && ++whileNode.iterations == LoopCompiler.THRESHOLD) {
+                    whileNode.compiled = LoopCompiler.compile(whileNode);
                 }
-            } catch (BreakException e) {
-                // Catch the BreakException to exit the loop.
             }
         }
         // Handle if statements.
         else if (node instanceof IfNode ifNode) {
-            // Evaluate the condition.
-            if (evaluateCondition(ifNode.condition)) {
-                // Execute each statement in the 'then' branch if the condition is true.
-                for (Node statement : ifNode.thenBranch) {
-                    execute(statement);
+            // Evaluate the condition and pick the 'then' or the 'else' branch.
+            List<Node> branch = evaluateCondition(ifNode.condition) ? ifNode.thenBranch : ifNode.elseBranch;
+            // Execute the chosen branch, passing on any 'break' or 'continue'.
+            return runBlock(branch);
+        }
+        // Handle break statements.
+        else if (node instanceof BreakNode breakNode) {
+            // Complete abruptly; the target loop stops when the status reaches it.
+            return Completion.of(Completion.BREAK, breakNode.depth);
+        }
+        // Handle continue statements.
+        else if (node instanceof ContinueNode continueNode) {
+            return Completion.of(Completion.CONTINUE, continueNode.depth);
+        }
+        // Handle array declarations.
+        else if (node instanceof ArrayDeclarationNode arrayDec) {
+            arrays[arrayDec.slot] = IntArray.allocate(arrayLength(arrayDec.length));
+        }
+        // Handle assignments to array elements.
+        else if (node instanceof ArrayAssignmentNode arrayAssign) {
+            storeElement(arrayAssign);
+        }
+        // Handle return statements.
+        else if (node instanceof ReturnNode returnNode) {
+            if (returnNode.value instanceof CallNode call && !call.function.pure) {
+                // A tail call: push the arguments for invoke, which then runs the function in the
+                // frame of this one. A pure function is called normally, so its result is kept.
+                int base = argumentCount;
+                for (Node argument : call.arguments) {
+                    push(argument);
                 }
+                tailCall = call.function;
+                tailArguments = base;
+            } else {
+                setReturn(returnNode.value);
             }
+            return Completion.RETURN;
         }
-        // Handle break statements.
-        else if (node instanceof BreakNode) {
-            // Throw a BreakException to exit the current loop.
-            throw new BreakException();
+        // Handle calls whose result is not used.
+        else if (node instanceof CallNode call) {
+            call(call);
+        }
+        // Function declarations take effect when they are resolved.
+        else if (node instanceof FunctionNode) {
+            return Completion.NORMAL;
+        }
+        // Handle the bounds checks the LoopOptimizer puts before loops. While a variable is wide
+        // the frame may not hold the counter or the limit, so the loop keeps its checks.
+        else if (node instanceof BoundsCheckNode boundsCheck) {
+            frame[boundsCheck.slot] = wideCount == 0 && boundsCheck.holds(frame, arrays) ? 1 : 0;
+        }
+        return Completion.NORMAL;
+    }
+
+    // Executes a fused statement with exact arithmetic. Fused nodes only handle ints, so if a
+    // result does not fit in one, or a variable is wide, it runs the statement the node replaced.
+    // @param fused The fused node.
+    // @return The Completion status.
+    private int runFusedExact(FusedNodes.FusedNode fused) {
+        if (wideCount == 0) {
+            try {
+                return fused.executeExact(frame);
+            } catch (ExactArithmetic.Overflow e) {
+                // The frame is unchanged.
+            }
+        }
+        return runNode(fused.original);
+    }
+
+    // Evaluates an expression and prints its value.
+    // @param expression The AST node of the expression.
+    private void print(Node expression) {
+        if (wideCount == 0) {
+            int mark = callCount;
+            int value;
+            try {
+                value = evaluate(expression);
+            } catch (ExactArithmetic.Overflow e) {
+                replayCalls(mark);
+                printWide(evaluateWide(expression));
+                return;
+            }
+            callCount = mark;
+            sink.print(value);
+        } else {
+            printWide(evaluateWide(expression));
+        }
+    }
+
+    // Prints a value of any width, taking the steps printing it costs.
+    private void printWide(Number value) {
+        charge(ExactArithmetic.printCost(value));
+        sink.print(value);
+    }
+
+    // Evaluates an expression and stores its value in a variable, as an int if it fits.
+    // @param slot The frame slot of the variable.
+    // @param expression The AST node of the expression.
+    private void store(int slot, Node expression) {
+        if (wideCount == 0) {
+            int mark = callCount;
+            try {
+                frame[slot] = evaluate(expression);
+                callCount = mark;
+                return;
+            } catch (ExactArithmetic.Overflow e) {
+                // Evaluated again below.
+                replayCalls(mark);
+            }
+        }
+        storeWide(slot, evaluateWide(expression));
+    }
+
+    // Stores a value of any width in a variable.
+    // @param slot The frame slot of the variable.
+    // @param value The narrowed value.
+    private void storeWide(int slot, Number value) {
+        if (value instanceof Integer small) {
+            frame[slot] = small;
+            if (wideCount != 0 && wide[slot] != null) {
+                wide[slot] = null;
+                wideCount--;
+            }
+            return;
+        }
+        if (wide == null) {
+            wide = new Number[frame.length];
+        }
+        if (wide[slot] == null) {
+            wideCount++;
+        }
+        wide[slot] = value;
+    }
+
+    // Evaluates the arguments of a call and calls the function, leaving its result in returnValue
+    // and returnWide.
+    // @param call The call.
+    private void call(CallNode call) {
+        int base = argumentCount;
+        for (Node argument : call.arguments) {
+            push(argument);
+        }
+        invoke(call.function, base);
+    }
+
+    // Evaluates an argument onto the argument stack.
+    // @param argument The AST node of the argument.
+    private void push(Node argument) {
+        if (argumentCount == arguments.length) {
+            arguments = Arrays.copyOf(arguments, argumentCount * 2);
+            wideArguments = Arrays.copyOf(wideArguments, argumentCount * 2);
+        }
+        // Evaluating the argument may make calls, which push their own arguments above this one
+        // (and may grow the stack), so store the value only afterwards.
+        if (wideCount == 0) {
+            int mark = callCount;
+            try {
+                int value = evaluate(argument);
+                callCount = mark;
+                arguments[argumentCount] = value;
+                wideArguments[argumentCount++] = null;
+                return;
+            } catch (ExactArithmetic.Overflow e) {
+                // Evaluated again below.
+                replayCalls(mark);
+            }
+        }
+        Number value = evaluateWide(argument);
+        if (value instanceof Integer small) {
+            arguments[argumentCount] = small;
+            wideArguments[argumentCount++] = null;
+        } else {
+            wideArguments[argumentCount++] = value;
+        }
+    }
+
+    // Calls a function with the arguments on the stack from base, which it pops, and leaves its
+    // result in returnValue and returnWide. A pure function called before with the same arguments
+    // is not run again. Tail calls made by the function run here, one after the other, in the
+    // same frame.
+    // @param function The function.
+    // @param base The position of the first argument on the stack.
+    private void invoke(FunctionNode function, int base) {
+        Object key = null;
+        Map<Object, Number> memo = null;
+        if (function.pure) {
+            memo = memo(function);
+            key = memoKey(base, argumentCount - base);
+            Number known = memo.get(key);
+            if (known != null) {
+                argumentCount = base;
+                setReturn(known);
+                return;
+            }
+        }
+        int[] callerFrame = frame;
+        Number[] callerWide = wide;
+        int callerWideCount = wideCount;
+        IntArray[] callerArrays = arrays;
+        int callDepth = ++depth;
+        try {
+            enter(function, base, callDepth);
+            while (true) {
+                if (--stepsLeft <= 0) {
+                    endQuantum();
+                }
+                // A function that ends without a 'return' returns 0.
+                returnValue = 0;
+                returnWide = null;
+                runBlock(function.body);
+                if (tailCall == null) {
+                    break;
+                }
+                function = tailCall;
+                tailCall = null;
+                leave(callDepth, callerArrays);
+                enter(function, tailArguments, callDepth);
+            }
+        } catch (StackOverflowError e) {
+            throw new RuntimeException("Too many nested calls in function " + function.name);
+        } finally {
+            // Unless the call failed before its frame was entered.
+            if (frame != callerFrame) {
+                leave(callDepth, callerArrays);
+            }
+            depth = callDepth - 1;
+            frame = callerFrame;
+            wide = callerWide;
+            wideCount = callerWideCount;
+            arrays = callerArrays;
+            tailCall = null;
+            argumentCount = base;
+        }
+        if (memo != null) {
+            memo.put(key, returnWide != null ? returnWide : (Number) returnValue);
         }
     }
 
+    // Makes the frame of a call the current one, with the function's arguments in the first slots
+    // and every other slot 0, and pops the arguments.
+    // @param function The function.
+    // @param base The position of the first argument on the stack.
+    // @param callDepth The depth of the call.
+    private void enter(FunctionNode function, int base, int callDepth) {
+        if (callDepth == frames.length) {
+            frames = Arrays.copyOf(frames, callDepth * 2);
+            wides = Arrays.copyOf(wides, callDepth * 2);
+            arrayFrames = Arrays.copyOf(arrayFrames, callDepth * 2);
+        }
+        int[] callFrame = frames[callDepth];
+        if (callFrame == null || callFrame.length < function.slotCount) {
+            callFrame = new int[Math.max(function.slotCount, 8)];
+            frames[callDepth] = callFrame;
+        } else {
+            Arrays.fill(callFrame, 0, function.slotCount, 0);
+        }
+        frame = callFrame;
+        // A wide array too short for the frame is replaced when a value first becomes wide.
+        wide = wides[callDepth] != null && wides[callDepth].length >= callFrame.length ? wides[callDepth] : null;
+        wideCount = 0;
+        if (function.declaresArrays) {
+            IntArray[] callArrays = arrayFrames[callDepth];
+            if (callArrays == null || callArrays.length < callFrame.length) {
+                callArrays = new IntArray[callFrame.length];
+                arrayFrames[callDepth] = callArrays;
+            }
+            arrays = callArrays;
+        }
+        int count = function.parameters.size();
+        for (int i = 0; i < count; i++) {
+            Number value = wideArguments[base + i];
+            if (value != null) {
+                storeWide(i, value);
+            } else {
+                callFrame[i] = arguments[base + i];
+            }
+        }
+        argumentCount = base;
+    }
+
+    // Leaves the wide values and arrays of a call's frame empty for the next call at its depth,
+    // which frees the arrays.
+    // @param callDepth The depth of the call.
+    // @param callerArrays The arrays of the caller, which stay.
+    private void leave(int callDepth, IntArray[] callerArrays) {
+        if (wideCount != 0) {
+            Arrays.fill(wide, null);
+            wideCount = 0;
+        }
+        wides[callDepth] = wide;
+        if (arrays != callerArrays) {
+            Arrays.fill(arrays, null);
+        }
+    }
+
+    // Returns the memo table of a pure function.
+    private Map<Object, Number> memo(FunctionNode function) {
+        while (memos.size() <= function.index) {
+            memos.add(null);
+        }
+        Map<Object, Number> memo = memos.get(function.index);
+        if (memo == null) {
+            memo = new HashMap<>();
+            memos.set(function.index, memo);
+        }
+        return memo;
+    }
+
+    // Returns the key of a list of arguments in a memo table: the argument itself if there is
+    // one, otherwise the list of them.
+    private Object memoKey(int base, int count) {
+        Number[] values = new Number[count];
+        for (int i = 0; i < count; i++) {
+            Number value = wideArguments[base + i];
+            values[i] = value != null ? value : (Number) arguments[base + i];
+        }
+        return count == 1 ? values[0] : List.of(values);
+    }
+
+    // Evaluates the value of a 'return' into returnValue and returnWide.
+    // @param expression The AST node of the value.
+    private void setReturn(Node expression) {
+        if (wideCount == 0) {
+            int mark = callCount;
+            try {
+                int value = evaluate(expression);
+                callCount = mark;
+                returnValue = value;
+                returnWide = null;
+                return;
+            } catch (ExactArithmetic.Overflow e) {
+                // Evaluated again below.
+                replayCalls(mark);
+            }
+        }
+        setReturn(evaluateWide(expression));
+    }
+
+    // Sets the value returned.
+    // @param value The narrowed value.
+    private void setReturn(Number value) {
+        if (value instanceof Integer small) {
+            returnValue = small;
+            returnWide = null;
+        } else {
+            returnWide = value;
+        }
+    }
+
+    // Evaluates the length of a new array.
+    // @param expression The AST node of the length.
+    // @return The length.
+    // @throws RuntimeException if the length is negative or does not fit in an int.
+    private int arrayLength(Node expression) {
+        Number length;
+        if (wideCount == 0) {
+            int mark = callCount;
+            try {
+                length = evaluate(expression);
+                callCount = mark;
+            } catch (ExactArithmetic.Overflow e) {
+                replayCalls(mark);
+                length = evaluateWide(expression);
+            }
+        } else {
+            length = evaluateWide(expression);
+        }
+        if (!(length instanceof Integer small) || small < 0) {
+            throw new RuntimeException("Invalid array length: " + length);
+        }
+        return small;
+    }
+
+    // Evaluates the index and the value of an assignment to an array element and stores the value.
+    // @param arrayAssign The assignment.
+    private void storeElement(ArrayAssignmentNode arrayAssign) {
+        IntArray array = arrays[arrayAssign.slot];
+        if (wideCount == 0) {
+            boolean guarded = arrayAssign.guardSlot >= 0 && frame[arrayAssign.guardSlot] != 0;
+            int mark = callCount;
+            int index;
+            int value;
+            try {
+                index = guarded ? frame[arrayAssign.counter] + arrayAssign.offset : evaluate(arrayAssign.index);
+                value = evaluate(arrayAssign.value);
+            } catch (ExactArithmetic.Overflow e) {
+                replayCalls(mark);
+                storeElementWide(arrayAssign, array);
+                return;
+            }
+            callCount = mark;
+            if (!guarded) {
+                checkIndex(arrayAssign.name, array, index);
+            }
+            array.set(index, value);
+        } else {
+            storeElementWide(arrayAssign, array);
+        }
+    }
+
+    // Stores an array element whose index or value has to be evaluated with wide values.
+    // @throws RuntimeException if the value does not fit in an int, since elements are ints.
+    private void storeElementWide(ArrayAssignmentNode arrayAssign, IntArray array) {
+        int index = checkIndex(arrayAssign.name, array, evaluateWide(arrayAssign.index));
+        Number value = evaluateWide(arrayAssign.value);
+        if (!(value instanceof Integer small)) {
+            throw new RuntimeException("Value does not fit in an array element: " + arrayAssign.name
+                    + "[" + index + "] = " + value);
+        }
+        array.set(index, small);
+    }
+
+    // Checks that an array has been allocated and an index is within its bounds.
+    // @param name The name of the array, for error messages.
+    // @param array The array, or null if its declaration has not run.
+    // @param index The index.
+    // @throws RuntimeException if the array is not allocated or the index is out of bounds.
+    private static void checkIndex(String name, IntArray array, int index) {
+        if (array == null || index < 0 || index >= array.length()) {
+            throw indexError(name, array, index);
+        }
+    }
+
+    // Checks an index of any width; only an int can be in bounds.
+    // @return The index.
+    private static int checkIndex(String name, IntArray array, Number index) {
+        if (array == null || !(index instanceof Integer small) || small < 0 || small >= array.length()) {
+            throw indexError(name, array, index);
+        }
+        return small;
+    }
+
+    // Returns the error for an access to an array that is not allocated, or out of its bounds.
+    private static RuntimeException indexError(String name, IntArray array, Number index) {
+        if (array == null) {
+            return new RuntimeException("Array not allocated: " + name);
+        }
+        return new RuntimeException("Array index out of bounds: " + name + "[" + index + "], length " + array.length());
+    }
+
+    // Executes the statements of a block until one completes abruptly.
+    // @param statements The statements to execute.
+    // @return NORMAL, or the status of the 'break' or 'continue' that ended the block.
+    private int runBlock(List<Node> statements) {
+        for (Node statement : statements) {
+            int status = run(statement);
+            if (status != Completion.NORMAL) {
+                return status;
+            }
+        }
+        return Completion.NORMAL;
+    }
+
     // Evaluates an AST node to produce an integer value.
     // @param node The AST node to evaluate.
     // @return The integer value of the evaluated node.
+    // While any variable is wide, use evaluateWide instead.
+    // @throws ExactArithmetic.Overflow, with exact arithmetic, if a value does not fit in an int.
     private int evaluate(Node node) {
+        if (instrumented) {
+            if (countNodes) {
+                count(node);
+            }
+            // Variables and numbers are too cheap to time on their own.
+            if (profiler != null && !(node instanceof NumberNode) && !(node instanceof VariableNode)) {
+                profiler.enter(node);
+                try {
+                    return evaluateNode(node);
+                } finally {
+                    profiler.exit();
+                }
+            }
+        }
+        return evaluateNode(node);
+    }
+
+    // Evaluates an AST node, without counting or profiling it.
+    private int evaluateNode(Node node) {
         // Handle number literal nodes.
         if (node instanceof NumberNode numberNode) {
             return numberNode.value;
         }
         // Handle variable nodes.
         else if (node instanceof VariableNode variableNode) {
-            String variable = variableNode.name;
-            // Check if the variable has been declared.
-            if (!symbolTable.containsKey(variable)) {
-                throw new RuntimeException("Variable not declared: " + variable);
-            }
-            // Retrieve the variable's value from the symbol table.
-            return symbolTable.get(variable);
+            // The Resolver has already checked that the variable is declared.
+            return frame[variableNode.slot];
         }
         // Handle binary operation nodes.
         else if (node instanceof BinaryOpNode binOp) {
             // Evaluate the left and right operands.
             int left = evaluate(binOp.left);
             int right = evaluate(binOp.right);
+            if (exact) {
+                return binOp.operator.applyExact(left, right);
+            }
             // Perform the operation based on the operator.
             return switch (binOp.operator) {
-                case "+" -> left + right;
-                case "-" -> left - right;
-                case "*" -> left * right;
-                case "/" -> left / right;
-                case "%" -> left % right;
+                case ADD -> Math.addExact(left, right);
+                case SUBTRACT -> Math.subtractExact(left, right);
+                case MULTIPLY -> Math.multiplyExact(left, right);
+                case DIVIDE -> Math.divideExact(left, right);
+                case REMAINDER -> left % right;
                 // Handle comparison operators, returning 1 for true and 0 for false.
-                case "<=" -> left <= right ? 1 : 0;
-                case ">=" -> left >= right ? 1 : 0;
-                case "<" -> left < right ? 1 : 0;
-                case ">" -> left > right ? 1 : 0;
-                case "==" -> left == right ? 1 : 0;
-                case "!=" -> left != right ? 1 : 0;
-                default -> throw new RuntimeException("Unknown operator: " + binOp.operator);
+                case LESS_EQUAL -> left <= right ? 1 : 0;
+                case GREATER_EQUAL -> left >= right ? 1 : 0;
+                case LESS -> left < right ? 1 : 0;
+                case GREATER -> left > right ? 1 : 0;
+                case EQUAL -> left == right ? 1 : 0;
+                case NOT_EQUAL -> left != right ? 1 : 0;
             };
         }
+        // Handle array element reads.
+        else if (node instanceof ArrayAccessNode arrayAccess) {
+            IntArray array = arrays[arrayAccess.slot];
+            // A passed BoundsCheckNode has already checked the index.
+            if (arrayAccess.guardSlot >= 0 && frame[arrayAccess.guardSlot] != 0) {
+                return array.get(frame[arrayAccess.counter] + arrayAccess.offset);
+            }
+            int index = evaluate(arrayAccess.index);
+            checkIndex(arrayAccess.name, array, index);
+            return array.get(index);
+        }
+        // Handle function calls.
+        else if (node instanceof CallNode call) {
+            call(call);
+            if (exact) {
+                // Keep the result, so that if the expression overflows, here or later, it is
+                // evaluated again without calling the function again.
+                if (callCount == callValues.length) {
+                    callValues = Arrays.copyOf(callValues, callCount * 2);
+                    callWides = Arrays.copyOf(callWides, callCount * 2);
+                }
+                callValues[callCount] = returnValue;
+                callWides[callCount++] = returnWide;
+                if (returnWide != null) {
+                    throw ExactArithmetic.OVERFLOW;
+                }
+            }
+            return returnValue;
+        }
+        throw new RuntimeException("Unknown node type");
+    }
+
+    // Makes evaluateWide use the results of the calls made since a mark, in order, instead of
+    // calling the functions again. Call this when an int evaluation started at the mark overflows,
+    // before evaluating the same expressions with evaluateWide: they make the same calls in the
+    // same order, up to the one where the int evaluation stopped, so the results are used up
+    // before any function is called, and calls made afterwards can reuse the space.
+    // @param mark The call count before the int evaluation.
+    private void replayCalls(int mark) {
+        replayNext = mark;
+        replayEnd = callCount;
+        callCount = mark;
+    }
+
+    // Evaluates an AST node exactly, with operands of any width. This is the slow path taken when
+    // an expression does not fit in an int, so it is neither counted nor profiled, except for the
+    // calls it makes.
+    // @param node The AST node to evaluate.
+    // @return The narrowed value of the evaluated node.
+    private Number evaluateWide(Node node) {
+        if (node instanceof NumberNode numberNode) {
+            return numberNode.value;
+        } else if (node instanceof VariableNode variableNode) {
+            Number value = wideCount != 0 ? wide[variableNode.slot] : null;
+            return value != null ? value : frame[variableNode.slot];
+        } else if (node instanceof BinaryOpNode binOp) {
+            Number left = evaluateWide(binOp.left);
+            Number right = evaluateWide(binOp.right);
+            charge(ExactArithmetic.cost(binOp.operator, left, right));
+            Number result = ExactArithmetic.apply(binOp.operator, left, right);
+            return budget != null ? ExactArithmetic.checkWidth(result) : result;
+        } else if (node instanceof ArrayAccessNode arrayAccess) {
+            IntArray array = arrays[arrayAccess.slot];
+            return array.get(checkIndex(arrayAccess.name, array, evaluateWide(arrayAccess.index)));
+        } else if (node instanceof CallNode call) {
+            // A call the int evaluation already made (and counted) is not made again.
+            if (replayNext < replayEnd) {
+                int i = replayNext++;
+                return callWides[i] != null ? callWides[i] : (Number) callValues[i];
+            }
+            if (instrumented) {
+                if (countNodes) {
+                    count(call);
+                }
+                if (profiler != null) {
+                    profiler.enter(call);
+                    try {
+                        call(call);
+                    } finally {
+                        profiler.exit();
+                    }
+                    return returnWide != null ? returnWide : (Number) returnValue;
+                }
+            }
+            call(call);
+            return returnWide != null ? returnWide : (Number) returnValue;
+        }
         throw new RuntimeException("Unknown node type");
     }
 
@@ -115,22 +875,71 @@ class Interpreter {
     // @param node The AST node representing the condition.
     // @return True if the condition is met, false otherwise.
     private boolean evaluateCondition(Node node) {
+        if (instrumented) {
+            if (countNodes) {
+                count(node);
+            }
+            if (profiler != null) {
+                profiler.enter(node);
+                try {
+                    boolean met = evaluateConditionNode(node);
+                    if (met) {
+                        profiler.conditionMet();
+                    }
+                    return met;
+                } finally {
+                    profiler.exit();
+                }
+            }
+        }
+        return evaluateConditionNode(node);
+    }
+
+    // Evaluates a condition, without counting or profiling it.
+    private boolean evaluateConditionNode(Node node) {
+        // Fused comparisons read their operands directly, unless one of them may be wide.
+        if (node instanceof FusedNodes.FusedNode fused) {
+            if (wideCount != 0) {
+                return evaluateConditionNode(fused.original);
+            }
+            return fused.evaluateCondition(frame);
+        }
         // Conditions are expected to be binary operations (comparisons).
         if (node instanceof BinaryOpNode binOp) {
+            if (wideCount != 0) {
+                return evaluateConditionWide(binOp);
+            }
             // Evaluate the left and right operands.
-            int left = evaluate(binOp.left);
-            int right = evaluate(binOp.right);
+            int mark = callCount;
+            int left;
+            int right;
+            try {
+                left = evaluate(binOp.left);
+                right = evaluate(binOp.right);
+            } catch (ExactArithmetic.Overflow e) {
+                replayCalls(mark);
+                return evaluateConditionWide(binOp);
+            }
+            callCount = mark;
             // Evaluate the comparison based on the operator.
             return switch (binOp.operator) {
-                case "<=" -> left <= right;
-                case ">=" -> left >= right;
-                case "<" -> left < right;
-                case ">" -> left > right;
-                case "==" -> left == right;
-                case "!=" -> left != right;
+                case LESS_EQUAL -> left <= right;
+                case GREATER_EQUAL -> left >= right;
+                case LESS -> left < right;
+                case GREATER -> left > right;
+                case EQUAL -> left == right;
+                case NOT_EQUAL -> left != right;
                 default -> throw new RuntimeException("Unknown comparison operator: " + binOp.operator);
             };
         }
         throw new RuntimeException("Cannot evaluate condition");
     }
+
+    // Evaluates a comparison exactly, with operands of any width.
+    private boolean evaluateConditionWide(BinaryOpNode binOp) {
+        Number left = evaluateWide(binOp.left);
+        Number right = evaluateWide(binOp.right);
+        charge(ExactArithmetic.cost(binOp.operator, left, right));
+        return binOp.operator.test(ExactArithmetic.compare(left, right), 0);
+    }
 }
@@ -1,149 +1,458 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+// The Lexer is a pull lexer: each call to nextToken() scans one token and records its type and its
+// start and end offsets in the input. No String is created while scanning; identifier names are
+// interned so each distinct name becomes a String once, and keywords and symbols use constants.
+// Offsets are longs so that a streamed input may be longer than 2 GB.
+// Scanning is driven by tables: each ASCII character has a class (CLASSES), and a deterministic
+// finite automaton moves from state to state by the class of each character (TRANSITIONS), so a
+// character costs two array reads. Characters outside ASCII are classified with the Unicode
+// methods of Character, so letters, digits and whitespace of any script are accepted as before.
+// Keywords are found with a perfect hash of an identifier's length and first character, which
+// leaves at most one keyword to compare with.
 class Lexer {
-    // The input string to be tokenized.
-    private final String input;
-    // The current position in the input string.
-    private int position = 0;
+    // The character classes. OTHER characters start no token.
+    private static final int OTHER = 0;
+    private static final int SPACE = 1;
+    private static final int NEWLINE = 2;
+    private static final int DIGIT = 3;
+    private static final int LETTER = 4;
+    private static final int SLASH = 5;
+    private static final int EQUALS = 6;
+    private static final int LESS = 7;
+    private static final int GREATER = 8;
+    private static final int BANG = 9;
+    // A character that is a token on its own, such as '+' or '{'.
+    private static final int SYMBOL = 10;
+    private static final int END = 11;
+    // The number of classes, rounded up to a power of two so a row of TRANSITIONS is found by a shift.
+    private static final int CLASS_BITS = 4;
+
+    // The states. START is before a token, once whitespace has been skipped; in the others, a
+    // token (or a comment) is being scanned, and the state names what has been read so far.
+    private static final int START = 0;
+    private static final int IN_NUMBER = 1;
+    private static final int IN_IDENTIFIER = 2;
+    private static final int AFTER_SLASH = 3;
+    private static final int IN_COMMENT = 4;
+    private static final int AFTER_EQUALS = 5;
+    private static final int AFTER_LESS = 6;
+    private static final int AFTER_GREATER = 7;
+    private static final int AFTER_BANG = 8;
+    // A complete token of one or two characters: the next character always ends it.
+    private static final int AFTER_SYMBOL = 9;
+    private static final int AFTER_EQUAL_EQUAL = 10;
+    private static final int AFTER_LESS_EQUAL = 11;
+    private static final int AFTER_GREATER_EQUAL = 12;
+    private static final int AFTER_BANG_EQUAL = 13;
+    private static final int STATE_COUNT = 14;
+
+    // The transitions that do not enter a state: the token ends before the character, or the
+    // character is not allowed there.
+    private static final byte ACCEPT = -1;
+    private static final byte ERROR = -2;
+
+    // The class of each ASCII character.
+    private static final byte[] CLASSES = new byte[128];
+    // The next state by current state and character class: TRANSITIONS[state << CLASS_BITS | class].
+    private static final byte[] TRANSITIONS = new byte[STATE_COUNT << CLASS_BITS];
+    // For each state, the classes of the characters that leave it in the same state, as bits.
+    // Derived from TRANSITIONS, so runs such as the rest of an identifier or a comment are
+    // consumed by a loop that only classifies characters.
+    private static final int[] SELF_LOOPS = new int[STATE_COUNT];
+    // Whether every character ends the token of a state, so the token ends without reading the
+    // next character. Also derived from TRANSITIONS.
+    private static final boolean[] FINAL = new boolean[STATE_COUNT];
+    // The token a state ends with when the next character does not continue it; null for
+    // AFTER_SYMBOL, whose token depends on the character (SYMBOL_TYPES), and for AFTER_BANG.
+    private static final TokenType[] ACCEPTED = new TokenType[STATE_COUNT];
+    // The text of the tokens of the states that end fixed tokens.
+    private static final String[] ACCEPTED_TEXTS = new String[STATE_COUNT];
+    // The token and text of each SYMBOL character.
+    private static final TokenType[] SYMBOL_TYPES = new TokenType[128];
+    private static final String[] SYMBOL_TEXTS = new String[128];
+
+    // The keywords, by the hash of their length and first character (see keywordSlot), and
+    // their token types. 'print' is an identifier for parsing.
+    private static final String[] KEYWORDS = new String[16];
+    private static final TokenType[] KEYWORD_TYPES = new TokenType[16];
+
+    static {
+        for (char c = '0'; c <= '9'; c++) {
+            CLASSES[c] = DIGIT;
+        }
+        for (char c = 'a'; c <= 'z'; c++) {
+            CLASSES[c] = LETTER;
+            CLASSES[Character.toUpperCase(c)] = LETTER;
+        }
+        // The ASCII characters Character.isWhitespace accepts.
+        for (char c : new char[] {' ', '\t', '\u000B', '\f', '\r', '\u001C', '\u001D', '\u001E', '\u001F'}) {
+            CLASSES[c] = SPACE;
+        }
+        CLASSES['\n'] = NEWLINE;
+        CLASSES['/'] = SLASH;
+        CLASSES['='] = EQUALS;
+        CLASSES['<'] = LESS;
+        CLASSES['>'] = GREATER;
+        CLASSES['!'] = BANG;
+        symbol('+', TokenType.PLUS);
+        symbol('-', TokenType.MINUS);
+        symbol('*', TokenType.STAR);
+        symbol('%', TokenType.PERCENT);
+        symbol('(', TokenType.LPAREN);
+        symbol(')', TokenType.RPAREN);
+        symbol('{', TokenType.LBRACE);
+        symbol('}', TokenType.RBRACE);
+        symbol('[', TokenType.LBRACKET);
+        symbol(']', TokenType.RBRACKET);
+        symbol(';', TokenType.SEMICOLON);
+        symbol(',', TokenType.COMMA);
+        symbol(':', TokenType.COLON);
+
+        // By default a character ends the token being scanned, and is not allowed at the start.
+        Arrays.fill(TRANSITIONS, ACCEPT);
+        for (int c = 0; c < 1 << CLASS_BITS; c++) {
+            transition(START, c, ERROR);
+            transition(AFTER_BANG, c, ERROR);
+            transition(IN_COMMENT, c, IN_COMMENT);
+        }
+        transition(START, DIGIT, IN_NUMBER);
+        transition(START, LETTER, IN_IDENTIFIER);
+        transition(START, SLASH, AFTER_SLASH);
+        transition(START, EQUALS, AFTER_EQUALS);
+        transition(START, LESS, AFTER_LESS);
+        transition(START, GREATER, AFTER_GREATER);
+        transition(START, BANG, AFTER_BANG);
+        transition(START, SYMBOL, AFTER_SYMBOL);
+        transition(START, END, ACCEPT);
+        transition(IN_NUMBER, DIGIT, IN_NUMBER);
+        transition(IN_IDENTIFIER, LETTER, IN_IDENTIFIER);
+        transition(IN_IDENTIFIER, DIGIT, IN_IDENTIFIER);
+        transition(AFTER_SLASH, SLASH, IN_COMMENT);
+        // A comment runs to the end of the line; the newline is skipped as whitespace.
+        transition(IN_COMMENT, NEWLINE, ACCEPT);
+        transition(IN_COMMENT, END, ACCEPT);
+        transition(AFTER_EQUALS, EQUALS, AFTER_EQUAL_EQUAL);
+        transition(AFTER_LESS, EQUALS, AFTER_LESS_EQUAL);
+        transition(AFTER_GREATER, EQUALS, AFTER_GREATER_EQUAL);
+        transition(AFTER_BANG, EQUALS, AFTER_BANG_EQUAL);
+
+        for (int state = 0; state < STATE_COUNT; state++) {
+            FINAL[state] = true;
+            for (int c = 0; c < 1 << CLASS_BITS; c++) {
+                int next = TRANSITIONS[state << CLASS_BITS | c];
+                if (next == state) {
+                    SELF_LOOPS[state] |= 1 << c;
+                }
+                FINAL[state] &= next == ACCEPT;
+            }
+        }
+
+        accepts(START, TokenType.EOF, "");
+        accepts(IN_NUMBER, TokenType.NUMBER, null);
+        accepts(IN_IDENTIFIER, TokenType.IDENTIFIER, null);
+        accepts(AFTER_SLASH, TokenType.SLASH, "/");
+        accepts(AFTER_EQUALS, TokenType.EQ, "=");
+        accepts(AFTER_LESS, TokenType.LESS_THAN, "<");
+        accepts(AFTER_GREATER, TokenType.GREATER_THAN, ">");
+        accepts(AFTER_EQUAL_EQUAL, TokenType.EQUAL_EQUAL, "==");
+        accepts(AFTER_LESS_EQUAL, TokenType.LESS_EQUAL, "<=");
+        accepts(AFTER_GREATER_EQUAL, TokenType.GREATER_EQUAL, ">=");
+        accepts(AFTER_BANG_EQUAL, TokenType.BANG_EQUAL, "!=");
+
+        keyword("if", TokenType.KEYWORD);
+        keyword("var", TokenType.KEYWORD);
+        keyword("else", TokenType.KEYWORD);
+        keyword("func", TokenType.KEYWORD);
+        keyword("pure", TokenType.KEYWORD);
+        keyword("while", TokenType.KEYWORD);
+        keyword("return", TokenType.KEYWORD);
+        keyword("break", TokenType.BREAK);
+        keyword("continue", TokenType.CONTINUE);
+    }
+
+    // The input to be tokenized.
+    private final LexerInput input;
+    // The current position in the input.
+    private long position = 0;
+    // The current line, starting at 1, and the offset its first character is at.
+    private int line = 1;
+    private long lineStart = 0;
+
+    // The type, start offset and end offset (exclusive) of the most recently scanned token.
+    private TokenType tokenType;
+    private long tokenStart;
+    private long tokenEnd;
+    // The line and column (both starting at 1) of the most recently scanned token.
+    private int tokenLine;
+    private int tokenColumn;
+    // The text of the current token if it is known without looking at the input (keywords and symbols).
+    private String fixedText;
+
+    // Open-addressing hash table of the identifier names seen so far.
+    private String[] names = new String[64];
+    private int nameCount = 0;
 
     // Constructor for creating a Lexer.
-    // @param input The input string.
-    public Lexer(String input) {
+    // @param input The input to tokenize.
+    public Lexer(CharSequence input) {
+        this(new CharSequenceInput(input));
+    }
+
+    // Constructor for creating a Lexer.
+    // @param input The input to tokenize, such as a ChannelInput streaming standard input.
+    public Lexer(LexerInput input) {
         this.input = input;
     }
 
-    // Returns the character at the current position without advancing.
-    private char peek() {
-        if (position >= input.length()) {
-            return '\0'; // End of input.
-        }
-        return input.charAt(position);
+    // Constructor for creating a Lexer that starts in the middle of an input, such as at a section
+    // of a program parsed on its own (see ParallelParser). Tokens get the offsets, lines and
+    // columns they have in the whole input.
+    // @param input The input to tokenize.
+    // @param start The offset to start at.
+    // @param line The line the start offset is on.
+    // @param lineStart The offset that line starts at.
+    Lexer(LexerInput input, long start, int line, long lineStart) {
+        this.input = input;
+        this.position = start;
+        this.line = line;
+        this.lineStart = lineStart;
     }
 
-    // Returns the character at the next position without advancing.
-    private char peekNext() {
-        if (position + 1 >= input.length()) {
-            return '\0'; // End of input.
+    // Sets the class of a character that is a token on its own.
+    private static void symbol(char c, TokenType type) {
+        CLASSES[c] = SYMBOL;
+        SYMBOL_TYPES[c] = type;
+        SYMBOL_TEXTS[c] = String.valueOf(c);
+    }
+
+    // Sets the transition of a state on a character class.
+    private static void transition(int state, int charClass, int next) {
+        TRANSITIONS[state << CLASS_BITS | charClass] = (byte) next;
+    }
+
+    // Sets the token a state ends with, and its text if it is always the same.
+    private static void accepts(int state, TokenType type, String text) {
+        ACCEPTED[state] = type;
+        ACCEPTED_TEXTS[state] = text;
+    }
+
+    // Adds a keyword to the perfect hash table.
+    // @throws IllegalStateException if its slot is taken, which calls for another hash.
+    private static void keyword(String keyword, TokenType type) {
+        int slot = keywordSlot(keyword.length(), keyword.charAt(0));
+        if (KEYWORDS[slot] != null) {
+            throw new IllegalStateException("Keywords " + KEYWORDS[slot] + " and " + keyword + " have the same hash");
         }
-        return input.charAt(position + 1);
+        KEYWORDS[slot] = keyword;
+        KEYWORD_TYPES[slot] = type;
     }
 
-    // Returns the character at the current position and advances the position.
-    private char advance() {
-        char current = peek();
-        position++;
-        return current;
+    // Returns the slot of the keyword table an identifier can only match the keyword in. Every
+    // keyword has a slot of its own.
+    // @param length The length of the identifier.
+    // @param first Its first character.
+    private static int keywordSlot(int length, int first) {
+        return (first + (length << 3)) & (KEYWORDS.length - 1);
     }
 
-    // Tokenizes the input string and returns a list of tokens.
-    // @return A list of tokens.
-    public List<Token> tokenize() {
-        List<Token> tokens = new ArrayList<>();
-        // Iterate through the input string.
-        while (position < input.length()) {
-            char currentChar = peek();
-            // Tokenize numbers.
-            if (Character.isDigit(currentChar)) {
-                StringBuilder number = new StringBuilder();
-                while (Character.isDigit(peek())) {
-                    number.append(advance());
+    // Returns the class of a character outside the ASCII range, or of the end of input (-1).
+    private static int classOf(int c) {
+        if (c < 0) {
+            return END;
+        } else if (Character.isWhitespace(c)) {
+            return SPACE;
+        } else if (Character.isDigit(c)) {
+            return DIGIT;
+        } else if (Character.isLetter(c)) {
+            return LETTER;
+        }
+        return OTHER;
+    }
+
+    // Scans the next token.
+    // @return The type of the token; TokenType.EOF once the input is exhausted.
+    // @throws RuntimeException for a character that starts no token.
+    public TokenType nextToken() {
+        int state;
+        // The first character of the token.
+        int first;
+        do {
+            // Skip whitespace, counting lines. Newlines only occur between tokens: comments stop
+            // before them.
+            int c = input.charAt(position);
+            int charClass = (c & ~0x7f) == 0 ? CLASSES[c] : classOf(c);
+            while (charClass == SPACE || charClass == NEWLINE) {
+                if (charClass == NEWLINE) {
+                    line++;
+                    lineStart = position + 1;
                 }
-                tokens.add(new Token(TokenType.NUMBER, number.toString()));
+                c = input.charAt(++position);
+                charClass = (c & ~0x7f) == 0 ? CLASSES[c] : classOf(c);
             }
-            // Tokenize identifiers and keywords.
-            else if (Character.isLetter(currentChar)) {
-                StringBuilder identifier = new StringBuilder();
-                while (Character.isLetterOrDigit(peek())) {
-                    identifier.append(advance());
+            tokenStart = position;
+            first = c;
+            state = START;
+            // Run the automaton until the next character does not continue the token.
+            int next = TRANSITIONS[START << CLASS_BITS | charClass];
+            while (next >= 0) {
+                state = next;
+                position++;
+                if (FINAL[state]) {
+                    break;
                 }
-                String identifierStr = identifier.toString();
-                // Check for keywords.
-                if (identifierStr.equals("var") || identifierStr.equals("while") || identifierStr.equals("if")) {
-                    tokens.add(new Token(TokenType.KEYWORD, identifierStr));
-                } else if (identifierStr.equals("break")) {
-                    tokens.add(new Token(TokenType.BREAK, identifierStr)); // Corrected line
-                } else if (identifierStr.equals("print")) {
-                    tokens.add(new Token(TokenType.IDENTIFIER, identifierStr)); // Treat 'print' as identifier for parsing
+                int loop = SELF_LOOPS[state];
+                c = input.charAt(position);
+                charClass = (c & ~0x7f) == 0 ? CLASSES[c] : classOf(c);
+                while ((loop >>> charClass & 1) != 0) {
+                    c = input.charAt(++position);
+                    charClass = (c & ~0x7f) == 0 ? CLASSES[c] : classOf(c);
                 }
-                // Otherwise, it's a variable identifier.
-                else {
-                    tokens.add(new Token(TokenType.IDENTIFIER, identifierStr));
-                }
-            }
-            // Tokenize operators and symbols.
-            else if (currentChar == '+') {
-                tokens.add(new Token(TokenType.PLUS, String.valueOf(advance())));
-            } else if (currentChar == '-') {
-                tokens.add(new Token(TokenType.MINUS, String.valueOf(advance())));
-            } else if (currentChar == '*') {
-                tokens.add(new Token(TokenType.STAR, String.valueOf(advance())));
-            } else if (currentChar == '/') {
-                tokens.add(new Token(TokenType.SLASH, String.valueOf(advance())));
-            } else if (currentChar == '%') {
-                tokens.add(new Token(TokenType.PERCENT, String.valueOf(advance())));
-            } else if (currentChar == '(') {
-                tokens.add(new Token(TokenType.LPAREN, String.valueOf(advance())));
-            } else if (currentChar == ')') {
-                tokens.add(new Token(TokenType.RPAREN, String.valueOf(advance())));
-            } else if (currentChar == '{') {
-                tokens.add(new Token(TokenType.LBRACE, String.valueOf(advance())));
-            } else if (currentChar == '}') {
-                tokens.add(new Token(TokenType.RBRACE, String.valueOf(advance())));
+                next = TRANSITIONS[state << CLASS_BITS | charClass];
             }
-            // Tokenize equals sign (either "=" or "==").
-            else if (currentChar == '=') {
-                if (peekNext() == '=') {
-                    tokens.add(new Token(TokenType.EQUAL_EQUAL, "=="));
-                    advance();
-                    advance();
-                } else {
-                    tokens.add(new Token(TokenType.EQ, String.valueOf(advance())));
-                }
+            if (next == ERROR) {
+                // A '!' not followed by '=' is the unexpected character.
+                throw new RuntimeException("Unexpected character: " + (char) (state == AFTER_BANG ? '!' : c));
             }
-            // Tokenize not equals sign "!=".
-            else if (currentChar == '!') {
-                if (peekNext() == '=') {
-                    tokens.add(new Token(TokenType.BANG_EQUAL, "!="));
-                    advance();
-                    advance();
-                } else {
-                    throw new RuntimeException("Unexpected character: " + currentChar);
-                }
+        } while (state == IN_COMMENT);
+        tokenType = ACCEPTED[state];
+        tokenEnd = position;
+        tokenLine = line;
+        tokenColumn = (int) (tokenStart - lineStart) + 1;
+        fixedText = ACCEPTED_TEXTS[state];
+        // Everything before this token has been consumed, so a streamed input can let it go.
+        input.release(tokenStart);
+        if (state == AFTER_SYMBOL) {
+            tokenType = SYMBOL_TYPES[first];
+            fixedText = SYMBOL_TEXTS[first];
+        } else if (state == IN_IDENTIFIER) {
+            // Only the keyword in the identifier's slot can match it.
+            int length = tokenLength();
+            int slot = keywordSlot(length, first);
+            String keyword = KEYWORDS[slot];
+            if (keyword != null && keyword.length() == length && textEquals(tokenStart, keyword)) {
+                tokenType = KEYWORD_TYPES[slot];
+                fixedText = keyword;
             }
-            // Tokenize less than and less than or equal to.
-            else if (currentChar == '<') {
-                if (peekNext() == '=') {
-                    tokens.add(new Token(TokenType.LESS_EQUAL, "<="));
-                    advance();
-                    advance();
-                } else {
-                    tokens.add(new Token(TokenType.LESS_THAN, "<"));
-                    advance();
-                }
+        }
+        return tokenType;
+    }
+
+    // Returns whether the input at an offset matches a string.
+    private boolean textEquals(long start, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (input.charAt(start + i) != text.charAt(i)) {
+                return false;
             }
-            // Tokenize greater than and greater than or equal to.
-            else if (currentChar == '>') {
-                if (peekNext() == '=') {
-                    tokens.add(new Token(TokenType.GREATER_EQUAL, ">="));
-                    advance();
-                    advance();
-                } else {
-                    tokens.add(new Token(TokenType.GREATER_THAN, ">"));
-                    advance();
-                }
+        }
+        return true;
+    }
+
+    // Returns the type of the most recently scanned token.
+    public TokenType tokenType() {
+        return tokenType;
+    }
+
+    // Returns the start offset of the most recently scanned token in the input.
+    public long tokenStart() {
+        return tokenStart;
+    }
+
+    // Returns the line of the most recently scanned token, starting at 1.
+    public int tokenLine() {
+        return tokenLine;
+    }
+
+    // Returns the column of the first character of the most recently scanned token, starting at 1.
+    public int tokenColumn() {
+        return tokenColumn;
+    }
+
+    // Returns the length of the most recently scanned token.
+    public int tokenLength() {
+        return (int) (tokenEnd - tokenStart);
+    }
+
+    // Returns the text of the most recently scanned token. Keywords and symbols return constants
+    // and identifiers return their interned name; only numbers allocate a new String.
+    public String tokenText() {
+        if (fixedText != null) {
+            return fixedText;
+        }
+        if (tokenType == TokenType.IDENTIFIER) {
+            return internName();
+        }
+        return input.text(tokenStart, tokenEnd);
+    }
+
+    // Returns the value of the most recently scanned NUMBER token, parsed directly from the input.
+    // Values past the int range can be computed, but not written as literals.
+    // @throws RuntimeException if the number does not fit in an int.
+    public int tokenIntValue() {
+        int value = 0;
+        for (long i = tokenStart; i < tokenEnd; i++) {
+            int digit = Character.digit(input.charAt(i), 10);
+            if (value > (Integer.MAX_VALUE - digit) / 10) {
+                throw new RuntimeException("Number too large: " + tokenText() + " at line " + tokenLine
+                        + ", column " + tokenColumn + " (literals must fit in an int)");
             }
-            // Skip whitespace.
-            else if (Character.isWhitespace(currentChar)) {
-                advance();
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    // Returns the interned String for the current identifier, creating it on first occurrence.
+    private String internName() {
+        int hash = 0;
+        for (long i = tokenStart; i < tokenEnd; i++) {
+            hash = 31 * hash + input.charAt(i);
+        }
+        int mask = names.length - 1;
+        int index = hash & mask;
+        int length = tokenLength();
+        while (names[index] != null) {
+            String name = names[index];
+            if (name.length() == length && textEquals(tokenStart, name)) {
+                return name;
             }
-            // Handle unexpected characters.
-            else {
-                throw new RuntimeException("Unexpected character: " + currentChar);
+            index = (index + 1) & mask;
+        }
+        String name = input.text(tokenStart, tokenEnd);
+        names[index] = name;
+        if (++nameCount * 2 > names.length) {
+            rehashNames();
+        }
+        return name;
+    }
+
+    // Doubles the identifier table. String.hashCode uses the same hash as internName.
+    private void rehashNames() {
+        String[] old = names;
+        names = new String[old.length * 2];
+        int mask = names.length - 1;
+        for (String name : old) {
+            if (name != null) {
+                int index = name.hashCode() & mask;
+                while (names[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                names[index] = name;
             }
         }
+    }
+
+    // Tokenizes the whole input and returns a list of tokens, ending with an EOF token.
+    // Prefer nextToken() for large inputs; this materializes every token.
+    // @return A list of tokens.
+    public List<Token> tokenize() {
+        List<Token> tokens = new ArrayList<>();
+        while (nextToken() != TokenType.EOF) {
+            tokens.add(new Token(tokenType, tokenText(), tokenLine, tokenColumn));
+        }
         // Add the end-of-file token.
-        tokens.add(new Token(TokenType.EOF, ""));
+        tokens.add(new Token(TokenType.EOF, "", tokenLine, tokenColumn));
         return tokens;
     }
 }
@@ -0,0 +1,17 @@
+// The text a Lexer scans. Offsets are absolute positions from the start of the text.
+interface LexerInput {
+    // Returns the character at an offset.
+    // @param offset The offset of the character.
+    // @return The character, or -1 past the end of the input.
+    int charAt(long offset);
+
+    // Returns the text between two offsets as a String.
+    // @param start The offset of the first character.
+    // @param end The offset after the last character.
+    String text(long start, long end);
+
+    // Signals that the text before an offset will not be read again, so it may be discarded.
+    // @param offset The offset of the first character still needed.
+    default void release(long offset) {
+    }
+}
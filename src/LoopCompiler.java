@@ -0,0 +1,434 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// The LoopCompiler is the JIT tier of the Interpreter. It translates a hot while loop (its
+// condition, body and any nested loops) into a hidden JVM class, so HotSpot can compile the loop
+// to native code. Each variable of the loop lives in a local int of the generated method; values
+// are loaded from the frame on entry and written back on exit. Arithmetic fails on int overflow,
+// as in the engines without exact arithmetic: additions, subtractions, multiplications and
+// divisions call Math.addExact and its siblings, which HotSpot compiles to the plain instruction
+// and an overflow check.
+class LoopCompiler {
+    // The number of iterations after which the Interpreter compiles a loop.
+    static final int THRESHOLD = 1000;
+
+    // JVM opcodes used by the generated code.
+    private static final int ICONST_0 = 0x03;
+    private static final int ICONST_1 = 0x04;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+    private static final int ILOAD = 0x15;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int IALOAD = 0x2e;
+    private static final int ISTORE = 0x36;
+    private static final int IASTORE = 0x4f;
+    private static final int IREM = 0x70;
+    private static final int IF_ICMPEQ = 0x9f;
+    private static final int IF_ICMPNE = 0xa0;
+    private static final int IF_ICMPLT = 0xa1;
+    private static final int IF_ICMPGE = 0xa2;
+    private static final int IF_ICMPGT = 0xa3;
+    private static final int IF_ICMPLE = 0xa4;
+    private static final int GOTO = 0xa7;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int ATHROW = 0xbf;
+
+    // Local variable slots: 0 is 'this', 1 is the frame, loop variables start at 2.
+    private static final int FIRST_VARIABLE_LOCAL = 2;
+
+    // Thrown internally when the loop uses a construct the compiler does not support.
+    private static class UnsupportedLoopException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedLoopException() {
+            super(null, null, false, false);
+        }
+    }
+
+    // The class file being built; integer constants are added to its pool during code generation.
+    private final ClassFileWriter writer = new ClassFileWriter("CompiledLoop$Generated", "CompiledLoop");
+    // Maps each frame slot used by the loop to its local variable, in first-use order.
+    private final Map<Integer, Integer> locals = new LinkedHashMap<>();
+    // The frame slots the loop assigns, which must be written back on exit.
+    private final List<Integer> assignedSlots = new ArrayList<>();
+    // The generated bytecode.
+    private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+    // The current and maximum operand stack depth.
+    private int depth = 0;
+    private int maxDepth = 0;
+    // Whether the next instruction can be reached; code after a 'break' or 'continue' is skipped.
+    private boolean reachable = true;
+    // Label positions (-1 until bound) and the pending branches to each label.
+    private final List<Integer> labels = new ArrayList<>();
+    private final List<int[]> branches = new ArrayList<>();
+    // The operand stack depth at each branch target, for the StackMapTable.
+    private final TreeMap<Integer, Integer> frames = new TreeMap<>();
+    // The position of the handler for ArithmeticExceptions, whose stack holds the exception.
+    private int handler = -1;
+    // The exit and head labels of each enclosing loop within the compiled loop, innermost last,
+    // for 'break' and 'continue'.
+    private final List<Integer> breakLabels = new ArrayList<>();
+    private final List<Integer> continueLabels = new ArrayList<>();
+
+    private LoopCompiler() {
+    }
+
+    // Compiles a while loop into a hidden class.
+    // @param whileNode The resolved loop to compile.
+    // @return The compiled loop, or null if the loop uses a construct the compiler does not support
+    //         (e.g. 'print') or is too large.
+    public static CompiledLoop compile(WhileNode whileNode) {
+        try {
+            return new LoopCompiler().define(whileNode);
+        } catch (UnsupportedLoopException e) {
+            return null;
+        }
+    }
+
+    // Generates, defines and instantiates the hidden class for a loop.
+    private CompiledLoop define(WhileNode whileNode) {
+        collectVariables(whileNode);
+        if (FIRST_VARIABLE_LOCAL + locals.size() > 255) {
+            throw new UnsupportedLoopException();
+        }
+        // Load every variable the loop uses from the frame.
+        for (Map.Entry<Integer, Integer> entry : locals.entrySet()) {
+            emit(ALOAD_1);
+            push(1);
+            pushInt(entry.getKey());
+            emit(IALOAD);
+            pop(1);
+            emit(ISTORE, entry.getValue());
+            pop(1);
+        }
+        int start = code.size();
+        compileStatement(whileNode);
+        writeBack();
+        emit(RETURN);
+        // An overflow or a zero divisor writes the variables back before the exception leaves the
+        // loop, so the frame is in the same state as after the interpreter's failed statement.
+        handler = code.size();
+        frames.put(handler, 1);
+        depth = 1;
+        writeBack();
+        emit(ATHROW);
+        int[] exceptionTable = {start, handler, handler, writer.classConstant("java/lang/ArithmeticException")};
+        byte[] body = code.toByteArray();
+        if (body.length > Short.MAX_VALUE) {
+            throw new UnsupportedLoopException();
+        }
+        for (int[] branch : branches) {
+            int offset = labels.get(branch[2]) - branch[0];
+            body[branch[1]] = (byte) (offset >> 8);
+            body[branch[1] + 1] = (byte) offset;
+        }
+
+        writer.addDefaultConstructor();
+        ByteArrayOutputStream stackMap = new ByteArrayOutputStream();
+        writeStackMapTable(new DataOutputStream(stackMap));
+        writer.addMethod("run", "([I)V", body, maxDepth, FIRST_VARIABLE_LOCAL + locals.size(), exceptionTable,
+                stackMap.toByteArray(), frames.size());
+        try {
+            Class<?> loopClass = MethodHandles.lookup().defineHiddenClass(writer.toByteArray(), true).lookupClass();
+            return (CompiledLoop) loopClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to define compiled loop", e);
+        }
+    }
+
+    // Assigns a local variable to every frame slot used by a node, and records assigned slots.
+    private void collectVariables(Node node) {
+        if (node instanceof VarDeclarationNode varDec) {
+            collectVariables(varDec.initializer);
+            assign(varDec.slot);
+        } else if (node instanceof AssignmentNode assign) {
+            collectVariables(assign.value);
+            assign(assign.slot);
+        } else if (node instanceof WhileNode whileNode) {
+            collectVariables(whileNode.condition);
+            whileNode.body.forEach(this::collectVariables);
+        } else if (node instanceof IfNode ifNode) {
+            collectVariables(ifNode.condition);
+            ifNode.thenBranch.forEach(this::collectVariables);
+            ifNode.elseBranch.forEach(this::collectVariables);
+        } else if (node instanceof BinaryOpNode binOp) {
+            collectVariables(binOp.left);
+            collectVariables(binOp.right);
+        } else if (node instanceof VariableNode variableNode) {
+            local(variableNode.slot);
+        } else if (!(node instanceof NumberNode || node instanceof BreakNode || node instanceof ContinueNode)) {
+            // Printing and any other statement stay in the interpreter.
+            throw new UnsupportedLoopException();
+        }
+    }
+
+    private void assign(int slot) {
+        local(slot);
+        if (!assignedSlots.contains(slot)) {
+            assignedSlots.add(slot);
+        }
+    }
+
+    // Returns the local variable holding a frame slot.
+    private int local(int slot) {
+        return locals.computeIfAbsent(slot, s -> FIRST_VARIABLE_LOCAL + locals.size());
+    }
+
+    // Emits the code that stores every assigned local back into the frame.
+    private void writeBack() {
+        for (int slot : assignedSlots) {
+            emit(ALOAD_1);
+            push(1);
+            pushInt(slot);
+            emit(ILOAD, local(slot));
+            push(1);
+            emit(IASTORE);
+            pop(3);
+        }
+    }
+
+    // Emits the code for a statement.
+    private void compileStatement(Node node) {
+        if (node instanceof VarDeclarationNode varDec) {
+            compileExpression(varDec.initializer);
+            emit(ISTORE, local(varDec.slot));
+            pop(1);
+        } else if (node instanceof AssignmentNode assign) {
+            compileExpression(assign.value);
+            emit(ISTORE, local(assign.slot));
+            pop(1);
+        } else if (node instanceof WhileNode whileNode) {
+            int head = newLabel();
+            int exit = newLabel();
+            bind(head, 0);
+            jumpIfFalse(whileNode.condition, exit);
+            breakLabels.add(exit);
+            continueLabels.add(head);
+            compileBlock(whileNode.body);
+            breakLabels.remove(breakLabels.size() - 1);
+            continueLabels.remove(continueLabels.size() - 1);
+            if (reachable) {
+                jump(GOTO, head);
+            }
+            bind(exit, 0);
+        } else if (node instanceof IfNode ifNode) {
+            int elseLabel = newLabel();
+            int end = newLabel();
+            jumpIfFalse(ifNode.condition, elseLabel);
+            compileBlock(ifNode.thenBranch);
+            if (reachable) {
+                jump(GOTO, end);
+            }
+            bind(elseLabel, 0);
+            compileBlock(ifNode.elseBranch);
+            bind(end, 0);
+        } else if (node instanceof BreakNode breakNode) {
+            jump(GOTO, loopLabel(breakLabels, breakNode.depth));
+        } else if (node instanceof ContinueNode continueNode) {
+            jump(GOTO, loopLabel(continueLabels, continueNode.depth));
+        } else {
+            throw new UnsupportedLoopException();
+        }
+    }
+
+    // Returns the label of the loop a 'break' or 'continue' jumps to.
+    // @param loopLabels The break or continue labels of the enclosing loops.
+    // @param depth The number of loops between the statement and its target.
+    private int loopLabel(List<Integer> loopLabels, int depth) {
+        // A target outside of the compiled loop would need the interpreter to unwind further.
+        if (depth >= loopLabels.size()) {
+            throw new UnsupportedLoopException();
+        }
+        return loopLabels.get(loopLabels.size() - 1 - depth);
+    }
+
+    // Emits the code for a block, skipping statements that follow a 'break' or 'continue'.
+    private void compileBlock(List<Node> statements) {
+        for (Node statement : statements) {
+            if (!reachable) {
+                break;
+            }
+            compileStatement(statement);
+        }
+    }
+
+    // Emits a comparison that jumps to a label when the condition is false.
+    private void jumpIfFalse(Node node, int label) {
+        if (!(node instanceof BinaryOpNode binOp)) {
+            throw new UnsupportedLoopException();
+        }
+        int opcode = switch (binOp.operator) {
+            case LESS_EQUAL -> IF_ICMPGT;
+            case GREATER_EQUAL -> IF_ICMPLT;
+            case LESS -> IF_ICMPGE;
+            case GREATER -> IF_ICMPLE;
+            case EQUAL -> IF_ICMPNE;
+            case NOT_EQUAL -> IF_ICMPEQ;
+            default -> throw new UnsupportedLoopException();
+        };
+        compileExpression(binOp.left);
+        compileExpression(binOp.right);
+        pop(2);
+        jump(opcode, label);
+    }
+
+    // Emits the code that pushes the value of an expression.
+    private void compileExpression(Node node) {
+        if (node instanceof NumberNode numberNode) {
+            pushInt(numberNode.value);
+        } else if (node instanceof VariableNode variableNode) {
+            emit(ILOAD, local(variableNode.slot));
+            push(1);
+        } else if (node instanceof BinaryOpNode binOp) {
+            compileExpression(binOp.left);
+            compileExpression(binOp.right);
+            // Both operands are on the stack; every case leaves the single result in their place.
+            int base = depth - 2;
+            switch (binOp.operator) {
+                case ADD -> invokeMath("addExact");
+                case SUBTRACT -> invokeMath("subtractExact");
+                case MULTIPLY -> invokeMath("multiplyExact");
+                case DIVIDE -> invokeMath("divideExact");
+                case REMAINDER -> emit(IREM);
+                case LESS_EQUAL, GREATER_EQUAL, LESS, GREATER, EQUAL, NOT_EQUAL -> {
+                    // Comparisons used as values produce 1 for true and 0 for false.
+                    int opcode = switch (binOp.operator) {
+                        case LESS_EQUAL -> IF_ICMPLE;
+                        case GREATER_EQUAL -> IF_ICMPGE;
+                        case LESS -> IF_ICMPLT;
+                        case GREATER -> IF_ICMPGT;
+                        case EQUAL -> IF_ICMPEQ;
+                        default -> IF_ICMPNE;
+                    };
+                    int whenTrue = newLabel();
+                    int end = newLabel();
+                    jump(opcode, whenTrue);
+                    emit(ICONST_0);
+                    jump(GOTO, end);
+                    bind(whenTrue, base);
+                    emit(ICONST_1);
+                    bind(end, base + 1);
+                }
+                default -> throw new UnsupportedLoopException();
+            }
+            depth = base + 1;
+        } else {
+            throw new UnsupportedLoopException();
+        }
+    }
+
+    // Emits a call of a Math method that takes two ints and returns an int.
+    private void invokeMath(String name) {
+        emit(INVOKESTATIC);
+        emitShort(writer.methodRef("java/lang/Math", name, "(II)I"));
+    }
+
+    // Emits the shortest instruction that pushes an int constant.
+    private void pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            emit(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            emit(BIPUSH, value & 0xff);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            emit(SIPUSH);
+            emitShort(value);
+        } else {
+            emit(LDC_W);
+            emitShort(writer.integer(value));
+        }
+        push(1);
+    }
+
+    private int newLabel() {
+        labels.add(-1);
+        return labels.size() - 1;
+    }
+
+    // Binds a label to the current position; the position becomes reachable.
+    // @param label The label to bind.
+    // @param stackDepth The operand stack depth at the label.
+    private void bind(int label, int stackDepth) {
+        labels.set(label, code.size());
+        frames.put(code.size(), stackDepth);
+        depth = stackDepth;
+        reachable = true;
+    }
+
+    // Emits a branch instruction to a label.
+    private void jump(int opcode, int label) {
+        int position = code.size();
+        emit(opcode);
+        branches.add(new int[]{position, code.size(), label});
+        emitShort(0);
+        if (opcode == GOTO) {
+            reachable = false;
+        }
+    }
+
+    private void emit(int opcode) {
+        code.write(opcode);
+    }
+
+    private void emit(int opcode, int operand) {
+        code.write(opcode);
+        code.write(operand);
+    }
+
+    private void emitShort(int value) {
+        code.write(value >> 8);
+        code.write(value);
+    }
+
+    private void push(int count) {
+        depth += count;
+        maxDepth = Math.max(maxDepth, depth);
+    }
+
+    private void pop(int count) {
+        depth -= count;
+    }
+
+    // Writes a full_frame entry for every branch target: the locals are always 'this', the frame
+    // and the loop variables; the operand stack holds only ints, except at the exception handler.
+    private void writeStackMapTable(DataOutputStream out) {
+        int thisType = writer.thisClass();
+        int frameType = writer.classConstant("[I");
+        int exceptionType = writer.classConstant("java/lang/ArithmeticException");
+        int previous = -1;
+        try {
+            for (Map.Entry<Integer, Integer> frame : frames.entrySet()) {
+                out.writeByte(255); // full_frame
+                out.writeShort(frame.getKey() - previous - 1);
+                out.writeShort(FIRST_VARIABLE_LOCAL + locals.size());
+                out.writeByte(7); // Object_variable_info
+                out.writeShort(thisType);
+                out.writeByte(7);
+                out.writeShort(frameType);
+                for (int i = 0; i < locals.size(); i++) {
+                    out.writeByte(1); // Integer_variable_info
+                }
+                out.writeShort(frame.getValue());
+                if (frame.getKey() == handler) {
+                    out.writeByte(7);
+                    out.writeShort(exceptionType);
+                } else {
+                    for (int i = 0; i < frame.getValue(); i++) {
+                        out.writeByte(1);
+                    }
+                }
+                previous = frame.getKey();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,574 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// The LoopOptimizer analyzes the while loops of a resolved program, outermost loops first:
+// - Induction variables: variables whose only write in the loop is an unconditional 'v = v + c'
+//   or 'v = v - c' in the loop body.
+// - Accumulation loops such as 'while i <= n { sum = sum + i; i = i + 1 }' are replaced by a
+//   ClosedFormLoop that computes the result without iterating.
+// - 'i * i' in a loop condition, for an induction variable i, becomes a square maintained by
+//   additions next to the update of i (using the second difference of the square). This trades
+//   one multiplication for two extra statements, which only pays off in loops compiled to native
+//   code, so it is optional.
+// - Array accesses indexed by 'i', 'i + c' or 'i - c', for an induction variable i bounded by the
+//   loop condition, skip their bounds checks when a BoundsCheckNode before the loop finds that
+//   every index they can use is in bounds.
+// - Expressions that do not depend on anything the loop writes, and cannot fail, are computed once
+//   into a temporary before the loop. Without exact arithmetic an overflow fails, so expressions
+//   that can overflow are only moved out of the loop condition.
+// Temporaries get frame slots from the Resolver. Run it after the Optimizer, on a whole program.
+class LoopOptimizer {
+    // The resolver that hands out slots for temporaries.
+    private final Resolver resolver;
+    // Whether to replace 'i * i' in loop conditions by an incrementally maintained square.
+    private final boolean reduceSquares;
+    // Whether the program runs with exact arithmetic; otherwise an int overflow stops it, so an
+    // operation that can overflow must not run earlier than it would have.
+    private final boolean exact;
+    // What the optimizer found, for reporting.
+    private int inductionVariables = 0;
+    private int closedForms = 0;
+    private int reducedSquares = 0;
+    private int hoistedExpressions = 0;
+    private int boundsChecks = 0;
+
+    // Constructor for creating a LoopOptimizer.
+    // @param resolver The resolver that resolved the program.
+    // @param reduceSquares Whether to replace 'i * i' in loop conditions by a maintained square;
+    //        worthwhile for ExecutionMode.JIT, where hot loops run as native code.
+    // @param exact Whether the program runs in a mode with exact arithmetic (see
+    //        ExecutionMode.exactArithmetic).
+    public LoopOptimizer(Resolver resolver, boolean reduceSquares, boolean exact) {
+        this.resolver = resolver;
+        this.reduceSquares = reduceSquares;
+        this.exact = exact;
+    }
+
+    // Optimizes the loops of a resolved program.
+    // @param program The top-level statements.
+    // @return The top-level statements, with any statements that initialize temporaries.
+    public List<Node> optimize(List<Node> program) {
+        return block(program, null);
+    }
+
+    // Returns a summary of the loop optimizations applied.
+    public String summary() {
+        return inductionVariables + " induction variables, " + closedForms + " closed-form loops, "
+                + reducedSquares + " squares reduced, " + hoistedExpressions + " invariants hoisted, "
+                + boundsChecks + " bounds checks hoisted";
+    }
+
+    // Optimizes the loops in a block.
+    // @param statements The block.
+    // @param parent The node owning the block, or null for the top level.
+    // @return The block with the statements that set up each loop's temporaries before the loop.
+    private List<Node> block(List<Node> statements, Node parent) {
+        List<Node> result = new ArrayList<>();
+        for (Node statement : statements) {
+            if (statement instanceof WhileNode whileNode) {
+                List<Node> setup = loop(whileNode);
+                // The setup statements belong to the loop's line.
+                for (Node setupStatement : setup) {
+                    setupStatement.line = whileNode.line;
+                }
+                result.addAll(setup);
+            } else if (statement instanceof IfNode ifNode) {
+                replaceAll(ifNode.thenBranch, block(ifNode.thenBranch, ifNode));
+                replaceAll(ifNode.elseBranch, block(ifNode.elseBranch, ifNode));
+            }
+            result.add(statement);
+        }
+        for (Node statement : result) {
+            statement.parent = parent;
+        }
+        return result;
+    }
+
+    // Optimizes a loop and the loops nested in it.
+    // @param whileNode The loop.
+    // @return The statements to run before the loop.
+    private List<Node> loop(WhileNode whileNode) {
+        List<Node> setup = new ArrayList<>();
+        Map<Integer, Integer> writes = new HashMap<>();
+        countWrites(whileNode.body, writes);
+        // Find the induction variables and the body statements that step them.
+        Map<Integer, Integer> steps = new HashMap<>();
+        Map<Integer, Node> updates = new HashMap<>();
+        for (Node statement : whileNode.body) {
+            if (statement instanceof AssignmentNode assign && writes.get(assign.slot) == 1) {
+                Integer step = stepOf(assign);
+                if (step != null) {
+                    steps.put(assign.slot, step);
+                    updates.put(assign.slot, assign);
+                }
+            }
+        }
+        inductionVariables += steps.size();
+
+        if (closedForm(whileNode, writes, steps)) {
+            closedForms++;
+            return setup;
+        }
+        if (reduceSquares) {
+            reduceSquares(whileNode, steps, updates, setup);
+        }
+        // Temporaries introduced above are written in the loop, so count again.
+        writes.clear();
+        countWrites(whileNode.body, writes);
+        guardBounds(whileNode, writes, steps, updates, setup);
+        hoist(whileNode, writes, setup);
+        replaceAll(whileNode.body, block(whileNode.body, whileNode));
+        return setup;
+    }
+
+    // Returns the constant step of 'v = v + c' or 'v = v - c', or null for any other assignment.
+    private static Integer stepOf(AssignmentNode assign) {
+        if (assign.value instanceof BinaryOpNode binOp
+                && binOp.left instanceof VariableNode variable && variable.slot == assign.slot
+                && binOp.right instanceof NumberNode number) {
+            if (binOp.operator == Operator.ADD) {
+                return number.value;
+            } else if (binOp.operator == Operator.SUBTRACT && number.value != Integer.MIN_VALUE) {
+                return -number.value;
+            }
+        }
+        return null;
+    }
+
+    // Recognizes an accumulation loop and attaches its closed form.
+    // The body must be exactly the accumulation and the step of the counter, in either order.
+    // @return True if the loop was replaced by a closed form.
+    private boolean closedForm(WhileNode whileNode, Map<Integer, Integer> writes, Map<Integer, Integer> steps) {
+        if (whileNode.body.size() != 2 || !(whileNode.condition instanceof BinaryOpNode condition)) {
+            return false;
+        }
+        // Normalize the condition to 'counter < limit' or 'counter <= limit'.
+        Node counterNode;
+        Node limitNode;
+        boolean inclusive;
+        switch (condition.operator) {
+            case LESS, LESS_EQUAL -> {
+                counterNode = condition.left;
+                limitNode = condition.right;
+                inclusive = condition.operator == Operator.LESS_EQUAL;
+            }
+            case GREATER, GREATER_EQUAL -> {
+                counterNode = condition.right;
+                limitNode = condition.left;
+                inclusive = condition.operator == Operator.GREATER_EQUAL;
+            }
+            default -> {
+                return false;
+            }
+        }
+        if (!(counterNode instanceof VariableNode counter) || !steps.containsKey(counter.slot)
+                || steps.get(counter.slot) <= 0) {
+            return false;
+        }
+        int limitSlot;
+        int limitValue = 0;
+        if (limitNode instanceof NumberNode number) {
+            limitSlot = -1;
+            limitValue = number.value;
+        } else if (limitNode instanceof VariableNode limit && !writes.containsKey(limit.slot)) {
+            limitSlot = limit.slot;
+        } else {
+            return false;
+        }
+        // One statement steps the counter; the other must be the accumulation.
+        boolean stepFirst = whileNode.body.get(0) instanceof AssignmentNode first && first.slot == counter.slot;
+        Node other = whileNode.body.get(stepFirst ? 1 : 0);
+        if (!(other instanceof AssignmentNode accumulate) || accumulate.slot == counter.slot
+                || !(accumulate.value instanceof BinaryOpNode sum) || sum.operator != Operator.ADD) {
+            return false;
+        }
+        Node added;
+        if (sum.left instanceof VariableNode left && left.slot == accumulate.slot) {
+            added = sum.right;
+        } else if (sum.right instanceof VariableNode right && right.slot == accumulate.slot) {
+            added = sum.left;
+        } else {
+            return false;
+        }
+        boolean addsCounter = added instanceof VariableNode variable && variable.slot == counter.slot;
+        if (!addsCounter && !(added instanceof NumberNode)) {
+            return false;
+        }
+        int addend = added instanceof NumberNode number ? number.value : 0;
+        whileNode.compiled = new ClosedFormLoop(counter.slot, accumulate.slot, limitSlot, limitValue,
+                inclusive, steps.get(counter.slot), addsCounter, addend, stepFirst);
+        return true;
+    }
+
+    // Replaces 'i * i' in the loop condition, for an induction variable i with step c, by a square
+    // kept up to date with two additions after i is stepped:
+    //     square = i * i; delta = 2c * i + c * c        (before the loop)
+    //     i = i + c; square = square + delta; delta = delta + 2c * c   (in the loop)
+    // Without exact arithmetic the square overflows where 'i * i' would, so it is only reduced if
+    // nothing the loop prints or calls runs in between: the step of i must end the body and the
+    // condition must not call a function. With a step of 1 or -1, delta overflows long after the
+    // square.
+    private void reduceSquares(WhileNode whileNode, Map<Integer, Integer> steps, Map<Integer, Node> updates,
+                               List<Node> setup) {
+        if (!(whileNode.condition instanceof BinaryOpNode condition) || !condition.operator.isComparison()) {
+            return;
+        }
+        if (!exact && containsCall(condition)) {
+            return;
+        }
+        if (isSquare(condition.left, steps, updates, whileNode)) {
+            condition.left = condition.adopt(square((VariableNode) ((BinaryOpNode) condition.left).left,
+                    steps, updates, whileNode, setup));
+        }
+        if (isSquare(condition.right, steps, updates, whileNode)) {
+            condition.right = condition.adopt(square((VariableNode) ((BinaryOpNode) condition.right).left,
+                    steps, updates, whileNode, setup));
+        }
+    }
+
+    // Returns whether an expression is 'i * i' for an induction variable i that can be reduced.
+    private boolean isSquare(Node node, Map<Integer, Integer> steps, Map<Integer, Node> updates,
+                             WhileNode whileNode) {
+        if (!(node instanceof BinaryOpNode binOp && binOp.operator == Operator.MULTIPLY
+                && binOp.left instanceof VariableNode a && binOp.right instanceof VariableNode b
+                && a.slot == b.slot && steps.containsKey(a.slot))) {
+            return false;
+        }
+        return exact || Math.abs(steps.get(a.slot)) == 1
+                && whileNode.body.get(whileNode.body.size() - 1) == updates.get(a.slot);
+    }
+
+    // Returns whether an expression calls a function.
+    private static boolean containsCall(Node node) {
+        if (node instanceof CallNode) {
+            return true;
+        } else if (node instanceof BinaryOpNode binOp) {
+            return containsCall(binOp.left) || containsCall(binOp.right);
+        } else if (node instanceof ArrayAccessNode arrayAccess) {
+            return containsCall(arrayAccess.index);
+        }
+        return false;
+    }
+
+    // Sets up the incrementally maintained square of an induction variable.
+    // @return A read of the square, to use in place of 'i * i'.
+    private VariableNode square(VariableNode variable, Map<Integer, Integer> steps, Map<Integer, Node> updates,
+                                WhileNode whileNode, List<Node> setup) {
+        int step = steps.get(variable.slot);
+        int square = resolver.temporary();
+        int delta = resolver.temporary();
+        setup.add(store(square, new BinaryOpNode(read(variable.slot), Operator.MULTIPLY, read(variable.slot))));
+        setup.add(store(delta, new BinaryOpNode(
+                new BinaryOpNode(new NumberNode(2 * step), Operator.MULTIPLY, read(variable.slot)),
+                Operator.ADD, new NumberNode(step * step))));
+        int position = whileNode.body.indexOf(updates.get(variable.slot)) + 1;
+        whileNode.body.add(position, whileNode.adopt(
+                assign(square, new BinaryOpNode(read(square), Operator.ADD, read(delta)))));
+        whileNode.body.add(position + 1, whileNode.adopt(
+                assign(delta, new BinaryOpNode(read(delta), Operator.ADD, new NumberNode(2 * step * step)))));
+        reducedSquares++;
+        return read(square);
+    }
+
+    // Adds a BoundsCheckNode before the loop for each array the loop indexes with its counter, and
+    // lets the accesses it covers skip their own checks. The counter is an induction variable
+    // bounded by the loop condition, 'i < n', 'i <= n', 'i > n' or 'i >= n' with the counter on
+    // either side and stepping towards the limit; the limit is a constant or a variable the loop
+    // does not write. Before the update of the counter in the loop body, an index 'i + c' is at
+    // most the limit plus c; after it, the step is added too. Arrays declared in the loop are
+    // left alone, since the check would see the array before the loop.
+    private void guardBounds(WhileNode whileNode, Map<Integer, Integer> writes, Map<Integer, Integer> steps,
+                             Map<Integer, Node> updates, List<Node> setup) {
+        if (!(whileNode.condition instanceof BinaryOpNode condition) || !condition.operator.isComparison()) {
+            return;
+        }
+        // Put the counter on the left.
+        Operator operator = condition.operator;
+        Node counterNode = condition.left;
+        Node limitNode = condition.right;
+        if (!(counterNode instanceof VariableNode left && steps.containsKey(left.slot))) {
+            counterNode = condition.right;
+            limitNode = condition.left;
+            operator = switch (operator) {
+                case LESS -> Operator.GREATER;
+                case LESS_EQUAL -> Operator.GREATER_EQUAL;
+                case GREATER -> Operator.LESS;
+                case GREATER_EQUAL -> Operator.LESS_EQUAL;
+                default -> operator;
+            };
+        }
+        if (!(counterNode instanceof VariableNode counter) || !steps.containsKey(counter.slot)) {
+            return;
+        }
+        int step = steps.get(counter.slot);
+        int limitAdjust;
+        switch (operator) {
+            case LESS -> limitAdjust = -1;
+            case LESS_EQUAL, GREATER_EQUAL -> limitAdjust = 0;
+            case GREATER -> limitAdjust = 1;
+            default -> {
+                return;
+            }
+        }
+        boolean ascending = operator == Operator.LESS || operator == Operator.LESS_EQUAL;
+        if (step == 0 || ascending != step > 0) {
+            return;
+        }
+        int limitSlot;
+        int limitValue = 0;
+        if (limitNode instanceof NumberNode number) {
+            limitSlot = -1;
+            limitValue = number.value;
+        } else if (limitNode instanceof VariableNode limit && !writes.containsKey(limit.slot)) {
+            limitSlot = limit.slot;
+        } else {
+            return;
+        }
+
+        // The accesses of each array, and the smallest and largest offsets of their indexes.
+        Map<Integer, List<Node>> accesses = new LinkedHashMap<>();
+        Map<Integer, long[]> offsets = new HashMap<>();
+        long stepped = 0;
+        for (Node statement : whileNode.body) {
+            if (statement == updates.get(counter.slot)) {
+                stepped = step;
+                continue;
+            }
+            List<Node> found = new ArrayList<>();
+            collectAccesses(statement, found);
+            for (Node access : found) {
+                int array = access instanceof ArrayAccessNode read ? read.slot : ((ArrayAssignmentNode) access).slot;
+                Node index = access instanceof ArrayAccessNode read ? read.index : ((ArrayAssignmentNode) access).index;
+                Long offset = offsetOf(index, counter.slot);
+                if (offset == null || writes.containsKey(array) || guardSlot(access) >= 0) {
+                    continue;
+                }
+                long total = offset + stepped;
+                if (total != (int) total) {
+                    continue;
+                }
+                accesses.computeIfAbsent(array, key -> new ArrayList<>()).add(access);
+                if (access instanceof ArrayAccessNode read) {
+                    read.counter = counter.slot;
+                    read.offset = (int) (long) offset;
+                } else {
+                    ((ArrayAssignmentNode) access).counter = counter.slot;
+                    ((ArrayAssignmentNode) access).offset = (int) (long) offset;
+                }
+                long[] range = offsets.computeIfAbsent(array, key -> new long[] {total, total});
+                range[0] = Math.min(range[0], total);
+                range[1] = Math.max(range[1], total);
+            }
+        }
+        for (Map.Entry<Integer, List<Node>> entry : accesses.entrySet()) {
+            long[] range = offsets.get(entry.getKey());
+            int guard = resolver.temporary();
+            setup.add(new BoundsCheckNode(guard, entry.getKey(), counter.slot, step, limitSlot, limitValue,
+                    limitAdjust, (int) range[0], (int) range[1]));
+            for (Node access : entry.getValue()) {
+                if (access instanceof ArrayAccessNode read) {
+                    read.guardSlot = guard;
+                } else {
+                    ((ArrayAssignmentNode) access).guardSlot = guard;
+                }
+            }
+            boundsChecks++;
+        }
+    }
+
+    // Returns the guard slot of an array read or write.
+    private static int guardSlot(Node access) {
+        return access instanceof ArrayAccessNode read ? read.guardSlot : ((ArrayAssignmentNode) access).guardSlot;
+    }
+
+    // Returns c for an index 'i', 'i + c', 'c + i' or 'i - c' of a counter i, or null for any other index.
+    private static Long offsetOf(Node index, int counter) {
+        if (index instanceof VariableNode variable && variable.slot == counter) {
+            return 0L;
+        }
+        if (!(index instanceof BinaryOpNode binOp)) {
+            return null;
+        }
+        if (binOp.left instanceof VariableNode variable && variable.slot == counter
+                && binOp.right instanceof NumberNode number) {
+            if (binOp.operator == Operator.ADD) {
+                return (long) number.value;
+            } else if (binOp.operator == Operator.SUBTRACT) {
+                return -(long) number.value;
+            }
+        } else if (binOp.operator == Operator.ADD && binOp.left instanceof NumberNode number
+                && binOp.right instanceof VariableNode variable && variable.slot == counter) {
+            return (long) number.value;
+        }
+        return null;
+    }
+
+    // Collects the array reads and element assignments in a statement or expression, including
+    // those in nested statements and in indexes.
+    private static void collectAccesses(Node node, List<Node> accesses) {
+        if (node instanceof VarDeclarationNode varDec) {
+            collectAccesses(varDec.initializer, accesses);
+        } else if (node instanceof AssignmentNode assign) {
+            collectAccesses(assign.value, accesses);
+        } else if (node instanceof PrintNode printNode) {
+            collectAccesses(printNode.expression, accesses);
+        } else if (node instanceof ArrayDeclarationNode arrayDec) {
+            collectAccesses(arrayDec.length, accesses);
+        } else if (node instanceof ArrayAssignmentNode arrayAssign) {
+            accesses.add(arrayAssign);
+            collectAccesses(arrayAssign.index, accesses);
+            collectAccesses(arrayAssign.value, accesses);
+        } else if (node instanceof ArrayAccessNode arrayAccess) {
+            accesses.add(arrayAccess);
+            collectAccesses(arrayAccess.index, accesses);
+        } else if (node instanceof BinaryOpNode binOp) {
+            collectAccesses(binOp.left, accesses);
+            collectAccesses(binOp.right, accesses);
+        } else if (node instanceof IfNode ifNode) {
+            collectAccesses(ifNode.condition, accesses);
+            ifNode.thenBranch.forEach(statement -> collectAccesses(statement, accesses));
+            ifNode.elseBranch.forEach(statement -> collectAccesses(statement, accesses));
+        } else if (node instanceof WhileNode whileNode) {
+            collectAccesses(whileNode.condition, accesses);
+            whileNode.body.forEach(statement -> collectAccesses(statement, accesses));
+        }
+    }
+
+    // Moves the invariant expressions of a loop, including those in nested statements, into
+    // temporaries computed before the loop.
+    // Without exact arithmetic, an expression that can overflow is only moved out of the loop's own
+    // condition, which the loop runs first, and only if the condition calls no function that could
+    // print before it.
+    private void hoist(WhileNode whileNode, Map<Integer, Integer> writes, List<Node> setup) {
+        hoistOperands(whileNode.condition, writes, setup, exact || !containsCall(whileNode.condition));
+        for (Node statement : whileNode.body) {
+            hoistStatement(statement, writes, setup);
+        }
+    }
+
+    // Hoists the invariant expressions of a statement.
+    private void hoistStatement(Node node, Map<Integer, Integer> writes, List<Node> setup) {
+        if (node instanceof VarDeclarationNode varDec) {
+            varDec.initializer = varDec.adopt(hoistExpression(varDec.initializer, writes, setup, exact));
+        } else if (node instanceof AssignmentNode assign) {
+            assign.value = assign.adopt(hoistExpression(assign.value, writes, setup, exact));
+        } else if (node instanceof PrintNode printNode) {
+            printNode.expression = printNode.adopt(hoistExpression(printNode.expression, writes, setup, exact));
+        } else if (node instanceof ArrayDeclarationNode arrayDec) {
+            arrayDec.length = arrayDec.adopt(hoistExpression(arrayDec.length, writes, setup, exact));
+        } else if (node instanceof ArrayAssignmentNode arrayAssign) {
+            arrayAssign.index = arrayAssign.adopt(hoistExpression(arrayAssign.index, writes, setup, exact));
+            arrayAssign.value = arrayAssign.adopt(hoistExpression(arrayAssign.value, writes, setup, exact));
+        } else if (node instanceof IfNode ifNode) {
+            hoistOperands(ifNode.condition, writes, setup, exact);
+            ifNode.thenBranch.forEach(statement -> hoistStatement(statement, writes, setup));
+            ifNode.elseBranch.forEach(statement -> hoistStatement(statement, writes, setup));
+        } else if (node instanceof WhileNode whileNode) {
+            hoistOperands(whileNode.condition, writes, setup, exact);
+            whileNode.body.forEach(statement -> hoistStatement(statement, writes, setup));
+        }
+    }
+
+    // Hoists the operands of a condition; the condition itself has to stay a comparison.
+    // @param mayOverflow Whether expressions that can overflow may be hoisted.
+    private void hoistOperands(Node condition, Map<Integer, Integer> writes, List<Node> setup,
+                               boolean mayOverflow) {
+        if (condition instanceof BinaryOpNode binOp) {
+            binOp.left = binOp.adopt(hoistExpression(binOp.left, writes, setup, mayOverflow));
+            binOp.right = binOp.adopt(hoistExpression(binOp.right, writes, setup, mayOverflow));
+        }
+    }
+
+    // Replaces the largest invariant subexpressions of an expression with temporaries.
+    // @param mayOverflow Whether expressions that can overflow may be hoisted.
+    // @return The expression to use in place of the given one.
+    private Node hoistExpression(Node node, Map<Integer, Integer> writes, List<Node> setup, boolean mayOverflow) {
+        // Array elements can change anywhere in the loop, but their indexes may be invariant.
+        if (node instanceof ArrayAccessNode arrayAccess) {
+            arrayAccess.index = arrayAccess.adopt(hoistExpression(arrayAccess.index, writes, setup, mayOverflow));
+            return arrayAccess;
+        }
+        if (!(node instanceof BinaryOpNode binOp)) {
+            return node;
+        }
+        if (isInvariant(binOp, writes, mayOverflow)) {
+            int temporary = resolver.temporary();
+            setup.add(store(temporary, binOp));
+            hoistedExpressions++;
+            return read(temporary);
+        }
+        binOp.left = binOp.adopt(hoistExpression(binOp.left, writes, setup, mayOverflow));
+        binOp.right = binOp.adopt(hoistExpression(binOp.right, writes, setup, mayOverflow));
+        return binOp;
+    }
+
+    // Returns whether an expression reads nothing the loop writes and cannot fail, so computing it
+    // once before the loop gives the same value, even if the loop never runs.
+    // @param mayOverflow Whether the expression may overflow; if not, only comparisons, divisions
+    //        by constants other than 0 and -1, and remainders by constants other than 0 qualify.
+    private static boolean isInvariant(Node node, Map<Integer, Integer> writes, boolean mayOverflow) {
+        if (node instanceof VariableNode variable) {
+            return !writes.containsKey(variable.slot);
+        } else if (node instanceof BinaryOpNode binOp) {
+            if (binOp.operator == Operator.DIVIDE || binOp.operator == Operator.REMAINDER) {
+                if (!(binOp.right instanceof NumberNode number && number.value != 0
+                        && (mayOverflow || binOp.operator == Operator.REMAINDER || number.value != -1))) {
+                    return false;
+                }
+            } else if (!mayOverflow && !binOp.operator.isComparison()) {
+                return false;
+            }
+            return isInvariant(binOp.left, writes, mayOverflow) && isInvariant(binOp.right, writes, mayOverflow);
+        }
+        return node instanceof NumberNode;
+    }
+
+    // Counts the declarations and assignments of each slot in a block, including nested blocks.
+    // Array declarations count as writes of the array; assignments to its elements do not.
+    private static void countWrites(List<Node> statements, Map<Integer, Integer> writes) {
+        for (Node node : statements) {
+            if (node instanceof VarDeclarationNode varDec) {
+                writes.merge(varDec.slot, 1, Integer::sum);
+            } else if (node instanceof ArrayDeclarationNode arrayDec) {
+                writes.merge(arrayDec.slot, 1, Integer::sum);
+            } else if (node instanceof AssignmentNode assign) {
+                writes.merge(assign.slot, 1, Integer::sum);
+            } else if (node instanceof WhileNode whileNode) {
+                countWrites(whileNode.body, writes);
+            } else if (node instanceof IfNode ifNode) {
+                countWrites(ifNode.thenBranch, writes);
+                countWrites(ifNode.elseBranch, writes);
+            }
+        }
+    }
+
+    // Creates a resolved read of a slot.
+    private static VariableNode read(int slot) {
+        VariableNode variable = new VariableNode("$" + slot);
+        variable.slot = slot;
+        return variable;
+    }
+
+    // Creates a resolved declaration that initializes a temporary.
+    private static VarDeclarationNode store(int slot, Node value) {
+        VarDeclarationNode varDec = new VarDeclarationNode("$" + slot, value);
+        varDec.slot = slot;
+        return varDec;
+    }
+
+    // Creates a resolved assignment to a temporary.
+    private static AssignmentNode assign(int slot, Node value) {
+        AssignmentNode assign = new AssignmentNode("$" + slot, value);
+        assign.slot = slot;
+        return assign;
+    }
+
+    // Replaces the contents of a statement list in place; the lists of loops and ifs are final.
+    private static void replaceAll(List<Node> target, List<Node> statements) {
+        target.clear();
+        target.addAll(statements);
+    }
+}
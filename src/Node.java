@@ -1,3 +1,57 @@
 // Abstract base class for all nodes in the Abstract Syntax Tree (AST).
+// Nodes can also execute themselves (see NodeInterpreter). The generic nodes built by the Parser
+// replace themselves in their parent, on first execution, with a node specialized for the shape
+// they observe (see SpecializedNodes), so each node does only the work its shape needs.
 abstract class Node {
-}
\ No newline at end of file
+    // The node that contains this node, or null for a top-level statement.
+    Node parent;
+    // The source line the node starts on, or 0 if unknown, as for nodes created by the optimizers.
+    int line;
+
+    // Executes this node as a statement.
+    // @param frame The frame storing variable values, indexed by the slots assigned by the Resolver.
+    // @return The Completion status: NORMAL, or the 'break' or 'continue' that ended the statement.
+    int execute(int[] frame) {
+        throw new RuntimeException("Unknown node type");
+    }
+
+    // Evaluates this node as an expression.
+    // @param frame The frame storing variable values.
+    // @return The integer value of the expression.
+    int evaluate(int[] frame) {
+        throw new RuntimeException("Unknown node type");
+    }
+
+    // Evaluates this node as the condition of a while or if statement.
+    // @param frame The frame storing variable values.
+    // @return True if the condition is met, false otherwise.
+    boolean evaluateCondition(int[] frame) {
+        throw new RuntimeException("Cannot evaluate condition");
+    }
+
+    // Makes this node the parent of a child node.
+    // @param child The child node.
+    // @return The child node.
+    <T extends Node> T adopt(T child) {
+        child.parent = this;
+        return child;
+    }
+
+    // Replaces this node in its parent. Top-level statements have no parent and are not replaced.
+    // @param replacement The node taking this node's place.
+    // @return The replacement node.
+    <T extends Node> T replace(T replacement) {
+        if (parent != null) {
+            parent.replaceChild(this, replacement);
+        }
+        replacement.parent = parent;
+        return replacement;
+    }
+
+    // Replaces a direct child of this node. Nodes with children override this.
+    // @param oldChild The child to replace.
+    // @param newChild The node taking its place.
+    void replaceChild(Node oldChild, Node newChild) {
+        throw new IllegalStateException("Not a child of this node: " + oldChild);
+    }
+}
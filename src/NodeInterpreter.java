@@ -0,0 +1,49 @@
+import java.util.Arrays;
+
+// The NodeInterpreter lets the AST execute itself: every node carries its own execute/evaluate
+// methods and specializes itself in place as it runs (see Node and SpecializedNodes).
+class NodeInterpreter implements ExecutionEngine {
+    // The resolver that assigns frame slots to the variables of the program.
+    private final Resolver resolver;
+    // The frame storing variable values, indexed by the slot assigned by the Resolver.
+    private int[] frame = new int[16];
+    // The sink printed values are written to.
+    private final OutputSink sink;
+
+    // Constructor for creating a NodeInterpreter.
+    // @param resolver The resolver used to resolve the statements passed to execute.
+    // @param sink The sink to print to.
+    public NodeInterpreter(Resolver resolver, OutputSink sink) {
+        this.resolver = resolver;
+        this.sink = sink;
+    }
+
+    // Executes a resolved statement.
+    // @param node The statement to execute.
+    @Override
+    public void execute(Node node) {
+        if (frame.length < resolver.slotCount()) {
+            frame = Arrays.copyOf(frame, Math.max(frame.length * 2, resolver.slotCount()));
+        }
+        connect(node);
+        // The Resolver rejects 'break' and 'continue' outside of a loop, so a statement completes normally.
+        try {
+            node.execute(frame);
+        } finally {
+            sink.flush();
+        }
+    }
+
+    // Points the print statements in a statement at the sink of this interpreter.
+    // @param node The statement.
+    private void connect(Node node) {
+        if (node instanceof PrintNode printNode) {
+            printNode.sink = sink;
+        } else if (node instanceof WhileNode whileNode) {
+            whileNode.body.forEach(this::connect);
+        } else if (node instanceof IfNode ifNode) {
+            ifNode.thenBranch.forEach(this::connect);
+            ifNode.elseBranch.forEach(this::connect);
+        }
+    }
+}
@@ -8,4 +8,9 @@ class NumberNode extends Node {
     public NumberNode(int value) {
         this.value = value;
     }
+
+    @Override
+    int evaluate(int[] frame) {
+        return value;
+    }
 }
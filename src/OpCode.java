@@ -0,0 +1,41 @@
+// Enumerates the instructions understood by the VirtualMachine.
+// Instructions are stored in a flat int[] stream; operands follow their opcode directly.
+// Operands named a, b and dst are register indices: variables, constants and temporaries all
+// live in the same int[] register file (see Chunk).
+final class OpCode {
+    // Copies a register. Operands: dst, src.
+    static final int MOVE = 0;
+    // Arithmetic operators. Operands: dst, a, b.
+    static final int ADD = 1;
+    static final int SUB = 2;
+    static final int MUL = 3;
+    static final int DIV = 4;
+    static final int MOD = 5;
+    // Comparison operators, storing 1 for true and 0 for false. Operands: dst, a, b.
+    static final int LT = 6;
+    static final int LE = 7;
+    static final int GT = 8;
+    static final int GE = 9;
+    static final int EQ = 10;
+    static final int NE = 11;
+    // Unconditional jump. Operand: target address.
+    static final int JUMP = 12;
+    // Conditional jumps, taken if the comparison holds. Operands: a, b, target address.
+    static final int JUMP_IF_LT = 13;
+    static final int JUMP_IF_LE = 14;
+    static final int JUMP_IF_GT = 15;
+    static final int JUMP_IF_GE = 16;
+    static final int JUMP_IF_EQ = 17;
+    static final int JUMP_IF_NE = 18;
+    // Adds an immediate value to a register in place. Operands: dst, value.
+    static final int INC = 19;
+    // Prints a register. Operand: a.
+    static final int PRINT = 20;
+    // Stops execution of the chunk.
+    static final int HALT = 21;
+    // Runs a whole loop through its CompiledLoop (e.g. a ClosedFormLoop). Operand: index in Chunk.loops.
+    static final int RUN_LOOP = 22;
+
+    private OpCode() {
+    }
+}
@@ -0,0 +1,125 @@
+// Enumerates the binary operators, with their source symbol and binding precedence.
+enum Operator {
+    ADD("+", 2),
+    SUBTRACT("-", 2),
+    MULTIPLY("*", 3),
+    DIVIDE("/", 3),
+    REMAINDER("%", 3),
+    LESS_EQUAL("<=", 1),
+    GREATER_EQUAL(">=", 1),
+    LESS("<", 1),
+    GREATER(">", 1),
+    EQUAL("==", 1),
+    NOT_EQUAL("!=", 1);
+
+    // The precedence of the comparison operators, the lowest binding level.
+    static final int COMPARISON_PRECEDENCE = 1;
+    // The precedence of the additive operators, the lowest level allowed outside conditions.
+    static final int ADDITIVE_PRECEDENCE = 2;
+
+    // The operator for each token type, indexed by ordinal; null for tokens that are not operators.
+    private static final Operator[] BY_TOKEN_TYPE = new Operator[TokenType.values().length];
+
+    static {
+        BY_TOKEN_TYPE[TokenType.PLUS.ordinal()] = ADD;
+        BY_TOKEN_TYPE[TokenType.MINUS.ordinal()] = SUBTRACT;
+        BY_TOKEN_TYPE[TokenType.STAR.ordinal()] = MULTIPLY;
+        BY_TOKEN_TYPE[TokenType.SLASH.ordinal()] = DIVIDE;
+        BY_TOKEN_TYPE[TokenType.PERCENT.ordinal()] = REMAINDER;
+        BY_TOKEN_TYPE[TokenType.LESS_EQUAL.ordinal()] = LESS_EQUAL;
+        BY_TOKEN_TYPE[TokenType.GREATER_EQUAL.ordinal()] = GREATER_EQUAL;
+        BY_TOKEN_TYPE[TokenType.LESS_THAN.ordinal()] = LESS;
+        BY_TOKEN_TYPE[TokenType.GREATER_THAN.ordinal()] = GREATER;
+        BY_TOKEN_TYPE[TokenType.EQUAL_EQUAL.ordinal()] = EQUAL;
+        BY_TOKEN_TYPE[TokenType.BANG_EQUAL.ordinal()] = NOT_EQUAL;
+    }
+
+    // The operator as written in source code (e.g. "+", "<=").
+    public final String symbol;
+    // The binding precedence; higher binds tighter. All operators are left-associative.
+    public final int precedence;
+
+    Operator(String symbol, int precedence) {
+        this.symbol = symbol;
+        this.precedence = precedence;
+    }
+
+    // Returns the operator a token type stands for.
+    // @param type The token type.
+    // @return The operator, or null if the token type is not a binary operator.
+    static Operator fromTokenType(TokenType type) {
+        return BY_TOKEN_TYPE[type.ordinal()];
+    }
+
+    // Returns whether this operator is a comparison, producing 1 for true and 0 for false.
+    public boolean isComparison() {
+        return precedence == COMPARISON_PRECEDENCE;
+    }
+
+    // Applies this operator to two values in int arithmetic, failing on overflow as the engines
+    // without exact arithmetic do (see ExecutionMode.exactArithmetic).
+    // @param left The left operand.
+    // @param right The right operand.
+    // @return The result; 1 or 0 for a comparison.
+    // @throws ArithmeticException if the result does not fit in an int, or for a division or
+    //         remainder by zero.
+    public int apply(int left, int right) {
+        return switch (this) {
+            case ADD -> Math.addExact(left, right);
+            case SUBTRACT -> Math.subtractExact(left, right);
+            case MULTIPLY -> Math.multiplyExact(left, right);
+            case DIVIDE -> Math.divideExact(left, right);
+            case REMAINDER -> left % right;
+            case LESS_EQUAL -> left <= right ? 1 : 0;
+            case GREATER_EQUAL -> left >= right ? 1 : 0;
+            case LESS -> left < right ? 1 : 0;
+            case GREATER -> left > right ? 1 : 0;
+            case EQUAL -> left == right ? 1 : 0;
+            case NOT_EQUAL -> left != right ? 1 : 0;
+        };
+    }
+
+    // Applies this operator to two values exactly, as the tree-walking Interpreter does.
+    // @param left The left operand.
+    // @param right The right operand.
+    // @return The result; 1 or 0 for a comparison.
+    // @throws ExactArithmetic.Overflow if the result does not fit in an int.
+    // @throws ArithmeticException for a division or remainder by zero.
+    public int applyExact(int left, int right) {
+        return switch (this) {
+            case ADD -> ExactArithmetic.add(left, right);
+            case SUBTRACT -> ExactArithmetic.subtract(left, right);
+            case MULTIPLY -> ExactArithmetic.multiply(left, right);
+            case DIVIDE -> ExactArithmetic.divide(left, right);
+            case REMAINDER -> left % right;
+            case LESS_EQUAL -> left <= right ? 1 : 0;
+            case GREATER_EQUAL -> left >= right ? 1 : 0;
+            case LESS -> left < right ? 1 : 0;
+            case GREATER -> left > right ? 1 : 0;
+            case EQUAL -> left == right ? 1 : 0;
+            case NOT_EQUAL -> left != right ? 1 : 0;
+        };
+    }
+
+    // Applies this comparison to two values as a condition.
+    // @param left The left operand.
+    // @param right The right operand.
+    // @return Whether the comparison holds.
+    // @throws RuntimeException if this operator is not a comparison.
+    public boolean test(int left, int right) {
+        return switch (this) {
+            case LESS_EQUAL -> left <= right;
+            case GREATER_EQUAL -> left >= right;
+            case LESS -> left < right;
+            case GREATER -> left > right;
+            case EQUAL -> left == right;
+            case NOT_EQUAL -> left != right;
+            default -> throw new RuntimeException("Unknown comparison operator: " + this);
+        };
+    }
+
+    @Override
+    public String toString() {
+        return symbol;
+    }
+}
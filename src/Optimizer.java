@@ -0,0 +1,303 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// The Optimizer rewrites a resolved program before it is executed. It folds constant expressions,
+// simplifies algebraic identities (x + 0, x * 1, ...), removes branches that can never run and
+// statements after a 'break', 'continue' or 'return', and replaces reads of variables that are
+// declared once with a constant at the top level and never assigned by that constant.
+// An expression that may divide by zero is never folded or dropped, so an optimized program
+// fails at the same point as the original one, and neither is one that calls a function.
+// Function bodies have variables of their own and are left as they are, apart from the arguments
+// of the calls at the top level.
+class Optimizer {
+    // The number of declarations and assignments of each frame slot in the program.
+    private final Map<Integer, Integer> writes = new HashMap<>();
+    // The value of each variable known to be constant, by frame slot.
+    private final Map<Integer, Integer> constants = new HashMap<>();
+    // The number of nodes of the program before and after optimizing.
+    private int nodesBefore = 0;
+    private int nodesAfter = 0;
+
+    // Optimizes a whole resolved program. Constant propagation needs to see every assignment of a
+    // variable, so the program must be complete.
+    // @param program The top-level statements, resolved by the Resolver.
+    // @return The optimized top-level statements.
+    public List<Node> optimize(List<Node> program) {
+        for (Node statement : program) {
+            nodesBefore += count(statement);
+            countWrites(statement);
+        }
+        List<Node> optimized = block(program, null, true);
+        for (Node statement : optimized) {
+            nodesAfter += count(statement);
+        }
+        return optimized;
+    }
+
+    // Returns the number of nodes the optimizer removed from the program.
+    public int removedNodes() {
+        return nodesBefore - nodesAfter;
+    }
+
+    // Returns the number of nodes in the program before it was optimized.
+    public int originalNodes() {
+        return nodesBefore;
+    }
+
+    // Optimizes the statements of a block.
+    // @param statements The statements to optimize.
+    // @param parent The node owning the block, or null for the top level.
+    // @param topLevel Whether the statements run unconditionally, in program order.
+    // @return The optimized statements.
+    private List<Node> block(List<Node> statements, Node parent, boolean topLevel) {
+        List<Node> result = new ArrayList<>();
+        for (Node statement : statements) {
+            // Statements after a 'break' or 'continue' can never run.
+            if (!statement(statement, result, topLevel)) {
+                break;
+            }
+        }
+        for (Node statement : result) {
+            statement.parent = parent;
+        }
+        return result;
+    }
+
+    // Optimizes a statement and adds what remains of it to a block.
+    // @param node The statement to optimize.
+    // @param out The block being built.
+    // @param topLevel Whether the statement runs unconditionally, in program order.
+    // @return False if the block cannot continue past the statement ('break', 'continue' or 'return').
+    private boolean statement(Node node, List<Node> out, boolean topLevel) {
+        if (node instanceof VarDeclarationNode varDec) {
+            varDec.initializer = varDec.adopt(expression(varDec.initializer));
+            out.add(varDec);
+            // Every later statement sees this value, since nothing else writes the variable.
+            if (topLevel && writes.get(varDec.slot) == 1 && varDec.initializer instanceof NumberNode number) {
+                constants.put(varDec.slot, number.value);
+            }
+        } else if (node instanceof AssignmentNode assign) {
+            assign.value = assign.adopt(expression(assign.value));
+            // Drop 'x = x'.
+            if (!(assign.value instanceof VariableNode variable && variable.slot == assign.slot)) {
+                out.add(assign);
+            }
+        } else if (node instanceof PrintNode printNode) {
+            printNode.expression = printNode.adopt(expression(printNode.expression));
+            out.add(printNode);
+        } else if (node instanceof ArrayDeclarationNode arrayDec) {
+            arrayDec.length = arrayDec.adopt(expression(arrayDec.length));
+            out.add(arrayDec);
+        } else if (node instanceof ArrayAssignmentNode arrayAssign) {
+            arrayAssign.index = arrayAssign.adopt(expression(arrayAssign.index));
+            arrayAssign.value = arrayAssign.adopt(expression(arrayAssign.value));
+            out.add(arrayAssign);
+        } else if (node instanceof CallNode call) {
+            arguments(call);
+            out.add(call);
+        } else if (node instanceof WhileNode whileNode) {
+            Node condition = condition(whileNode.condition);
+            // A loop whose condition is always false never runs. One that is always true keeps
+            // its folded comparison, since a condition has to stay a comparison.
+            if (!(condition instanceof NumberNode number && number.value == 0)) {
+                whileNode.condition = whileNode.adopt(condition instanceof NumberNode ? whileNode.condition : condition);
+                replaceAll(whileNode.body, block(whileNode.body, whileNode, false));
+                out.add(whileNode);
+            }
+        } else if (node instanceof IfNode ifNode) {
+            Node condition = condition(ifNode.condition);
+            // A constant condition leaves only the branch that is taken.
+            if (condition instanceof NumberNode number) {
+                for (Node statement : number.value != 0 ? ifNode.thenBranch : ifNode.elseBranch) {
+                    if (!statement(statement, out, topLevel)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            ifNode.condition = ifNode.adopt(condition);
+            replaceAll(ifNode.thenBranch, block(ifNode.thenBranch, ifNode, false));
+            replaceAll(ifNode.elseBranch, block(ifNode.elseBranch, ifNode, false));
+            if (!ifNode.thenBranch.isEmpty() || !ifNode.elseBranch.isEmpty() || !isSafe(condition)) {
+                out.add(ifNode);
+            }
+        } else {
+            out.add(node);
+            return !(node instanceof BreakNode || node instanceof ContinueNode || node instanceof ReturnNode);
+        }
+        return true;
+    }
+
+    // Optimizes a while or if condition.
+    // @param node The condition.
+    // @return The optimized comparison, or a NumberNode (1 or 0) if the condition is constant.
+    private Node condition(Node node) {
+        if (!(node instanceof BinaryOpNode binOp) || !binOp.operator.isComparison()) {
+            // Leave anything that is not a comparison to fail as before.
+            return node;
+        }
+        return expression(binOp);
+    }
+
+    // Optimizes an expression.
+    // @param node The expression.
+    // @return The optimized expression; may be a different node.
+    private Node expression(Node node) {
+        if (node instanceof VariableNode variable && constants.containsKey(variable.slot)) {
+            return new NumberNode(constants.get(variable.slot));
+        }
+        if (node instanceof ArrayAccessNode arrayAccess) {
+            arrayAccess.index = arrayAccess.adopt(expression(arrayAccess.index));
+            return arrayAccess;
+        }
+        if (node instanceof CallNode call) {
+            arguments(call);
+            return call;
+        }
+        if (!(node instanceof BinaryOpNode binOp)) {
+            return node;
+        }
+        Node left = expression(binOp.left);
+        Node right = expression(binOp.right);
+        Integer l = left instanceof NumberNode number ? number.value : null;
+        Integer r = right instanceof NumberNode number ? number.value : null;
+        boolean division = binOp.operator == Operator.DIVIDE || binOp.operator == Operator.REMAINDER;
+        if (l != null && r != null && !(division && r == 0)) {
+            // A result that does not fit in an int is left to the engine: the tree-walking
+            // Interpreter promotes it, the others wrap it as folding would have.
+            try {
+                return new NumberNode(binOp.operator.applyExact(l, r));
+            } catch (ExactArithmetic.Overflow e) {
+                // Not folded.
+            }
+        }
+        switch (binOp.operator) {
+            case ADD -> {
+                if (isConstant(left, 0)) {
+                    return right;
+                } else if (isConstant(right, 0)) {
+                    return left;
+                }
+            }
+            case SUBTRACT -> {
+                if (isConstant(right, 0)) {
+                    return left;
+                } else if (left instanceof VariableNode a && right instanceof VariableNode b && a.slot == b.slot) {
+                    return new NumberNode(0);
+                }
+            }
+            case MULTIPLY -> {
+                if (isConstant(right, 1)) {
+                    return left;
+                } else if (isConstant(left, 1)) {
+                    return right;
+                } else if (isConstant(right, 0) && isSafe(left) || isConstant(left, 0) && isSafe(right)) {
+                    return new NumberNode(0);
+                }
+            }
+            case DIVIDE -> {
+                if (isConstant(right, 1)) {
+                    return left;
+                }
+            }
+            case REMAINDER -> {
+                if (isConstant(right, 1) && isSafe(left)) {
+                    return new NumberNode(0);
+                }
+            }
+            default -> {
+            }
+        }
+        binOp.left = binOp.adopt(left);
+        binOp.right = binOp.adopt(right);
+        return binOp;
+    }
+
+    // Optimizes the arguments of a call in place.
+    private void arguments(CallNode call) {
+        for (int i = 0; i < call.arguments.size(); i++) {
+            call.arguments.set(i, call.adopt(expression(call.arguments.get(i))));
+        }
+    }
+
+    // Returns whether a node is a number literal with a given value.
+    private static boolean isConstant(Node node, int value) {
+        return node instanceof NumberNode number && number.value == value;
+    }
+
+    // Returns whether evaluating an expression can never fail, so it may be dropped.
+    // Only a division or remainder by something other than a non-zero constant, or an array
+    // access, can fail, and a call may also print or run forever.
+    private static boolean isSafe(Node node) {
+        if (node instanceof ArrayAccessNode || node instanceof CallNode) {
+            return false;
+        }
+        if (node instanceof BinaryOpNode binOp) {
+            boolean division = binOp.operator == Operator.DIVIDE || binOp.operator == Operator.REMAINDER;
+            return isSafe(binOp.left) && isSafe(binOp.right)
+                    && !(division && !(binOp.right instanceof NumberNode number && number.value != 0));
+        }
+        return true;
+    }
+
+    // Replaces the contents of a statement list in place; the lists of loops and ifs are final.
+    private static void replaceAll(List<Node> target, List<Node> statements) {
+        target.clear();
+        target.addAll(statements);
+    }
+
+    // Counts the declarations and assignments of each slot in a statement.
+    private void countWrites(Node node) {
+        if (node instanceof VarDeclarationNode varDec) {
+            writes.merge(varDec.slot, 1, Integer::sum);
+        } else if (node instanceof AssignmentNode assign) {
+            writes.merge(assign.slot, 1, Integer::sum);
+        } else if (node instanceof WhileNode whileNode) {
+            whileNode.body.forEach(this::countWrites);
+        } else if (node instanceof IfNode ifNode) {
+            ifNode.thenBranch.forEach(this::countWrites);
+            ifNode.elseBranch.forEach(this::countWrites);
+        }
+    }
+
+    // Returns the number of nodes in a tree.
+    static int count(Node node) {
+        if (node instanceof VarDeclarationNode varDec) {
+            return 1 + count(varDec.initializer);
+        } else if (node instanceof AssignmentNode assign) {
+            return 1 + count(assign.value);
+        } else if (node instanceof PrintNode printNode) {
+            return 1 + count(printNode.expression);
+        } else if (node instanceof ArrayDeclarationNode arrayDec) {
+            return 1 + count(arrayDec.length);
+        } else if (node instanceof ArrayAssignmentNode arrayAssign) {
+            return 1 + count(arrayAssign.index) + count(arrayAssign.value);
+        } else if (node instanceof ArrayAccessNode arrayAccess) {
+            return 1 + count(arrayAccess.index);
+        } else if (node instanceof FunctionNode function) {
+            return 1 + count(function.body);
+        } else if (node instanceof CallNode call) {
+            return 1 + count(call.arguments);
+        } else if (node instanceof ReturnNode returnNode) {
+            return 1 + count(returnNode.value);
+        } else if (node instanceof WhileNode whileNode) {
+            return 1 + count(whileNode.condition) + count(whileNode.body);
+        } else if (node instanceof IfNode ifNode) {
+            return 1 + count(ifNode.condition) + count(ifNode.thenBranch) + count(ifNode.elseBranch);
+        } else if (node instanceof BinaryOpNode binOp) {
+            return 1 + count(binOp.left) + count(binOp.right);
+        }
+        return 1;
+    }
+
+    // Returns the number of nodes in a block.
+    static int count(List<Node> statements) {
+        int total = 0;
+        for (Node statement : statements) {
+            total += count(statement);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,36 @@
+// The destination of the values printed by a program. Every execution engine prints through an
+// OutputSink, so they all format output identically: 0 prints as "false", 1 as "true" and any
+// other value as a decimal number, each on a line of its own.
+interface OutputSink {
+    // Prints a value as one line.
+    // @param value The value to print.
+    void print(int value);
+
+    // Prints a value of any width as one line: an Integer like an int, a Long or BigInteger as a
+    // decimal number. The tree-walking Interpreter prints values past the int range this way.
+    // @param value The value to print: an Integer, Long or BigInteger.
+    void print(Number value);
+
+    // Writes out any output still buffered. Engines flush after each top-level statement.
+    default void flush() {
+    }
+
+    // Returns the text a value prints as, without the line break.
+    // @param value The value.
+    // @return "false" for 0, "true" for 1, otherwise the decimal number.
+    static String format(int value) {
+        if (value == 0) {
+            return "false";
+        } else if (value == 1) {
+            return "true";
+        }
+        return Integer.toString(value);
+    }
+
+    // Returns the text a value of any width prints as, without the line break.
+    // @param value An Integer, Long or BigInteger.
+    // @return The text, formatted like an int for an Integer.
+    static String format(Number value) {
+        return value instanceof Integer i ? format(i.intValue()) : value.toString();
+    }
+}
@@ -0,0 +1,191 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+// Parses a large program on several threads. A quick scan of the source, which only follows
+// brackets and comments, splits the program into sections at top-level statements: a 'var', 'if',
+// 'while', 'func' or 'pure' outside any brackets, unless the token before it continues a
+// statement ('else if', 'pure func', 'return', or the ':' of a loop label). Each section is parsed
+// by a Parser of its own in a ForkJoinPool, with tokens at their lines and columns in the whole
+// program, and the statements are handed over in source order as the sections finish.
+// A section that fails to parse may have been split wrongly, and a section parsed on its own can
+// report a different error than the whole program would, so the program is parsed again from the
+// start of the first failing section on the calling thread. Errors are therefore those of a
+// single Parser, and the first one in source order.
+class ParallelParser {
+    // Programs are split into sections of at least this many characters; smaller programs are
+    // parsed on the calling thread.
+    static final int MIN_SECTION_LENGTH = 1 << 18;
+    // The number of sections per thread of the pool, so that threads finishing early take more.
+    private static final int SECTIONS_PER_THREAD = 4;
+
+    // A part of the program from start (inclusive) to end (exclusive), starting at a statement on
+    // a line that starts at lineStart.
+    private record Section(int start, int end, int line, int lineStart) {
+    }
+
+    private ParallelParser() {
+    }
+
+    // Parses a program in the common ForkJoinPool.
+    // @param source The program.
+    // @param statements Receives each top-level statement, in source order, on the calling thread.
+    // @throws RuntimeException for the first syntax error, or if the consumer throws.
+    static void parse(CharSequence source, Consumer<Node> statements) {
+        parse(source, ForkJoinPool.commonPool(), statements);
+    }
+
+    // Parses a program in a ForkJoinPool.
+    // @param source The program.
+    // @param pool The pool to parse the sections in.
+    // @param statements Receives each top-level statement, in source order, on the calling thread.
+    // @throws RuntimeException for the first syntax error, or if the consumer throws.
+    static void parse(CharSequence source, ForkJoinPool pool, Consumer<Node> statements) {
+        // With a single thread, splitting would only add the scan.
+        int count = pool.getParallelism() < 2 ? 1
+                : Math.min(pool.getParallelism() * SECTIONS_PER_THREAD, source.length() / MIN_SECTION_LENGTH);
+        List<Section> sections = split(source, Math.max(1, count));
+        if (sections.size() == 1) {
+            parseFrom(source, sections.get(0), statements);
+            return;
+        }
+        List<ForkJoinTask<List<Node>>> tasks = new ArrayList<>(sections.size());
+        for (Section section : sections) {
+            tasks.add(pool.submit(() -> parseSection(source, section)));
+        }
+        try {
+            for (int i = 0; i < tasks.size(); i++) {
+                List<Node> parsed;
+                try {
+                    parsed = tasks.get(i).join();
+                } catch (RuntimeException | StackOverflowError e) {
+                    // Find the error as a single Parser would; the worker threads also have
+                    // smaller stacks than the caller may have.
+                    parseFrom(source, sections.get(i), statements);
+                    return;
+                }
+                parsed.forEach(statements);
+            }
+        } finally {
+            for (ForkJoinTask<List<Node>> task : tasks) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    // Parses one section on its own.
+    // @return The statements of the section.
+    private static List<Node> parseSection(CharSequence source, Section section) {
+        Parser parser = new Parser(new Lexer(new CharSequenceInput(source, section.end()), section.start(),
+                section.line(), section.lineStart()));
+        List<Node> statements = new ArrayList<>();
+        while (!parser.isAtEnd()) {
+            statements.add(parser.parseStatement());
+        }
+        return statements;
+    }
+
+    // Parses the program from the start of a section to its end, handing over each statement as
+    // soon as it has been parsed.
+    private static void parseFrom(CharSequence source, Section section, Consumer<Node> statements) {
+        Parser parser = new Parser(new Lexer(new CharSequenceInput(source), section.start(), section.line(),
+                section.lineStart()));
+        while (!parser.isAtEnd()) {
+            statements.accept(parser.parseStatement());
+        }
+    }
+
+    // Splits a program into sections that start at top-level statements, scanning it once.
+    // Characters are grouped into words as the Lexer groups them into identifiers; characters
+    // the Lexer rejects are skipped, since the parse reports them.
+    // @param source The program.
+    // @param count The number of sections wanted; there are fewer if statements are too far apart.
+    // @return The sections, in source order, covering the whole program.
+    private static List<Section> split(CharSequence source, int count) {
+        int length = source.length();
+        int target = length / count;
+        List<Section> sections = new ArrayList<>(count);
+        int sectionStart = 0;
+        int sectionLine = 1;
+        int sectionLineStart = 0;
+        int line = 1;
+        int lineStart = 0;
+        // The nesting of brackets of any kind, and the offset from which the next section may start.
+        int depth = 0;
+        int next = target;
+        // Whether the last token continues a statement into the next one.
+        boolean continues = false;
+        int i = 0;
+        while (i < length && count > 1) {
+            char c = source.charAt(i);
+            if (c == '\n') {
+                line++;
+                lineStart = ++i;
+            } else if (c == '/' && i + 1 < length && source.charAt(i + 1) == '/') {
+                // A comment, up to the end of the line.
+                while (i < length && source.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if (isLetter(c)) {
+                int end = i + 1;
+                while (end < length && isLetterOrDigit(source.charAt(end))) {
+                    end++;
+                }
+                if (depth == 0 && i >= next && !continues && startsStatement(source, i, end)) {
+                    sections.add(new Section(sectionStart, i, sectionLine, sectionLineStart));
+                    sectionStart = i;
+                    sectionLine = line;
+                    sectionLineStart = lineStart;
+                    next = i + target;
+                }
+                continues = isWord(source, i, end, "else") || isWord(source, i, end, "pure")
+                        || isWord(source, i, end, "return");
+                i = end;
+            } else {
+                if (c == '{' || c == '(' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ')' || c == ']') {
+                    depth--;
+                }
+                if (!Character.isWhitespace(c)) {
+                    continues = c == ':';
+                }
+                i++;
+            }
+        }
+        sections.add(new Section(sectionStart, length, sectionLine, sectionLineStart));
+        return sections;
+    }
+
+    // Returns whether a character starts an identifier, as in the Lexer.
+    private static boolean isLetter(char c) {
+        return c < 128 ? (char) ((c | 0x20) - 'a') < 26 : Character.isLetter(c);
+    }
+
+    // Returns whether a character continues an identifier, as in the Lexer.
+    private static boolean isLetterOrDigit(char c) {
+        return c < 128 ? (char) ((c | 0x20) - 'a') < 26 || (char) (c - '0') < 10 : Character.isLetterOrDigit(c);
+    }
+
+    // Returns whether a word is a keyword that starts a top-level statement.
+    private static boolean startsStatement(CharSequence source, int start, int end) {
+        return isWord(source, start, end, "var") || isWord(source, start, end, "if")
+                || isWord(source, start, end, "while") || isWord(source, start, end, "func")
+                || isWord(source, start, end, "pure");
+    }
+
+    // Returns whether the characters from start to end of a source are a given word.
+    private static boolean isWord(CharSequence source, int start, int end, String word) {
+        if (end - start != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (source.charAt(start + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
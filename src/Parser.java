@@ -2,32 +2,118 @@ import java.util.ArrayList;
 import java.util.List;
 
 class Parser {
-    private final List<Token> tokens; // List of tokens produced by the lexer
-    private int pos = 0; // Current position in the list of tokens
+    private final Lexer lexer; // The lexer the tokens are pulled from
+
+    // Lookahead buffer holding the current token and, once peeked, the next one.
+    // For each token: its type, its text (null for numbers), its value (numbers only), its start offset,
+    // and its line and column.
+    private final TokenType[] types = new TokenType[2];
+    private final String[] texts = new String[2];
+    private final int[] values = new int[2];
+    private final long[] starts = new long[2];
+    private final int[] lines = new int[2];
+    private final int[] columns = new int[2];
+    private int current = 0; // Index of the current token in the buffer
+    private boolean hasNext = false; // Whether the buffer also holds the next token
 
     /**
      * Constructor for the Parser.
-     * @param tokens The list of tokens to parse.
+     * @param lexer The lexer to pull tokens from.
+     */
+    public Parser(Lexer lexer) {
+        this.lexer = lexer;
+        fill(current);
+    }
+
+    /**
+     * Scans the next token from the lexer into a slot of the lookahead buffer.
+     * @param slot The buffer slot to fill.
      */
-    public Parser(List<Token> tokens) {
-        this.tokens = tokens;
+    private void fill(int slot) {
+        TokenType type = lexer.nextToken();
+        types[slot] = type;
+        starts[slot] = lexer.tokenStart();
+        lines[slot] = lexer.tokenLine();
+        columns[slot] = lexer.tokenColumn();
+        if (type == TokenType.NUMBER) {
+            texts[slot] = null;
+            values[slot] = lexer.tokenIntValue();
+        } else {
+            texts[slot] = lexer.tokenText();
+        }
     }
 
     /**
-     * Returns the current token being processed. If the end of tokens is reached, returns an EOF token.
+     * Returns whether all tokens have been consumed.
+     * @return True if the current token is the end of the input.
+     */
+    public boolean isAtEnd() {
+        return types[current] == TokenType.EOF;
+    }
+
+    /**
+     * Returns the current token being processed. Tokens are not stored as objects while parsing,
+     * so this creates one; prefer isAtEnd() in loops.
      * @return The current token.
      */
     public Token currentToken() {
-        return pos < tokens.size() ? tokens.get(pos) : new Token(TokenType.EOF, "");
+        return new Token(types[current], text(), lines[current], columns[current]);
+    }
+
+    /**
+     * Records the source line a node starts on.
+     * @param node The node.
+     * @param line The line of its first token.
+     * @return The node.
+     */
+    private static <T extends Node> T at(T node, int line) {
+        node.line = line;
+        return node;
     }
 
     /**
-     * Moves to the next token in the list.
+     * Returns the text of the current token.
+     * @return The text of the current token.
+     */
+    private String text() {
+        return texts[current] != null ? texts[current] : String.valueOf(values[current]);
+    }
+
+    /**
+     * Moves to the next token.
      */
     private void advance() {
-        if (pos < tokens.size()) {
-            pos++;
+        if (isAtEnd()) {
+            return;
+        }
+        current ^= 1;
+        if (hasNext) {
+            hasNext = false;
+        } else {
+            fill(current);
+        }
+    }
+
+    /**
+     * Returns whether the current token has the given type.
+     * @param type The token type to check for.
+     * @return True if the current token has that type.
+     */
+    private boolean check(TokenType type) {
+        return types[current] == type;
+    }
+
+    /**
+     * Skips the current token if it has the given type, and throws otherwise.
+     * @param type The expected token type.
+     * @param message The error message if the current token has another type.
+     * @throws RuntimeException if the current token does not have the expected type.
+     */
+    private void expect(TokenType type, String message) {
+        if (!check(type)) {
+            throw new RuntimeException(message);
         }
+        advance();
     }
 
     /**
@@ -36,147 +122,321 @@ class Parser {
      * @throws RuntimeException if an unexpected token is encountered.
      */
     private Node parseFactor() {
-        Token token = currentToken();
-        if (token.type == TokenType.NUMBER) {
-            advance();
-            return new NumberNode(Integer.parseInt(token.value)); // Create a node for a number literal
-        } else if (token.type == TokenType.IDENTIFIER) {
-            String variableName = token.value;
-            advance();
-            return new VariableNode(variableName); // Create a node for a variable identifier
-        } else if (token.value.equals("(")) {
-            advance(); // Skip '('
-            Node expression = parseExpression(); // Recursively parse the expression inside the parentheses
-            if (!currentToken().value.equals(")")) {
-                throw new RuntimeException("Expected ')'");
+        switch (types[current]) {
+            case NUMBER -> {
+                int value = values[current];
+                int line = lines[current];
+                advance();
+                return at(new NumberNode(value), line); // Create a node for a number literal
+            }
+            case IDENTIFIER -> {
+                String variableName = texts[current];
+                int line = lines[current];
+                advance();
+                if (check(TokenType.LBRACKET)) {
+                    return at(new ArrayAccessNode(variableName, parseIndex()), line); // Create a node for an array element
+                }
+                if (check(TokenType.LPAREN)) {
+                    return at(new CallNode(variableName, parseArguments()), line); // Create a node for a function call
+                }
+                return at(new VariableNode(variableName), line); // Create a node for a variable identifier
+            }
+            case LPAREN -> {
+                advance(); // Skip '('
+                Node expression = parseCondition(); // Recursively parse the expression (or comparison) inside the parentheses
+                expect(TokenType.RPAREN, "Expected ')'");
+                return expression; // Return the parsed expression within the parentheses
             }
-            advance(); // Skip ')'
-            return expression; // Return the parsed expression within the parentheses
+            default -> throw new RuntimeException("Unexpected token in factor: " + text());
         }
-        throw new RuntimeException("Unexpected token in factor: " + token.value);
     }
 
     /**
-     * Parses a term, which consists of factors combined with multiplication, division, or modulo operators.
-     * Follows the order of operations (multiplication, division, modulo have higher precedence).
-     * @return The AST node representing the term.
+     * Parses an array index or length in brackets, starting at the '['.
+     * @return The AST node representing the expression in the brackets.
      */
-    public Node parseTerm() {
-        Node node = parseFactor(); // Start with a factor
-        while (currentToken().value.equals("*") || currentToken().value.equals("/") || currentToken().value.equals("%")) {
-            String operator = currentToken().value;
+    private Node parseIndex() {
+        advance(); // Skip '['
+        Node index = parseExpression();
+        expect(TokenType.RBRACKET, "Expected ']'");
+        return index;
+    }
+
+    /**
+     * Parses the arguments of a call in parentheses, starting at the '('.
+     * @return The AST nodes representing the arguments.
+     */
+    private List<Node> parseArguments() {
+        advance(); // Skip '('
+        List<Node> arguments = new ArrayList<>();
+        if (!check(TokenType.RPAREN)) {
+            arguments.add(parseExpression());
+            while (check(TokenType.COMMA)) {
+                advance(); // Skip ','
+                arguments.add(parseExpression());
+            }
+        }
+        expect(TokenType.RPAREN, "Expected ')' after arguments");
+        return arguments;
+    }
+
+    /**
+     * Parses a function declaration, starting at the 'func' keyword.
+     * @param pure Whether the function was marked pure.
+     * @return The AST node representing the function.
+     */
+    private Node parseFunction(boolean pure) {
+        advance(); // Skip 'func' keyword
+        if (!check(TokenType.IDENTIFIER)) {
+            throw new RuntimeException("Expected function name after 'func'");
+        }
+        String name = texts[current];
+        advance(); // Skip the function name
+        expect(TokenType.LPAREN, "Expected '(' after function name");
+        List<String> parameters = new ArrayList<>();
+        if (!check(TokenType.RPAREN)) {
+            while (true) {
+                if (!check(TokenType.IDENTIFIER)) {
+                    throw new RuntimeException("Expected parameter name in function '" + name + "'");
+                }
+                parameters.add(texts[current]);
+                advance(); // Skip the parameter name
+                if (!check(TokenType.COMMA)) {
+                    break;
+                }
+                advance(); // Skip ','
+            }
+        }
+        expect(TokenType.RPAREN, "Expected ')' after parameters");
+        expect(TokenType.LBRACE, "Expected '{' before function body");
+        return new FunctionNode(name, parameters, parseBlock(), pure);
+    }
+
+    /**
+     * Parses a chain of binary operations by precedence climbing. Operators are looked up by token type
+     * in the Operator table; every operator with at least the given precedence is consumed, and its right
+     * operand is parsed one level tighter, so all operators are left-associative.
+     * @param minPrecedence The lowest operator precedence to consume.
+     * @return The AST node representing the operation chain.
+     */
+    private Node parseBinary(int minPrecedence) {
+        Node node = parseFactor();
+        Operator operator;
+        while ((operator = Operator.fromTokenType(types[current])) != null && operator.precedence >= minPrecedence) {
+            int line = lines[current];
             advance();
-            node = new BinaryOpNode(node, operator, parseFactor()); // Create a binary operation node
+            node = at(new BinaryOpNode(node, operator, parseBinary(operator.precedence + 1)), line); // Create a binary operation node
         }
         return node;
     }
 
+    /**
+     * Parses a term, which consists of factors combined with multiplication, division, or modulo operators.
+     * @return The AST node representing the term.
+     */
+    public Node parseTerm() {
+        return parseBinary(Operator.MULTIPLY.precedence);
+    }
+
     /**
      * Parses a condition, which involves expressions compared using relational operators (e.g., <, >, <=, >=, ==, !=).
      * @return The AST node representing the condition.
      */
     private Node parseCondition() {
-        Node node = parseExpression(); // Conditions can start with a general expression
-        while (currentToken().value.equals("<=") || currentToken().value.equals(">=") ||
-                currentToken().value.equals("<") || currentToken().value.equals(">") ||
-                currentToken().value.equals("==") || currentToken().value.equals("!=")) {
-            String operator = currentToken().value;
-            advance();
-            node = new BinaryOpNode(node, operator, parseExpression()); // The right side of the comparison is also an expression
-        }
-        return node;
+        return parseBinary(Operator.COMPARISON_PRECEDENCE);
     }
 
     /**
      * Parses an expression, which consists of terms combined with addition or subtraction operators.
-     * Follows the order of operations (addition and subtraction have lower precedence than multiplication, etc.).
+     * Comparisons are only allowed in conditions and print statements, so they end an expression.
      * @return The AST node representing the expression.
      */
     private Node parseExpression() {
-        Node node = parseTerm(); // Start with a term
-        while (currentToken().value.equals("+") || currentToken().value.equals("-")) {
-            String operator = currentToken().value;
-            advance();
-            node = new BinaryOpNode(node, operator, parseTerm()); // Create a binary operation node
-        }
-        return node;
+        return parseBinary(Operator.ADDITIVE_PRECEDENCE);
     }
 
     /**
-     * Parses a statement, which can be a variable declaration, a while loop, an if statement, a print statement, an assignment, or a break statement.
+     * Parses a statement, which can be a variable or array declaration, a function declaration, a while loop, an if statement, a print statement, an assignment to a variable or an array element, a call, a return, or a break or continue statement.
+     * A statement may be terminated by a semicolon.
      * This is the main entry point for parsing individual commands in the code.
      * @return The AST node representing the statement.
      * @throws RuntimeException if an unexpected token or syntax is encountered.
      */
     public Node parseStatement() {
-        // Handle variable declarations (e.g., var x = 10;)
-        if (currentToken().type == TokenType.KEYWORD && currentToken().value.equals("var")) {
-            advance(); // Skip 'var' keyword
-            if (currentToken().type != TokenType.IDENTIFIER) {
-                throw new RuntimeException("Expected identifier after 'var'");
-            }
-            String variableName = currentToken().value;
-            advance(); // Skip the identifier (variable name)
-            if (!currentToken().value.equals("=")) {
-                throw new RuntimeException("Expected '=' after variable name");
+        int line = lines[current];
+        Node statement = at(parseUnterminatedStatement(), line);
+        if (check(TokenType.SEMICOLON)) {
+            advance(); // Skip the optional ';'
+        }
+        return statement;
+    }
+
+    /**
+     * Parses a while loop, starting at the 'while' keyword.
+     * @param label The label of the loop, or null.
+     * @return The AST node representing the loop.
+     */
+    private WhileNode parseWhile(String label) {
+        advance(); // Skip 'while' keyword
+        Node condition = parseCondition(); // Parse the condition of the while loop
+        expect(TokenType.LBRACE, "Expected '{' after while condition");
+        List<Node> body = parseBlock(); // Parse the block of statements inside the while loop
+        return new WhileNode(label, condition, body);
+    }
+
+    /**
+     * Parses the optional loop label after 'break' or 'continue'. A statement that starts with an
+     * identifier is a print, a call, an assignment or a labeled loop, so an identifier followed by anything
+     * other than '(', '=', '[' or ':' can only be the label.
+     * @return The label, or null if the statement targets the innermost loop.
+     */
+    private String parseLoopLabel() {
+        if (!check(TokenType.IDENTIFIER) || texts[current].equals("print")) {
+            return null;
+        }
+        TokenType next = peekType();
+        if (next == TokenType.LPAREN || next == TokenType.EQ || next == TokenType.COLON
+                || next == TokenType.LBRACKET) {
+            return null;
+        }
+        String label = texts[current];
+        advance(); // Skip the label
+        return label;
+    }
+
+    /**
+     * Parses a statement without its optional terminating semicolon.
+     * @return The AST node representing the statement.
+     * @throws RuntimeException if an unexpected token or syntax is encountered.
+     */
+    private Node parseUnterminatedStatement() {
+        String text = texts[current];
+        switch (types[current]) {
+            case KEYWORD -> {
+                switch (text) {
+                    // Handle variable declarations (e.g., var x = 10;)
+                    case "var" -> {
+                        advance(); // Skip 'var' keyword
+                        if (!check(TokenType.IDENTIFIER)) {
+                            throw new RuntimeException("Expected identifier after 'var'");
+                        }
+                        String variableName = texts[current];
+                        advance(); // Skip the identifier (variable name)
+                        // An array declaration gives the length in brackets (e.g., var a[10];).
+                        if (check(TokenType.LBRACKET)) {
+                            return new ArrayDeclarationNode(variableName, parseIndex());
+                        }
+                        // A declaration without an initializer (e.g., var x;) starts the variable at 0.
+                        if (!check(TokenType.EQ)) {
+                            return new VarDeclarationNode(variableName, at(new NumberNode(0), lines[current]));
+                        }
+                        advance(); // Skip the '=' sign
+                        Node initializer = parseExpression(); // Parse the expression assigned to the variable
+                        return new VarDeclarationNode(variableName, initializer);
+                    }
+                    // Handle function declarations (e.g., func add(a, b) { return a + b; })
+                    case "func" -> {
+                        return parseFunction(false);
+                    }
+                    // Handle pure function declarations (e.g., pure func fib(n) { ... })
+                    case "pure" -> {
+                        advance(); // Skip 'pure' keyword
+                        if (!check(TokenType.KEYWORD) || !texts[current].equals("func")) {
+                            throw new RuntimeException("Expected 'func' after 'pure'");
+                        }
+                        return parseFunction(true);
+                    }
+                    // Handle return statements (e.g., return x + 1;). Without a value, as in 'return;'
+                    // or a 'return' just before '}', the function returns 0.
+                    case "return" -> {
+                        advance(); // Skip 'return' keyword
+                        if (check(TokenType.SEMICOLON) || check(TokenType.RBRACE) || check(TokenType.EOF)) {
+                            return new ReturnNode(at(new NumberNode(0), lines[current]));
+                        }
+                        return new ReturnNode(parseExpression());
+                    }
+                    // Handle while statements (e.g., while (x > 0) { ... })
+                    case "while" -> {
+                        return parseWhile(null);
+                    }
+                    // Handle if statements (e.g., if (x > 0) { ... } else { ... })
+                    case "if" -> {
+                        advance(); // Skip 'if' keyword
+                        Node condition = parseCondition(); // Parse the condition of the if statement
+                        expect(TokenType.LBRACE, "Expected '{' after if condition");
+                        List<Node> thenBranch = parseBlock(); // Parse the block of statements in the 'then' branch
+                        List<Node> elseBranch = new ArrayList<>();
+                        if (check(TokenType.KEYWORD) && texts[current].equals("else")) {
+                            advance(); // Skip 'else' keyword
+                            if (check(TokenType.KEYWORD) && texts[current].equals("if")) {
+                                elseBranch.add(parseStatement()); // An 'else if' chain nests another if statement
+                            } else {
+                                expect(TokenType.LBRACE, "Expected '{' after else");
+                                elseBranch = parseBlock(); // Parse the block of statements in the 'else' branch
+                            }
+                        }
+                        return new IfNode(condition, thenBranch, elseBranch);
+                    }
+                    default -> {
+                    }
+                }
             }
-            advance(); // Skip the '=' sign
-            Node initializer = parseExpression(); // Parse the expression assigned to the variable
-            return new VarDeclarationNode(variableName, initializer);
-        }
-        // Handle while statements (e.g., while (x > 0) { ... })
-        else if (currentToken().type == TokenType.KEYWORD && currentToken().value.equals("while")) {
-            advance(); // Skip 'while' keyword
-            Node condition = parseCondition(); // Parse the condition of the while loop
-            if (!currentToken().value.equals("{")) {
-                throw new RuntimeException("Expected '{' after while condition");
+            case IDENTIFIER -> {
+                // Handle print statements (e.g., print(x);)
+                if (text.equals("print")) {
+                    advance(); // Skip 'print' keyword
+                    expect(TokenType.LPAREN, "Expected '(' after 'print'");
+                    Node expression = parseCondition(); // Parse the expression to be printed
+                    expect(TokenType.RPAREN, "Expected ')' after print argument");
+                    return new PrintNode(expression);
+                }
+                // Handle assignments (e.g., x = 10;)
+                if (peekType() == TokenType.EQ) {
+                    advance(); // Skip the identifier (variable name)
+                    advance(); // Skip the '=' sign
+                    Node expression = parseExpression(); // Parse the expression being assigned
+                    return new AssignmentNode(text, expression);
+                }
+                // Handle assignments to array elements (e.g., a[i] = 10;)
+                if (peekType() == TokenType.LBRACKET) {
+                    advance(); // Skip the identifier (array name)
+                    Node index = parseIndex();
+                    expect(TokenType.EQ, "Expected '=' after array element");
+                    Node value = parseExpression(); // Parse the expression being assigned
+                    return new ArrayAssignmentNode(text, index, value);
+                }
+                // Handle calls whose result is not used (e.g., log(x);)
+                if (peekType() == TokenType.LPAREN) {
+                    advance(); // Skip the identifier (function name)
+                    return new CallNode(text, parseArguments());
+                }
+                // Handle labeled loops (e.g., outer: while i < n { ... })
+                if (peekType() == TokenType.COLON) {
+                    advance(); // Skip the label
+                    advance(); // Skip the ':'
+                    if (!check(TokenType.KEYWORD) || !texts[current].equals("while")) {
+                        throw new RuntimeException("Expected 'while' after label '" + text + "'");
+                    }
+                    return parseWhile(text);
+                }
             }
-            advance(); // Skip the '{'
-            List<Node> body = parseBlock(); // Parse the block of statements inside the while loop
-            return new WhileNode(condition, body);
-        }
-        // Handle if statements (e.g., if (x > 0) { ... })
-        else if (currentToken().type == TokenType.KEYWORD && currentToken().value.equals("if")) {
-            advance(); // Skip 'if' keyword
-            Node condition = parseCondition(); // Parse the condition of the if statement
-            if (!currentToken().value.equals("{")) {
-                throw new RuntimeException("Expected '{' after if condition");
+            // Handle break statements (e.g., break; or break outer;)
+            case BREAK -> {
+                advance(); // Skip 'break' keyword
+                return new BreakNode(parseLoopLabel());
             }
-            advance(); // Skip the '{'
-            List<Node> thenBranch = parseBlock(); // Parse the block of statements in the 'then' branch
-            return new IfNode(condition, thenBranch);
-        }
-        // Handle print statements (e.g., print(x);)
-        else if (currentToken().type == TokenType.IDENTIFIER && currentToken().value.equals("print")) {
-            advance(); // Skip 'print' keyword
-            if (!currentToken().value.equals("(")) {
-                throw new RuntimeException("Expected '(' after 'print'");
+            // Handle continue statements (e.g., continue; or continue outer;)
+            case CONTINUE -> {
+                advance(); // Skip 'continue' keyword
+                return new ContinueNode(parseLoopLabel());
             }
-            advance(); // Skip the '('
-            Node expression = parseCondition(); // Parse the expression to be printed
-            if (!currentToken().value.equals(")")) {
-                throw new RuntimeException("Expected ')' after print argument");
+            default -> {
             }
-            advance(); // Skip the ')'
-            return new PrintNode(expression);
-        }
-        // Handle assignments (e.g., x = 10;)
-        else if (currentToken().type == TokenType.IDENTIFIER && peek().value.equals("=")) {
-            String variableName = currentToken().value;
-            advance(); // Skip the identifier (variable name)
-            advance(); // Skip the '=' sign
-            Node expression = parseExpression(); // Parse the expression being assigned
-            return new AssignmentNode(variableName, expression);
-        }
-        // Handle break statements (e.g., break;)
-        else if (currentToken().type == TokenType.BREAK) {
-            advance(); // Skip 'break' keyword
-            return new BreakNode();
         }
 
         throw new RuntimeException(
-                "Unexpected statement at token: " + currentToken().value +
-                        " (type: " + currentToken().type + ") at position: " + pos
+                "Unexpected statement at token: " + text() +
+                        " (type: " + types[current] + ") at line " + lines[current] + ", column " + columns[current]
         );
     }
 
@@ -188,8 +448,8 @@ class Parser {
      */
     private List<Node> parseBlock() {
         List<Node> statements = new ArrayList<>();
-        while (!currentToken().value.equals("}")) {
-            if (currentToken().type == TokenType.EOF) {
+        while (!check(TokenType.RBRACE)) {
+            if (check(TokenType.EOF)) {
                 throw new RuntimeException("Unexpected end of input, missing '}'");
             }
             statements.add(parseStatement()); // Recursively parse each statement in the block
@@ -199,13 +459,17 @@ class Parser {
     }
 
     /**
-     * Peeks at the next token without advancing the current position.
-     * @return The next token, or an EOF token if at the end of the list.
+     * Peeks at the type of the next token without advancing the current position.
+     * @return The type of the next token, or EOF if at the end of the input.
      */
-    private Token peek() {
-        if (pos + 1 < tokens.size()) {
-            return tokens.get(pos + 1);
+    private TokenType peekType() {
+        if (isAtEnd()) {
+            return TokenType.EOF;
+        }
+        if (!hasNext) {
+            fill(current ^ 1);
+            hasNext = true;
         }
-        return new Token(TokenType.EOF, "");
+        return types[current ^ 1];
     }
 }
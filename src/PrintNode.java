@@ -2,10 +2,27 @@
 class PrintNode extends Node {
     // The AST node representing the expression to be printed.
     public Node expression;
+    // The sink to print to when the node executes itself, set by the NodeInterpreter.
+    OutputSink sink;
 
     // Constructor for creating a PrintNode.
     // @param expression The expression node to print.
     public PrintNode(Node expression) {
-        this.expression = expression;
+        this.expression = adopt(expression);
+    }
+
+    @Override
+    int execute(int[] frame) {
+        sink.print(expression.evaluate(frame));
+        return Completion.NORMAL;
+    }
+
+    @Override
+    void replaceChild(Node oldChild, Node newChild) {
+        if (expression == oldChild) {
+            expression = newChild;
+        } else {
+            super.replaceChild(oldChild, newChild);
+        }
     }
 }
\ No newline at end of file
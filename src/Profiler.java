@@ -0,0 +1,226 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Records, for every AST node an Interpreter executes, how often it ran and the time spent in it
+// (see Interpreter.profile). Statements, operations and fused nodes are timed; variables and
+// numbers are too cheap to time, so their time counts as part of the node using them.
+// The time spent in a node includes the nodes it executes (inclusive time); its self time is what
+// remains after subtracting those. Outside of functions every node always runs inside the same
+// enclosing node, so the nodes form the stacks reported for flame graphs; the nodes of a function
+// body are reported below the call that ran them first, though their times include every call.
+// Timing each node makes the profiled program several times slower, and the cost of the timer
+// counts towards the nodes it times, so compare the times with each other rather than with an
+// unprofiled run.
+class Profiler {
+    // The statistics of one executed node.
+    private static final class Entry {
+        final Node node;
+        // The entry of the node that was executing when this one first ran, or null for a top-level statement.
+        final Entry caller;
+        long count;
+        long inclusiveNanos;
+        // The inclusive time of the nodes this node executed.
+        long childNanos;
+        // For a condition, how often it was met; for a loop condition, the iterations of the loop.
+        long metCount;
+
+        Entry(Node node, Entry caller) {
+            this.node = node;
+            this.caller = caller;
+        }
+
+        long selfNanos() {
+            return inclusiveNanos - childNanos;
+        }
+    }
+
+    // The statistics of the executed nodes.
+    private final Map<Node, Entry> entries = new IdentityHashMap<>();
+    // The nodes executing, innermost last, and the System.nanoTime each started at.
+    private Entry[] stack = new Entry[64];
+    private long[] starts = new long[64];
+    private int depth = 0;
+
+    // Records that a node starts executing.
+    // @param node The node.
+    void enter(Node node) {
+        Entry caller = depth > 0 ? stack[depth - 1] : null;
+        Entry entry = entries.get(node);
+        if (entry == null) {
+            entry = new Entry(node, caller);
+            entries.put(node, entry);
+        }
+        entry.count++;
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+            starts = Arrays.copyOf(starts, depth * 2);
+        }
+        stack[depth] = entry;
+        starts[depth++] = System.nanoTime();
+    }
+
+    // Records that the condition executing now was met.
+    void conditionMet() {
+        stack[depth - 1].metCount++;
+    }
+
+    // Records that the node entered last has finished, normally or not.
+    void exit() {
+        Entry entry = stack[--depth];
+        long elapsed = System.nanoTime() - starts[depth];
+        entry.inclusiveNanos += elapsed;
+        if (depth > 0) {
+            stack[depth - 1].childNanos += elapsed;
+        }
+    }
+
+    // Prints the lines the most time was spent on, and the loops that took the most time.
+    // @param out The stream to print to.
+    // @param source The source of the program, for showing the lines; or null.
+    // @param top The number of lines and loops to print.
+    void report(PrintStream out, CharSequence source, int top) {
+        // Self time and executed nodes by line.
+        Map<Integer, long[]> lines = new HashMap<>();
+        long total = 0;
+        for (Entry entry : entries.values()) {
+            long[] line = lines.computeIfAbsent(entry.node.line, key -> new long[2]);
+            line[0] += entry.selfNanos();
+            line[1] += entry.count;
+            total += entry.selfNanos();
+        }
+        List<Map.Entry<Integer, long[]>> hottest = new ArrayList<>(lines.entrySet());
+        hottest.sort(Comparator.comparingLong((Map.Entry<Integer, long[]> line) -> line.getValue()[0]).reversed());
+        hottest = hottest.subList(0, Math.min(top, hottest.size()));
+        Map<Integer, String> texts = lineTexts(source, hottest.stream().map(Map.Entry::getKey).toList());
+        out.printf("Hottest lines (%.3f ms profiled):%n", total / 1e6);
+        out.printf("%8s %12s %7s %14s  %s%n", "line", "self ms", "self %", "nodes run", "source");
+        for (Map.Entry<Integer, long[]> line : hottest) {
+            long[] value = line.getValue();
+            out.printf("%8s %12.3f %6.1f%% %14d  %s%n", line.getKey() == 0 ? "-" : line.getKey(), value[0] / 1e6,
+                    100.0 * value[0] / Math.max(1, total), value[1], texts.getOrDefault(line.getKey(), ""));
+        }
+
+        List<Entry> loops = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.node instanceof WhileNode) {
+                loops.add(entry);
+            }
+        }
+        loops.sort(Comparator.comparingLong((Entry loop) -> loop.inclusiveNanos).reversed());
+        out.println("Loops:");
+        out.printf("%8s %12s %10s %14s%n", "line", "total ms", "runs", "iterations");
+        for (Entry loop : loops.subList(0, Math.min(top, loops.size()))) {
+            // Each time its condition is met the loop runs an iteration.
+            Entry condition = entries.get(((WhileNode) loop.node).condition);
+            out.printf("%8d %12.3f %10d %14d%n", loop.node.line, loop.inclusiveNanos / 1e6, loop.count,
+                    condition != null ? condition.metCount : 0);
+        }
+    }
+
+    // Writes the self time of every executed node in the collapsed stack format read by flame
+    // graph tools: the labels of the enclosing nodes, outermost first, separated by ';', then a
+    // space and the self time in microseconds.
+    // @param out The writer to write to.
+    // @param root A frame to put below every stack, such as the script name; or null.
+    // @throws IOException if writing fails.
+    void writeCollapsedStacks(Writer out, String root) throws IOException {
+        List<String> stacks = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            long micros = entry.selfNanos() / 1000;
+            if (micros > 0) {
+                stacks.add((root != null ? root + ";" : "") + stack(entry) + " " + micros);
+            }
+        }
+        stacks.sort(null);
+        for (String stack : stacks) {
+            out.write(stack);
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    // Returns the labels of a node and the nodes enclosing it, outermost first.
+    private static String stack(Entry entry) {
+        List<String> labels = new ArrayList<>();
+        for (Entry frame = entry; frame != null; frame = frame.caller) {
+            labels.add(label(frame.node));
+        }
+        StringBuilder stack = new StringBuilder();
+        for (int i = labels.size() - 1; i >= 0; i--) {
+            stack.append(labels.get(i)).append(i > 0 ? ";" : "");
+        }
+        return stack.toString();
+    }
+
+    // Returns the label of a node in a stack, e.g. "while (line 4)".
+    private static String label(Node node) {
+        String kind;
+        if (node instanceof WhileNode) {
+            kind = "while";
+        } else if (node instanceof IfNode) {
+            kind = "if";
+        } else if (node instanceof VarDeclarationNode varDec) {
+            kind = "var " + varDec.variableName;
+        } else if (node instanceof AssignmentNode assign) {
+            kind = assign.variable + " =";
+        } else if (node instanceof PrintNode) {
+            kind = "print";
+        } else if (node instanceof BinaryOpNode binOp) {
+            kind = binOp.operator.symbol;
+        } else if (node instanceof FusedNodes.FusedNode) {
+            kind = "fused";
+        } else if (node instanceof BreakNode) {
+            kind = "break";
+        } else if (node instanceof ContinueNode) {
+            kind = "continue";
+        } else if (node instanceof ArrayDeclarationNode arrayDec) {
+            kind = "var " + arrayDec.name + "[]";
+        } else if (node instanceof ArrayAssignmentNode arrayAssign) {
+            kind = arrayAssign.name + "[] =";
+        } else if (node instanceof ArrayAccessNode arrayAccess) {
+            kind = arrayAccess.name + "[]";
+        } else if (node instanceof BoundsCheckNode) {
+            kind = "bounds check";
+        } else if (node instanceof FunctionNode function) {
+            kind = "func " + function.name;
+        } else if (node instanceof CallNode call) {
+            kind = call.name + "()";
+        } else if (node instanceof ReturnNode) {
+            kind = "return";
+        } else {
+            kind = node.getClass().getSimpleName();
+        }
+        return node.line == 0 ? kind : kind + " (line " + node.line + ")";
+    }
+
+    // Returns the text of some lines of a source, trimmed, in one pass over it.
+    // @param source The source, or null.
+    // @param wanted The line numbers, starting at 1.
+    // @return The text of each wanted line found in the source.
+    private static Map<Integer, String> lineTexts(CharSequence source, List<Integer> wanted) {
+        Map<Integer, String> texts = new HashMap<>();
+        if (source == null) {
+            return texts;
+        }
+        int line = 1;
+        int lineStart = 0;
+        for (int i = 0; i <= source.length() && texts.size() < wanted.size(); i++) {
+            if (i == source.length() || source.charAt(i) == '\n') {
+                if (wanted.contains(line)) {
+                    texts.put(line, source.subSequence(lineStart, i).toString().strip());
+                }
+                line++;
+                lineStart = i + 1;
+            }
+        }
+        return texts;
+    }
+}
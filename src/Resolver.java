@@ -0,0 +1,260 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// The Resolver runs between the Parser and the Interpreter. It assigns every variable a fixed
+// slot index so the Interpreter can keep values in a primitive int[] frame instead of a map.
+// It also binds every 'break' and 'continue' to its target loop, and every call to its function.
+// Arrays get slots in the same numbering; the Interpreter keeps them in a separate IntArray[].
+// A function body has its own numbering, for the frame of each call, starting with the parameters.
+// Declarations are checked in source order, not in the order they run: a variable can be used
+// anywhere after its declaration, even one in a branch that does not run, and until a declaration
+// of it has run it reads 0. (An array whose declaration has not run is still an error, when it is
+// accessed.)
+class Resolver {
+    // Maps each declared variable name to its slot index in the frame (of the function being
+    // resolved, inside a function body).
+    private Map<String, Integer> slots = new HashMap<>();
+    // The names declared as arrays rather than int variables.
+    private Set<String> arrays = new HashSet<>();
+    // The labels of the loops enclosing the node being resolved, innermost last (null if unlabeled).
+    private List<String> loops = new ArrayList<>();
+    // The functions declared so far, by name.
+    private final Map<String, FunctionNode> functions = new HashMap<>();
+    // The function whose body is being resolved, or null at the top level.
+    private FunctionNode function;
+
+    // Resolves all variable references in a statement and stores the slot index on each node.
+    // Statements can be resolved one at a time; slots persist across calls.
+    // @param node The AST node to resolve.
+    // @throws RuntimeException if a variable is used before it has been declared, or as an array
+    //         when it is not one (or the other way round), or a 'break' or 'continue' has no
+    //         enclosing loop with its label, or a function is declared or called incorrectly.
+    public void resolve(Node node) {
+        // Handle variable declarations.
+        if (node instanceof VarDeclarationNode varDec) {
+            // Resolve the initializer first, so 'var x = x' still refers to an earlier declaration.
+            resolve(varDec.initializer);
+            // Re-declaring a variable reuses its existing slot.
+            varDec.slot = declare(varDec.variableName, false);
+        }
+        // Handle array declarations.
+        else if (node instanceof ArrayDeclarationNode arrayDec) {
+            resolve(arrayDec.length);
+            arrayDec.slot = declare(arrayDec.name, true);
+        }
+        // Handle assignment operations.
+        else if (node instanceof AssignmentNode assign) {
+            resolve(assign.value);
+            assign.slot = lookup(assign.variable);
+        }
+        // Handle array element assignments.
+        else if (node instanceof ArrayAssignmentNode arrayAssign) {
+            resolve(arrayAssign.index);
+            resolve(arrayAssign.value);
+            arrayAssign.slot = lookupArray(arrayAssign.name);
+        }
+        // Handle print statements.
+        else if (node instanceof PrintNode printNode) {
+            if (function != null && function.pure) {
+                throw new RuntimeException("Pure function cannot print: " + function.name);
+            }
+            resolve(printNode.expression);
+        }
+        // Handle function declarations.
+        else if (node instanceof FunctionNode functionNode) {
+            resolveFunction(functionNode);
+        }
+        // Handle calls.
+        else if (node instanceof CallNode call) {
+            call.function = functions.get(call.name);
+            if (call.function == null) {
+                throw new RuntimeException("Function not declared: " + call.name);
+            }
+            if (call.arguments.size() != call.function.parameters.size()) {
+                throw new RuntimeException("Function " + call.name + " expects " + call.function.parameters.size()
+                        + " arguments, got " + call.arguments.size());
+            }
+            if (function != null && function.pure && !call.function.pure) {
+                throw new RuntimeException("Pure function " + function.name + " cannot call " + call.name
+                        + ", which is not pure");
+            }
+            resolveAll(call.arguments);
+        }
+        // Handle return statements.
+        else if (node instanceof ReturnNode returnNode) {
+            if (function == null) {
+                throw new RuntimeException("'return' outside of a function");
+            }
+            resolve(returnNode.value);
+        }
+        // Handle while loops.
+        else if (node instanceof WhileNode whileNode) {
+            resolve(whileNode.condition);
+            loops.add(whileNode.label);
+            try {
+                resolveAll(whileNode.body);
+            } finally {
+                loops.remove(loops.size() - 1);
+            }
+        }
+        // Handle if statements.
+        else if (node instanceof IfNode ifNode) {
+            resolve(ifNode.condition);
+            resolveAll(ifNode.thenBranch);
+            resolveAll(ifNode.elseBranch);
+        }
+        // Handle variable references.
+        else if (node instanceof VariableNode variableNode) {
+            variableNode.slot = lookup(variableNode.name);
+        }
+        // Handle array element reads.
+        else if (node instanceof ArrayAccessNode arrayAccess) {
+            resolve(arrayAccess.index);
+            arrayAccess.slot = lookupArray(arrayAccess.name);
+        }
+        // Handle binary operations.
+        else if (node instanceof BinaryOpNode binOp) {
+            resolve(binOp.left);
+            resolve(binOp.right);
+        }
+        // Handle break and continue statements.
+        else if (node instanceof BreakNode breakNode) {
+            breakNode.depth = loopDepth("break", breakNode.label);
+        } else if (node instanceof ContinueNode continueNode) {
+            continueNode.depth = loopDepth("continue", continueNode.label);
+        }
+        // Number literals have nothing to resolve.
+    }
+
+    // Resolves a function declaration. The body is resolved with slots of its own, and without the
+    // enclosing loops, so it cannot refer to the variables or loops around it. The function is
+    // declared before its body is resolved, so it can call itself.
+    private void resolveFunction(FunctionNode functionNode) {
+        if (functionNode.parent != null) {
+            throw new RuntimeException("Functions can only be declared at the top level: " + functionNode.name);
+        }
+        if (functions.containsKey(functionNode.name)) {
+            throw new RuntimeException("Function already declared: " + functionNode.name);
+        }
+        functionNode.index = functions.size();
+        functions.put(functionNode.name, functionNode);
+        Map<String, Integer> outerSlots = slots;
+        Set<String> outerArrays = arrays;
+        List<String> outerLoops = loops;
+        slots = new HashMap<>();
+        arrays = new HashSet<>();
+        loops = new ArrayList<>();
+        function = functionNode;
+        boolean resolved = false;
+        try {
+            for (String parameter : functionNode.parameters) {
+                if (slots.containsKey(parameter)) {
+                    throw new RuntimeException("Duplicate parameter in function " + functionNode.name + ": " + parameter);
+                }
+                declare(parameter, false);
+            }
+            resolveAll(functionNode.body);
+            functionNode.slotCount = slots.size();
+            functionNode.declaresArrays = !arrays.isEmpty();
+            resolved = true;
+        } finally {
+            // A function whose body has errors is not declared.
+            if (!resolved) {
+                functions.remove(functionNode.name);
+            }
+            slots = outerSlots;
+            arrays = outerArrays;
+            loops = outerLoops;
+            function = null;
+        }
+    }
+
+    // Finds the loop targeted by a 'break' or 'continue'.
+    // @param keyword The statement, for error messages.
+    // @param label The label of the target loop, or null for the innermost loop.
+    // @return The number of loops between the statement and its target.
+    private int loopDepth(String keyword, String label) {
+        if (loops.isEmpty()) {
+            throw new RuntimeException("'" + keyword + "' outside of a loop");
+        }
+        if (label == null) {
+            return 0;
+        }
+        for (int i = loops.size() - 1; i >= 0; i--) {
+            if (label.equals(loops.get(i))) {
+                return loops.size() - 1 - i;
+            }
+        }
+        throw new RuntimeException("Unknown loop label in '" + keyword + "': " + label);
+    }
+
+    // Resolves each statement in a block.
+    // @param statements The statements to resolve.
+    private void resolveAll(List<Node> statements) {
+        for (Node statement : statements) {
+            resolve(statement);
+        }
+    }
+
+    // Declares a variable or array, or re-declares it as the same kind.
+    // @param name The name.
+    // @param array Whether it is an array.
+    // @return The slot index.
+    private int declare(String name, boolean array) {
+        if (slots.containsKey(name) && arrays.contains(name) != array) {
+            throw new RuntimeException((array ? "Variable" : "Array") + " re-declared as "
+                    + (array ? "an array" : "a variable") + ": " + name);
+        }
+        if (array) {
+            arrays.add(name);
+        }
+        return slots.computeIfAbsent(name, key -> slots.size());
+    }
+
+    // Looks up the slot index of a declared variable.
+    // @param name The name of the variable.
+    // @return The slot index of the variable.
+    private int lookup(String name) {
+        Integer slot = slots.get(name);
+        if (slot == null) {
+            throw new RuntimeException("Variable not declared: " + name);
+        }
+        if (arrays.contains(name)) {
+            throw new RuntimeException("Array used without an index: " + name);
+        }
+        return slot;
+    }
+
+    // Looks up the slot index of a declared array.
+    // @param name The name of the array.
+    // @return The slot index of the array.
+    private int lookupArray(String name) {
+        Integer slot = slots.get(name);
+        if (slot == null) {
+            throw new RuntimeException("Array not declared: " + name);
+        }
+        if (!arrays.contains(name)) {
+            throw new RuntimeException("Not an array: " + name);
+        }
+        return slot;
+    }
+
+    // Allocates a slot for a variable introduced by an optimization rather than by the program.
+    // Its name, '$' and the slot index, cannot be written in a program, so it never clashes with a
+    // program variable.
+    // @return The slot index of the new variable.
+    public int temporary() {
+        int slot = slots.size();
+        slots.put("$" + slot, slot);
+        return slot;
+    }
+
+    // Returns the number of slots needed to hold every top-level variable resolved so far.
+    public int slotCount() {
+        return slots.size();
+    }
+}
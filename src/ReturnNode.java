@@ -0,0 +1,30 @@
+// Represents a 'return' statement in the Abstract Syntax Tree (AST), e.g. 'return a + b'. A
+// 'return' without a value returns 0, as does a function that ends without one.
+// A 'return' whose value is a call to a function that is not pure is a tail call: the Interpreter
+// runs the called function in the frame of the returning one instead of nesting the call, so
+// tail-recursive functions run in constant stack.
+class ReturnNode extends Node {
+    // The AST node representing the value returned.
+    public Node value;
+
+    // Constructor for creating a ReturnNode.
+    // @param value The value expression node.
+    public ReturnNode(Node value) {
+        this.value = adopt(value);
+    }
+
+    // Only the tree-walking Interpreter supports functions.
+    @Override
+    int execute(int[] frame) {
+        throw FunctionNode.unsupported("specializing");
+    }
+
+    @Override
+    void replaceChild(Node oldChild, Node newChild) {
+        if (value == oldChild) {
+            value = newChild;
+        } else {
+            super.replaceChild(oldChild, newChild);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Runs script files, such as the programs in examples/. Each script is memory-mapped and lexed
+// straight from the mapped bytes, so even large scripts are never copied onto the heap. Whole
+// scripts are rewritten by the Optimizer and the LoopOptimizer before they run, and engines that
+// execute the AST nodes themselves run them with common shapes fused by the Fuser. Large scripts
+// are parsed in sections on several threads by the ParallelParser.
+// Usage: java ScriptRunner [--count-nodes] [--profile[=<stacks-file>]] [--discard-output] [--cache=<dir>] [mode] <file-or-directory>...
+// A directory runs every *.go file in it, in name order. The optional mode is an ExecutionMode
+// (e.g. "bytecode"); the default is the tree-walking interpreter. The path "-" streams a program
+// from standard input instead, e.g. `generate | java ScriptRunner bytecode -`.
+// --count-nodes makes the tree-walking interpreter report how many AST nodes each script executed
+// and how many of those were covered by fused nodes. --profile makes it report the lines and loops
+// each script spent the most time in (see Profiler); with a file, it also writes the collapsed
+// stacks of all scripts there for a flame graph. --discard-output drops what the scripts
+// print, to time computation alone. Otherwise output is buffered and written to the standard
+// output after each top-level statement. --cache=<dir> keeps the parse of each script in an
+// AstCache in that directory, so unchanged scripts are neither lexed nor parsed again.
+// Every call of a script function nests a few Java calls in the Interpreter, so the scripts run on
+// a thread with a stack of STACK_SIZE, which allows recursion hundreds of thousands of calls deep
+// instead of the few hundred of a default stack. Tail calls do not nest.
+public class ScriptRunner {
+    // The stack size of the thread running the scripts. The memory is reserved up front but only
+    // used as the stack grows.
+    private static final long STACK_SIZE = 1L << 28;
+
+    public static void main(String[] args) throws IOException {
+        Throwable[] failure = new Throwable[1];
+        Thread runner = new Thread(null, () -> {
+            try {
+                runAll(args);
+            } catch (Throwable e) {
+                failure[0] = e;
+            }
+        }, "script-runner", STACK_SIZE);
+        runner.start();
+        try {
+            runner.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (failure[0] instanceof IOException e) {
+            throw e;
+        } else if (failure[0] instanceof RuntimeException e) {
+            throw e;
+        } else if (failure[0] instanceof Error e) {
+            throw e;
+        }
+    }
+
+    // Runs the scripts named by the command line arguments.
+    // @param args The arguments of main.
+    // @throws IOException if a script cannot be read, or the stacks not written.
+    private static void runAll(String[] args) throws IOException {
+        ExecutionMode mode = ExecutionMode.TREE;
+        int first = 0;
+        boolean countNodes = false;
+        boolean profile = false;
+        Path stacks = null;
+        boolean discardOutput = false;
+        AstCache cache = null;
+        for (; first < args.length && args[first].startsWith("--"); first++) {
+            String option = args[first];
+            if (option.equals("--count-nodes")) {
+                countNodes = true;
+            } else if (option.equals("--profile")) {
+                profile = true;
+            } else if (option.startsWith("--profile=")) {
+                profile = true;
+                stacks = Path.of(option.substring("--profile=".length()));
+            } else if (option.equals("--discard-output")) {
+                discardOutput = true;
+            } else if (option.startsWith("--cache=")) {
+                cache = new AstCache(Path.of(option.substring("--cache=".length())), AstCache.DEFAULT_MAX_BYTES);
+            } else {
+                first = args.length; // Unknown option: print the usage
+            }
+        }
+        OutputSink sink = discardOutput ? new DiscardingSink() : ChannelSink.standardOutput();
+        if (args.length > first && isMode(args[first])) {
+            mode = ExecutionMode.valueOf(args[first].toUpperCase());
+            first++;
+        }
+        if (first >= args.length || (countNodes || profile) && mode != ExecutionMode.TREE) {
+            System.err.println("Usage: java ScriptRunner [--count-nodes] [--profile[=<stacks-file>]] [--discard-output] [--cache=<dir>] [mode] <file-or-directory>...");
+            if (countNodes || profile) {
+                System.err.println("--count-nodes and --profile only work with the tree mode.");
+            }
+            System.exit(2);
+        }
+        // The collapsed stacks of all profiled scripts.
+        StringWriter collapsedStacks = new StringWriter();
+        for (int i = first; i < args.length; i++) {
+            if (args[i].equals("-")) {
+                stream(new FileInputStream(FileDescriptor.in).getChannel(), mode, sink);
+                continue;
+            }
+            for (Path script : scripts(Path.of(args[i]))) {
+                Profiler profiler = profile ? new Profiler() : null;
+                run(script, mode, sink, countNodes, profiler, cache);
+                if (profiler != null) {
+                    profiler.writeCollapsedStacks(collapsedStacks, script.getFileName().toString());
+                }
+            }
+        }
+        if (stacks != null) {
+            Files.writeString(stacks, collapsedStacks.toString());
+        }
+    }
+
+    // Returns whether an argument names an execution mode.
+    private static boolean isMode(String argument) {
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            if (mode.name().equalsIgnoreCase(argument)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Returns the scripts a path refers to: the file itself, or the *.go files of a directory.
+    // @param path A script file or a directory of scripts.
+    // @return The scripts, in name order for a directory.
+    static List<Path> scripts(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return List.of(path);
+        }
+        try (Stream<Path> files = Files.list(path)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".go")).sorted().toList();
+        }
+    }
+
+    // Memory-maps a script file as read-only ASCII text.
+    // @param script The script file.
+    // @return A character view of the mapped file.
+    // @throws IOException if the file cannot be read or is larger than 2 GB.
+    static CharSequence map(Path script) throws IOException {
+        try (FileChannel channel = FileChannel.open(script, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Script too large to map: " + script);
+            }
+            // The mapping stays valid after the channel is closed.
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new AsciiCharSequence(buffer);
+        }
+    }
+
+    // Runs one script and reports the time spent lexing, parsing, optimizing and executing it.
+    // Lexing is timed on its own pass over the tokens; the parse pass lexes again as it pulls tokens.
+    // When the parse of the script is cached, the time spent loading it is reported instead.
+    // @param script The script file.
+    // @param mode The execution mode.
+    // @param sink The sink the script prints to.
+    // @param countNodes Whether to count the executed AST nodes; requires the tree mode.
+    // @param profiler The profiler to record the execution into and report, or null; requires the tree mode.
+    // @param cache The cache of parsed scripts, or null.
+    static void run(Path script, ExecutionMode mode, OutputSink sink, boolean countNodes, Profiler profiler,
+            AstCache cache) throws IOException {
+        System.out.println(script);
+        CharSequence source = map(script);
+
+        long start = System.nanoTime();
+        String key = cache != null ? AstCache.key(source) : null;
+        List<Node> statements = cache != null ? cache.load(key) : null;
+        Resolver resolver = new Resolver();
+        // What was read, and how long lexing and parsing took.
+        String input;
+        String parseTimes;
+        if (statements != null) {
+            for (Node statement : statements) {
+                resolver.resolve(statement);
+            }
+            input = "parse from cache";
+            parseTimes = String.format("load %.3f ms", (System.nanoTime() - start) / 1e6);
+        } else {
+            start = System.nanoTime();
+            Lexer lexer = new Lexer(source);
+            int tokens = 0;
+            while (lexer.nextToken() != TokenType.EOF) {
+                tokens++;
+            }
+            long lexed = System.nanoTime();
+
+            List<Node> parsed = new ArrayList<>();
+            ParallelParser.parse(source, statement -> {
+                resolver.resolve(statement);
+                parsed.add(statement);
+            });
+            statements = parsed;
+            input = tokens + " tokens";
+            parseTimes = String.format("lex %.3f ms, lex+parse %.3f ms", (lexed - start) / 1e6, (System.nanoTime() - lexed) / 1e6);
+            if (cache != null) {
+                cache.store(key, statements);
+            }
+        }
+        long parsed = System.nanoTime();
+
+        Optimizer optimizer = new Optimizer();
+        statements = optimizer.optimize(statements);
+        LoopOptimizer loopOptimizer = new LoopOptimizer(resolver, mode == ExecutionMode.JIT, mode.exactArithmetic());
+        statements = loopOptimizer.optimize(statements);
+        Fuser fuser = new Fuser();
+        if (mode.executesNodes()) {
+            statements.replaceAll(fuser::fuse);
+        }
+        long optimized = System.nanoTime();
+
+        ExecutionEngine engine = mode.create(resolver, sink);
+        if (countNodes) {
+            ((Interpreter) engine).countNodes();
+        }
+        if (profiler != null) {
+            ((Interpreter) engine).profile(profiler);
+        }
+        for (Node statement : statements) {
+            engine.execute(statement);
+        }
+        long executed = System.nanoTime();
+
+        System.out.printf("[%d bytes, %s, %d of %d nodes removed by the optimizer] %s, optimize %.3f ms, execute %.3f ms%n",
+                source.length(), input, optimizer.removedNodes(), optimizer.originalNodes(), parseTimes,
+                (optimized - parsed) / 1e6, (executed - optimized) / 1e6);
+        System.out.println("[loops: " + loopOptimizer.summary() + "]");
+        if (mode.executesNodes()) {
+            System.out.printf("[fused: %d nodes replacing %d]%n", fuser.fusedNodes(), fuser.replacedNodes());
+        }
+        if (countNodes) {
+            Interpreter interpreter = (Interpreter) engine;
+            System.out.printf("[executed: %d nodes, %.1f%% in fused nodes]%n", interpreter.executedNodes(),
+                    100.0 * interpreter.fusedNodes() / Math.max(1, interpreter.executedNodes()));
+        }
+        if (profiler != null) {
+            profiler.report(System.out, source, 10);
+        }
+        System.out.println("----------------------");
+    }
+
+    // Runs a program read from a channel, executing each top-level statement as soon as it has
+    // been parsed. The lexer only keeps a window of the input and nothing holds on to a statement
+    // once it has run, so memory depends on the largest statement rather than the program length.
+    // A statement runs once the token after it has been read, since only then is it known to be complete.
+    // @param channel The channel to read the program from.
+    // @param mode The execution mode.
+    // @param sink The sink the program prints to.
+    static void stream(ReadableByteChannel channel, ExecutionMode mode, OutputSink sink) {
+        Parser parser = new Parser(new Lexer(new ChannelInput(channel)));
+        Resolver resolver = new Resolver();
+        ExecutionEngine engine = mode.create(resolver, sink);
+        Fuser fuser = new Fuser();
+        while (!parser.isAtEnd()) {
+            Node statement = parser.parseStatement();
+            resolver.resolve(statement);
+            engine.execute(mode.executesNodes() ? fuser.fuse(statement) : statement);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Runs untrusted scripts side by side on a fixed number of run slots, each script with its own
+// step and wall-clock limit.
+// Every script runs on a virtual thread in a tree-walking Interpreter that takes one step per loop
+// iteration (see StepBudget). A script may only run while it holds one of the slots. When it has
+// taken the steps of its quantum, it gives up its slot at the loop back-edge and queues for the
+// next free one behind the scripts already waiting, so the slots go round-robin. A script of
+// weight w gets quanta w times as long, and so w times the share of a slot.
+// A paused script blocks its virtual thread, which frees the carrier thread, so any number of
+// scripts share the slots. A script is stopped with an error when it takes more than its step
+// limit. A watchdog stops scripts that are still running when their wall-clock limit has passed,
+// measured from when they started: it marks them, and each marked script stops at its next
+// quantum end, or at once if it is waiting for a slot.
+// Usage: java ScriptScheduler [--slots=<n>] [--max-steps=<n>] [--max-millis=<n>] <file-or-directory>...
+public class ScriptScheduler implements AutoCloseable {
+    // The steps of a quantum of weight 1.
+    static final long DEFAULT_QUANTUM = 10_000;
+    // How often the watchdog checks the running scripts, in milliseconds.
+    private static final long WATCHDOG_PERIOD_MILLIS = 10;
+
+    // The run slots; fair, so waiting scripts get them in the order they asked.
+    private final Semaphore slots;
+    // The steps of a quantum of weight 1.
+    private final long quantum;
+    // Runs each script on its own virtual thread.
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    // Checks the wall-clock limits of the running scripts.
+    private final ScheduledExecutorService watchdog;
+    // The scripts that have started and not yet finished.
+    private final Set<Task> running = ConcurrentHashMap.newKeySet();
+
+    // Constructor for creating a ScriptScheduler.
+    // @param slotCount The number of scripts that may run at the same time.
+    // @param quantum The steps of a quantum of weight 1.
+    public ScriptScheduler(int slotCount, long quantum) {
+        this.slots = new Semaphore(slotCount, true);
+        this.quantum = quantum;
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "script-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchdog.scheduleAtFixedRate(this::patrol, WATCHDOG_PERIOD_MILLIS, WATCHDOG_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    // Submits a script to run as soon as it gets a slot.
+    // @param source The source code of the script.
+    // @param weight The share of a slot the script gets relative to weight 1; at least 1.
+    // @param maxSteps The most steps the script may take.
+    // @param maxMillis The most milliseconds the script may run, from when it starts.
+    // @return The result of the script: its output, and the error that stopped it, if any.
+    public Future<BatchRunner.Result> submit(String source, int weight, long maxSteps, long maxMillis) {
+        return executor.submit(() -> new Task(quantum * Math.max(1, weight), maxSteps, maxMillis).run(source));
+    }
+
+    // Stops the watchdog once every submitted script has finished.
+    @Override
+    public void close() {
+        executor.close();
+        watchdog.shutdownNow();
+    }
+
+    // Marks the scripts that are past their wall-clock limit and wakes those waiting for a slot.
+    private void patrol() {
+        long now = System.nanoTime();
+        for (Task task : running) {
+            if (task.stopReason == null && now - task.deadline > 0) {
+                task.stopReason = "Time limit exceeded";
+                task.thread.interrupt();
+            }
+        }
+    }
+
+    // One script, and the budget of its Interpreter.
+    private final class Task implements StepBudget {
+        // The steps of each of its quanta.
+        private final long quantum;
+        private final long maxSteps;
+        // The System.nanoTime by which the script must have finished.
+        private final long deadline;
+        // The virtual thread running the script.
+        private Thread thread;
+        // The steps taken in the quanta that have ended.
+        private long steps = 0;
+        // Whether the script holds a slot.
+        private boolean holding = false;
+        // Why the watchdog stopped the script, or null.
+        private volatile String stopReason;
+
+        Task(long quantum, long maxSteps, long maxMillis) {
+            this.quantum = quantum;
+            this.maxSteps = maxSteps;
+            this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxMillis);
+        }
+
+        private BatchRunner.Result run(String source) {
+            thread = Thread.currentThread();
+            running.add(this);
+            CapturingSink sink = new CapturingSink();
+            try {
+                acquire();
+                BatchRunner.Program program = BatchRunner.prepare(source, ExecutionMode.TREE);
+                // Without the JIT, so that every loop iteration takes a step.
+                Interpreter interpreter = new Interpreter(program.resolver(), sink);
+                interpreter.limitSteps(this, nextQuantum());
+                for (Node statement : program.statements()) {
+                    interpreter.execute(statement);
+                }
+                return new BatchRunner.Result(sink.output(), null);
+            } catch (RuntimeException | StackOverflowError | OutOfMemoryError e) {
+                return new BatchRunner.Result(sink.output(), e);
+            } finally {
+                release();
+                running.remove(this);
+                Thread.interrupted();
+            }
+        }
+
+        // Called at the loop back-edge that ends a quantum: lets the scripts waiting for a slot
+        // run first, then continues.
+        @Override
+        public long endOfQuantum(long taken) {
+            steps += taken;
+            check();
+            release();
+            acquire();
+            return nextQuantum();
+        }
+
+        // Returns the next quantum, cut short so that it ends just past the step limit.
+        private long nextQuantum() {
+            return Math.min(quantum, maxSteps - steps + 1);
+        }
+
+        // Waits for a free slot.
+        // @throws RuntimeException if the watchdog stops the script meanwhile.
+        private void acquire() {
+            try {
+                slots.acquire();
+                holding = true;
+            } catch (InterruptedException e) {
+                check();
+                throw new RuntimeException("Interrupted");
+            }
+            check();
+        }
+
+        private void release() {
+            if (holding) {
+                holding = false;
+                slots.release();
+            }
+        }
+
+        // Stops the script if it went over one of its limits.
+        private void check() {
+            if (stopReason != null) {
+                throw new RuntimeException(stopReason);
+            }
+            if (steps > maxSteps) {
+                throw new RuntimeException("Step limit exceeded: " + maxSteps + " steps");
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int first = 0;
+        int slotCount = Runtime.getRuntime().availableProcessors();
+        long maxSteps = 100_000_000;
+        long maxMillis = 10_000;
+        for (; first < args.length && args[first].startsWith("--"); first++) {
+            String[] option = args[first].split("=", 2);
+            long value = option.length == 2 ? Long.parseLong(option[1]) : -1;
+            switch (option[0]) {
+                case "--slots" -> slotCount = (int) value;
+                case "--max-steps" -> maxSteps = value;
+                case "--max-millis" -> maxMillis = value;
+                default -> first = args.length; // Unknown option: print the usage
+            }
+        }
+        if (first >= args.length) {
+            System.err.println("Usage: java ScriptScheduler [--slots=<n>] [--max-steps=<n>] [--max-millis=<n>] <file-or-directory>...");
+            System.exit(2);
+        }
+        List<Path> scripts = new ArrayList<>();
+        for (int i = first; i < args.length; i++) {
+            scripts.addAll(ScriptRunner.scripts(Path.of(args[i])));
+        }
+        List<Future<BatchRunner.Result>> results = new ArrayList<>();
+        try (ScriptScheduler scheduler = new ScriptScheduler(slotCount, DEFAULT_QUANTUM)) {
+            for (Path script : scripts) {
+                results.add(scheduler.submit(Files.readString(script), 1, maxSteps, maxMillis));
+            }
+            for (int i = 0; i < scripts.size(); i++) {
+                BatchRunner.Result result = results.get(i).get();
+                System.out.println(scripts.get(i));
+                System.out.print(result.output());
+                if (result.error() != null) {
+                    System.out.println("Error: " + result.errorMessage());
+                }
+                System.out.println("----------------------");
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
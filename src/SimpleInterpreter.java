@@ -1,30 +1,20 @@
+import java.util.ArrayList;
 import java.util.List;
 import java.util.function.BiConsumer; // Import BiConsumer
 
 // The main class for the simple interpreter.
 public class SimpleInterpreter {
     public static void main(String[] args) {
-        // Helper function to execute code snippets.
+        // The execution engine can be chosen with the first argument (e.g. "bytecode"); defaults to the tree-walker.
+        ExecutionMode mode = args.length > 0 ? ExecutionMode.valueOf(args[0].toUpperCase()) : ExecutionMode.TREE;
+        // The snippets to run, by name. They run concurrently once all are collected (see BatchRunner).
+        List<String> names = new ArrayList<>();
+        List<String> snippets = new ArrayList<>();
+        // Helper function to collect code snippets.
         // Takes a name for the code snippet and the code itself.
         BiConsumer<String, String> runCode = (name, code) -> { // Change to BiConsumer
-            System.out.println(name);
-            System.out.println("```go"); // Display the code snippet with syntax highlighting (using "go" for example).
-            System.out.println(code);
-            System.out.println("```");
-            // Create a lexer to tokenize the code.
-            Lexer lexer = new Lexer(code);
-            // Tokenize the code.
-            List<Token> tokens = lexer.tokenize();
-            // Create a parser to build the AST.
-            Parser parser = new Parser(tokens);
-            // Create an interpreter to execute the AST.
-            Interpreter interpreter = new Interpreter();
-            // Parse and execute statements until the end of the input.
-            while (parser.currentToken().type != TokenType.EOF) {
-                Node statement = parser.parseStatement();
-                interpreter.execute(statement);
-            }
-            System.out.println("----------------------");
+            names.add(name);
+            snippets.add(code);
         };
         // Example usage of the interpreter with different code snippets.
         runCode.accept("1. Sum of First N Numbers", """
@@ -146,5 +136,19 @@ public class SimpleInterpreter {
                 }
                 print(b)
                 """);
+
+        // Run the snippets, then print each with its output in the order they were added.
+        List<BatchRunner.Result> results = new BatchRunner(mode).run(snippets);
+        for (int i = 0; i < snippets.size(); i++) {
+            System.out.println(names.get(i));
+            System.out.println("```go"); // Display the code snippet with syntax highlighting (using "go" for example).
+            System.out.println(snippets.get(i));
+            System.out.println("```");
+            System.out.print(results.get(i).output());
+            if (results.get(i).error() != null) {
+                System.out.println("Error: " + results.get(i).errorMessage());
+            }
+            System.out.println("----------------------");
+        }
     }
 }
\ No newline at end of file
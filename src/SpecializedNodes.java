@@ -0,0 +1,458 @@
+// The specialized node classes that generic AST nodes replace themselves with on first execution.
+// Each class handles one operator and one operand shape, so the calls from a node to its children
+// stay simple and there is no operator switch left on the hot path.
+// Arithmetic is in ints; a result that does not fit stops the script with an ArithmeticException.
+final class SpecializedNodes {
+    private SpecializedNodes() {
+    }
+
+    // Returns the specialized replacement for a binary operation used as a value.
+    // @param node The generic binary operation.
+    // @return The specialized node; its children are adopted from the generic node.
+    static Node specialize(BinaryOpNode node) {
+        if (node.right instanceof NumberNode constant) {
+            int c = constant.value;
+            return switch (node.operator) {
+                case ADD -> new AddConstantNode(node.left, c);
+                case SUBTRACT -> new SubtractConstantNode(node.left, c);
+                case MULTIPLY -> new MultiplyConstantNode(node.left, c);
+                case DIVIDE -> new DivideConstantNode(node.left, c);
+                case REMAINDER -> new RemainderConstantNode(node.left, c);
+                case LESS_EQUAL -> new LessEqualConstantNode(node.left, c);
+                case GREATER_EQUAL -> new GreaterEqualConstantNode(node.left, c);
+                case LESS -> new LessConstantNode(node.left, c);
+                case GREATER -> new GreaterConstantNode(node.left, c);
+                case EQUAL -> new EqualConstantNode(node.left, c);
+                case NOT_EQUAL -> new NotEqualConstantNode(node.left, c);
+            };
+        }
+        return switch (node.operator) {
+            case ADD -> new AddNode(node.left, node.right);
+            case SUBTRACT -> new SubtractNode(node.left, node.right);
+            case MULTIPLY -> new MultiplyNode(node.left, node.right);
+            case DIVIDE -> new DivideNode(node.left, node.right);
+            case REMAINDER -> new RemainderNode(node.left, node.right);
+            case LESS_EQUAL -> new LessEqualNode(node.left, node.right);
+            case GREATER_EQUAL -> new GreaterEqualNode(node.left, node.right);
+            case LESS -> new LessNode(node.left, node.right);
+            case GREATER -> new GreaterNode(node.left, node.right);
+            case EQUAL -> new EqualNode(node.left, node.right);
+            case NOT_EQUAL -> new NotEqualNode(node.left, node.right);
+        };
+    }
+
+    // Returns the specialized replacement for a binary operation used as a while or if condition.
+    // @param node The generic binary operation; must be a comparison.
+    // @return The specialized comparison node.
+    static Node specializeCondition(BinaryOpNode node) {
+        if (!node.operator.isComparison()) {
+            throw new RuntimeException("Unknown comparison operator: " + node.operator);
+        }
+        return specialize(node);
+    }
+
+    // Returns the specialized replacement for a variable declaration or assignment.
+    // @param slot The frame slot being written.
+    // @param value The expression being stored.
+    // @return An in-place increment for 'x = x + c' and 'x = x - c', otherwise a plain store.
+    //         Subtracting MIN_VALUE cannot be written as adding its negation, which is MIN_VALUE.
+    static Node specializeStore(int slot, Node value) {
+        if (value instanceof BinaryOpNode binOp
+                && binOp.left instanceof VariableNode variable && variable.slot == slot
+                && binOp.right instanceof NumberNode number
+                && (binOp.operator == Operator.ADD
+                    || binOp.operator == Operator.SUBTRACT && number.value != Integer.MIN_VALUE)) {
+            return new IncrementNode(slot, binOp.operator == Operator.ADD ? number.value : -number.value);
+        }
+        return new StoreNode(slot, value);
+    }
+
+    // Stores the value of an expression into a frame slot.
+    static final class StoreNode extends Node {
+        final int slot;
+        Node value;
+
+        StoreNode(int slot, Node value) {
+            this.slot = slot;
+            this.value = adopt(value);
+        }
+
+        @Override
+        int execute(int[] frame) {
+            frame[slot] = value.evaluate(frame);
+            return Completion.NORMAL;
+        }
+
+        @Override
+        void replaceChild(Node oldChild, Node newChild) {
+            if (value == oldChild) {
+                value = newChild;
+            } else {
+                super.replaceChild(oldChild, newChild);
+            }
+        }
+    }
+
+    // Adds a constant to a frame slot in place.
+    static final class IncrementNode extends Node {
+        final int slot;
+        final int delta;
+
+        IncrementNode(int slot, int delta) {
+            this.slot = slot;
+            this.delta = delta;
+        }
+
+        @Override
+        int execute(int[] frame) {
+            frame[slot] = Math.addExact(frame[slot], delta);
+            return Completion.NORMAL;
+        }
+    }
+
+    // Base class of the operators with two expression operands.
+    abstract static class BinaryNode extends Node {
+        Node left;
+        Node right;
+
+        BinaryNode(Node left, Node right) {
+            this.left = adopt(left);
+            this.right = adopt(right);
+        }
+
+        @Override
+        void replaceChild(Node oldChild, Node newChild) {
+            if (left == oldChild) {
+                left = newChild;
+            } else if (right == oldChild) {
+                right = newChild;
+            } else {
+                super.replaceChild(oldChild, newChild);
+            }
+        }
+    }
+
+    // Base class of the operators whose right operand is a constant.
+    abstract static class ConstantRightNode extends Node {
+        Node left;
+        final int constant;
+
+        ConstantRightNode(Node left, int constant) {
+            this.left = adopt(left);
+            this.constant = constant;
+        }
+
+        @Override
+        void replaceChild(Node oldChild, Node newChild) {
+            if (left == oldChild) {
+                left = newChild;
+            } else {
+                super.replaceChild(oldChild, newChild);
+            }
+        }
+    }
+
+    static final class AddNode extends BinaryNode {
+        AddNode(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        int evaluate(int[] frame) {
+            return Math.addExact(left.evaluate(frame), right.evaluate(frame));
+        }
+    }
+
+    static final class AddConstantNode extends ConstantRightNode {
+        AddConstantNode(Node left, int constant) {
+            super(left, constant);
+        }
+
+        @Override
+        int evaluate(int[] frame) {
+            return Math.addExact(left.evaluate(frame), constant);
+        }
+    }
+
+    static final class SubtractNode extends BinaryNode {
+        SubtractNode(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        int evaluate(int[] frame) {
+            return Math.subtractExact(left.evaluate(frame), right.evaluate(frame));
+        }
+    }
+
+    static final class SubtractConstantNode extends ConstantRightNode {
+        SubtractConstantNode(Node left, int constant) {
+            super(left, constant);
+        }
+
+        @Override
+        int evaluate(int[] frame) {
+            return Math.subtractExact(left.evaluate(frame), constant);
+        }
+    }
+
+    static final class MultiplyNode extends BinaryNode {
+        MultiplyNode(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        int evaluate(int[] frame) {
+            return Math.multiplyExact(left.evaluate(frame), right.evaluate(frame));
+        }
+    }
+
+    static final class MultiplyConstantNode extends ConstantRightNode {
+        MultiplyConstantNode(Node left, int constant) {
+            super(left, constant);
+        }
+
+        @Override
+        int evaluate(int[] frame) {
+            return Math.multiplyExact(left.evaluate(frame), constant);
+        }
+    }
+
+    static final class DivideNode extends BinaryNode {
+        DivideNode(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        int evaluate(int[] frame) {
+            return Math.divideExact(left.evaluate(frame), right.evaluate(frame));
+        }
+    }
+
+    static final class DivideConstantNode extends ConstantRightNode {
+        DivideConstantNode(Node left, int constant) {
+            super(left, constant);
+        }
+
+        @Override
+        int evaluate(int[] frame) {
+            return Math.divideExact(left.evaluate(frame), constant);
+        }
+    }
+
+    static final class RemainderNode extends BinaryNode {
+        RemainderNode(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        int evaluate(int[] frame) {
+            return left.evaluate(frame) % right.evaluate(frame);
+        }
+    }
+
+    static final class RemainderConstantNode extends ConstantRightNode {
+        RemainderConstantNode(Node left, int constant) {
+            super(left, constant);
+        }
+
+        @Override
+        int evaluate(int[] frame) {
+            return left.evaluate(frame) % constant;
+        }
+    }
+
+    // Comparisons evaluate directly to a boolean as conditions, and to 1 or 0 as values.
+
+    static final class LessEqualNode extends BinaryNode {
+        LessEqualNode(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        boolean evaluateCondition(int[] frame) {
+            return left.evaluate(frame) <= right.evaluate(frame);
+        }
+
+        @Override
+        int evaluate(int[] frame) {
+            return left.evaluate(frame) <= right.evaluate(frame) ? 1 : 0;
+        }
+    }
+
+    static final class LessEqualConstantNode extends ConstantRightNode {
+        LessEqualConstantNode(Node left, int constant) {
+            super(left, constant);
+        }
+
+        @Override
+        boolean evaluateCondition(int[] frame) {
+            return left.evaluate(frame) <= constant;
+        }
+
+        @Override
+        int evaluate(int[] frame) {
+            return left.evaluate(frame) <= constant ? 1 : 0;
+        }
+    }
+
+    static final class GreaterEqualNode extends BinaryNode {
+        GreaterEqualNode(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        boolean evaluateCondition(int[] frame) {
+            return left.evaluate(frame) >= right.evaluate(frame);
+        }
+
+        @Override
+        int evaluate(int[] frame) {
+            return left.evaluate(frame) >= right.evaluate(frame) ? 1 : 0;
+        }
+    }
+
+    static final class GreaterEqualConstantNode extends ConstantRightNode {
+        GreaterEqualConstantNode(Node left, int constant) {
+            super(left, constant);
+        }
+
+        @Override
+        boolean evaluateCondition(int[] frame) {
+            return left.evaluate(frame) >= constant;
+        }
+
+        @Override
+        int evaluate(int[] frame) {
+            return left.evaluate(frame) >= constant ? 1 : 0;
+        }
+    }
+
+    static final class LessNode extends BinaryNode {
+        LessNode(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        boolean evaluateCondition(int[] frame) {
+            return left.evaluate(frame) < right.evaluate(frame);
+        }
+
+        @Override
+        int evaluate(int[] frame) {
+            return left.evaluate(frame) < right.evaluate(frame) ? 1 : 0;
+        }
+    }
+
+    static final class LessConstantNode extends ConstantRightNode {
+        LessConstantNode(Node left, int constant) {
+            super(left, constant);
+        }
+
+        @Override
+        boolean evaluateCondition(int[] frame) {
+            return left.evaluate(frame) < constant;
+        }
+
+        @Override
+        int evaluate(int[] frame) {
+            return left.evaluate(frame) < constant ? 1 : 0;
+        }
+    }
+
+    static final class GreaterNode extends BinaryNode {
+        GreaterNode(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        boolean evaluateCondition(int[] frame) {
+            return left.evaluate(frame) > right.evaluate(frame);
+        }
+
+        @Override
+        int evaluate(int[] frame) {
+            return left.evaluate(frame) > right.evaluate(frame) ? 1 : 0;
+        }
+    }
+
+    static final class GreaterConstantNode extends ConstantRightNode {
+        GreaterConstantNode(Node left, int constant) {
+            super(left, constant);
+        }
+
+        @Override
+        boolean evaluateCondition(int[] frame) {
+            return left.evaluate(frame) > constant;
+        }
+
+        @Override
+        int evaluate(int[] frame) {
+            return left.evaluate(frame) > constant ? 1 : 0;
+        }
+    }
+
+    static final class EqualNode extends BinaryNode {
+        EqualNode(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        boolean evaluateCondition(int[] frame) {
+            return left.evaluate(frame) == right.evaluate(frame);
+        }
+
+        @Override
+        int evaluate(int[] frame) {
+            return left.evaluate(frame) == right.evaluate(frame) ? 1 : 0;
+        }
+    }
+
+    static final class EqualConstantNode extends ConstantRightNode {
+        EqualConstantNode(Node left, int constant) {
+            super(left, constant);
+        }
+
+        @Override
+        boolean evaluateCondition(int[] frame) {
+            return left.evaluate(frame) == constant;
+        }
+
+        @Override
+        int evaluate(int[] frame) {
+            return left.evaluate(frame) == constant ? 1 : 0;
+        }
+    }
+
+    static final class NotEqualNode extends BinaryNode {
+        NotEqualNode(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        boolean evaluateCondition(int[] frame) {
+            return left.evaluate(frame) != right.evaluate(frame);
+        }
+
+        @Override
+        int evaluate(int[] frame) {
+            return left.evaluate(frame) != right.evaluate(frame) ? 1 : 0;
+        }
+    }
+
+    static final class NotEqualConstantNode extends ConstantRightNode {
+        NotEqualConstantNode(Node left, int constant) {
+            super(left, constant);
+        }
+
+        @Override
+        boolean evaluateCondition(int[] frame) {
+            return left.evaluate(frame) != constant;
+        }
+
+        @Override
+        int evaluate(int[] frame) {
+            return left.evaluate(frame) != constant ? 1 : 0;
+        }
+    }
+}
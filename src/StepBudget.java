@@ -0,0 +1,10 @@
+// Limits how long an Interpreter runs (see Interpreter.limitSteps). The interpreter takes a step
+// at every loop back-edge, and calls the budget each time it has taken the steps of its current
+// quantum. The budget can let it continue, pause it until it may run again, or stop it.
+interface StepBudget {
+    // Called when the interpreter has used up its quantum.
+    // @param steps The steps taken in the quantum that ended.
+    // @return The steps of the next quantum; must be positive.
+    // @throws RuntimeException to stop the script.
+    long endOfQuantum(long steps);
+}
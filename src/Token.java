@@ -3,13 +3,27 @@ class Token {
     TokenType type;
     // The value of the token (e.g., "123", "+", "var").
     String value;
+    // The position of the token in the source: its line and column, both starting at 1, or 0 if unknown.
+    int line;
+    int column;
 
-    // Constructor for creating a Token.
+    // Constructor for creating a Token without a known position.
     // @param type The token type.
     // @param value The token value.
     public Token(TokenType type, String value) {
+        this(type, value, 0, 0);
+    }
+
+    // Constructor for creating a Token.
+    // @param type The token type.
+    // @param value The token value.
+    // @param line The line of the token, starting at 1.
+    // @param column The column of the token's first character, starting at 1.
+    public Token(TokenType type, String value, int line, int column) {
         this.type = type;
         this.value = value;
+        this.line = line;
+        this.column = column;
     }
 
     // Returns a string representation of the token.
@@ -18,6 +32,8 @@ class Token {
         return "Token{" +
                 "type=" + type +
                 ", value='" + value + '\'' +
+                ", line=" + line +
+                ", column=" + column +
                 '}';
     }
 }
\ No newline at end of file
@@ -12,8 +12,14 @@ internal enum class TokenType {
     RPAREN,       // Represents the ')' right parenthesis.
     LBRACE,       // Represents the '{' left brace.
     RBRACE,       // Represents the '}' right brace.
-    KEYWORD,      // Represents language keywords (e.g., 'var', 'while', 'if').
+    LBRACKET,     // Represents the '[' left bracket.
+    RBRACKET,     // Represents the ']' right bracket.
+    COMMA,        // Represents the ',' between arguments and parameters.
+    SEMICOLON,    // Represents the optional ';' statement terminator.
+    KEYWORD,      // Represents language keywords (e.g., 'var', 'while', 'if', 'else', 'func', 'return').
     BREAK,        // Represents the 'break' keyword.
+    CONTINUE,     // Represents the 'continue' keyword.
+    COLON,        // Represents the ':' after a loop label.
     EOF,          // Represents the end of the input.
     LESS_EQUAL,   // Represents the '<=' operator.
     GREATER_EQUAL,// Represents the '>=' operator.
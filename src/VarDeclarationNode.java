@@ -2,14 +2,31 @@
 class VarDeclarationNode extends Node {
     // The name of the variable being declared.
     public final String variableName;
+    // The frame slot assigned to the variable by the Resolver.
+    public int slot = -1;
     // The AST node representing the initial value of the variable.
-    public final Node initializer;
+    public Node initializer;
 
     // Constructor for creating a VarDeclarationNode.
     // @param variableName The name of the variable.
     // @param initializer The initial value expression node.
     public VarDeclarationNode(String variableName, Node initializer) {
         this.variableName = variableName;
-        this.initializer = initializer;
+        this.initializer = adopt(initializer);
+    }
+
+    // On first execution, replace this node with a specialized store.
+    @Override
+    int execute(int[] frame) {
+        return replace(SpecializedNodes.specializeStore(slot, initializer)).execute(frame);
+    }
+
+    @Override
+    void replaceChild(Node oldChild, Node newChild) {
+        if (initializer == oldChild) {
+            initializer = newChild;
+        } else {
+            super.replaceChild(oldChild, newChild);
+        }
     }
 }
\ No newline at end of file
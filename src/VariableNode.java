@@ -2,10 +2,17 @@
 class VariableNode extends Node {
     // The name of the variable.
     public String name;
+    // The frame slot assigned to the variable by the Resolver.
+    public int slot = -1;
 
     // Constructor for creating a VariableNode.
     // @param name The name of the variable.
     public VariableNode(String name) {
         this.name = name;
     }
+
+    @Override
+    int evaluate(int[] frame) {
+        return frame[slot];
+    }
 }
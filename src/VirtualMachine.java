@@ -0,0 +1,87 @@
+import java.util.Arrays;
+
+// The VirtualMachine executes statements compiled to bytecode by the BytecodeCompiler.
+// It is a register machine whose register file starts with the same int[] frame layout as the
+// Interpreter, followed by the constants and temporaries of the running chunk.
+// Arithmetic is in ints; a result that does not fit stops the script with an ArithmeticException.
+class VirtualMachine implements ExecutionEngine {
+    // The compiler used to translate statements to bytecode.
+    private final BytecodeCompiler compiler;
+    // The register file: variable values indexed by the slot assigned by the Resolver, then
+    // the constants and temporaries of the running chunk.
+    private int[] registers = new int[16];
+    // The sink printed values are written to.
+    private final OutputSink sink;
+    // The number of variable registers of the chunks run so far. The registers past them held
+    // constants and temporaries, so they are cleared when later chunks use them for variables.
+    private int variableCount = 0;
+
+    // Constructor for creating a VirtualMachine.
+    // @param resolver The resolver used to resolve the statements passed to execute.
+    // @param sink The sink to print to.
+    public VirtualMachine(Resolver resolver, OutputSink sink) {
+        this.compiler = new BytecodeCompiler(resolver);
+        this.sink = sink;
+    }
+
+    // Compiles and runs a resolved statement.
+    // @param node The statement to execute.
+    @Override
+    public void execute(Node node) {
+        try {
+            run(compiler.compile(node));
+        } finally {
+            sink.flush();
+        }
+    }
+
+    // Runs a compiled chunk to completion.
+    // @param chunk The chunk to run.
+    public void run(Chunk chunk) {
+        if (registers.length < chunk.registerCount) {
+            registers = Arrays.copyOf(registers, Math.max(registers.length * 2, chunk.registerCount));
+        }
+        // A variable resolved since the last chunk starts at 0, as in the other engines, rather than
+        // with a constant or temporary of an earlier chunk.
+        if (chunk.constantBase > variableCount) {
+            Arrays.fill(registers, variableCount, chunk.constantBase, 0);
+            variableCount = chunk.constantBase;
+        }
+        System.arraycopy(chunk.constants, 0, registers, chunk.constantBase, chunk.constants.length);
+        // Keep the hot state in locals so the JIT can hold it in registers.
+        final int[] code = chunk.code;
+        final int[] r = this.registers;
+        int pc = 0;
+        while (true) {
+            switch (code[pc]) {
+                case OpCode.MOVE -> { r[code[pc + 1]] = r[code[pc + 2]]; pc += 3; }
+                case OpCode.ADD -> { r[code[pc + 1]] = Math.addExact(r[code[pc + 2]], r[code[pc + 3]]); pc += 4; }
+                case OpCode.SUB -> { r[code[pc + 1]] = Math.subtractExact(r[code[pc + 2]], r[code[pc + 3]]); pc += 4; }
+                case OpCode.MUL -> { r[code[pc + 1]] = Math.multiplyExact(r[code[pc + 2]], r[code[pc + 3]]); pc += 4; }
+                case OpCode.DIV -> { r[code[pc + 1]] = Math.divideExact(r[code[pc + 2]], r[code[pc + 3]]); pc += 4; }
+                case OpCode.MOD -> { r[code[pc + 1]] = r[code[pc + 2]] % r[code[pc + 3]]; pc += 4; }
+                case OpCode.LT -> { r[code[pc + 1]] = r[code[pc + 2]] < r[code[pc + 3]] ? 1 : 0; pc += 4; }
+                case OpCode.LE -> { r[code[pc + 1]] = r[code[pc + 2]] <= r[code[pc + 3]] ? 1 : 0; pc += 4; }
+                case OpCode.GT -> { r[code[pc + 1]] = r[code[pc + 2]] > r[code[pc + 3]] ? 1 : 0; pc += 4; }
+                case OpCode.GE -> { r[code[pc + 1]] = r[code[pc + 2]] >= r[code[pc + 3]] ? 1 : 0; pc += 4; }
+                case OpCode.EQ -> { r[code[pc + 1]] = r[code[pc + 2]] == r[code[pc + 3]] ? 1 : 0; pc += 4; }
+                case OpCode.NE -> { r[code[pc + 1]] = r[code[pc + 2]] != r[code[pc + 3]] ? 1 : 0; pc += 4; }
+                case OpCode.JUMP -> pc = code[pc + 1];
+                case OpCode.JUMP_IF_LT -> pc = r[code[pc + 1]] < r[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                case OpCode.JUMP_IF_LE -> pc = r[code[pc + 1]] <= r[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                case OpCode.JUMP_IF_GT -> pc = r[code[pc + 1]] > r[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                case OpCode.JUMP_IF_GE -> pc = r[code[pc + 1]] >= r[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                case OpCode.JUMP_IF_EQ -> pc = r[code[pc + 1]] == r[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                case OpCode.JUMP_IF_NE -> pc = r[code[pc + 1]] != r[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                case OpCode.INC -> { r[code[pc + 1]] = Math.addExact(r[code[pc + 1]], code[pc + 2]); pc += 3; }
+                case OpCode.PRINT -> { sink.print(r[code[pc + 1]]); pc += 2; }
+                // Variables occupy the first registers, so a loop can run on the register file as its frame.
+                case OpCode.RUN_LOOP -> { chunk.loops[code[pc + 1]].run(r); pc += 2; }
+                case OpCode.HALT -> {
+                    return;
+                }
+                default -> throw new RuntimeException("Unknown opcode: " + code[pc]);
+            }
+        }
+    }
+}
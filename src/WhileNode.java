@@ -2,16 +2,70 @@ import java.util.List;
 
 // Represents a 'while' loop node in the Abstract Syntax Tree (AST).
 class WhileNode extends Node {
+    // The label naming the loop for 'break' and 'continue' in nested loops, or null.
+    public final String label;
     // The AST node representing the loop condition.
-    public final Node condition;
+    public Node condition;
     // A list of AST nodes representing the statements in the loop body.
     public final List<Node> body;
+    // The number of iterations the Interpreter has run, used to detect hot loops.
+    public int iterations = 0;
+    // The loop compiled to JVM bytecode by the LoopCompiler once it is hot, or computed in closed
+    // form as found by the LoopOptimizer. When set, it runs the rest of the loop instead of the body.
+    public CompiledLoop compiled;
 
-    // Constructor for creating a WhileNode.
+    // Constructor for creating a WhileNode without a label.
     // @param condition The condition node.
     // @param body The list of statements in the loop body.
     public WhileNode(Node condition, List<Node> body) {
-        this.condition = condition;
+        this(null, condition, body);
+    }
+
+    // Constructor for creating a WhileNode.
+    // @param label The label of the loop (e.g., outer: while ...), or null.
+    // @param condition The condition node.
+    // @param body The list of statements in the loop body.
+    public WhileNode(String label, Node condition, List<Node> body) {
+        this.label = label;
+        this.condition = adopt(condition);
         this.body = body;
+        body.forEach(this::adopt);
+    }
+
+    @Override
+    int execute(int[] frame) {
+        if (compiled != null) {
+            compiled.run(frame);
+            return Completion.NORMAL;
+        }
+        // Children may replace themselves while running, so re-read them on every iteration.
+        loop:
+        while (condition.evaluateCondition(frame)) {
+            for (int i = 0; i < body.size(); i++) {
+                int status = body.get(i).execute(frame);
+                if (status != Completion.NORMAL) {
+                    if (status == Completion.BREAK) {
+                        break loop;
+                    }
+                    if (status != Completion.CONTINUE) {
+                        // The 'break' or 'continue' targets an enclosing loop.
+                        return Completion.enclosing(status);
+                    }
+                    continue loop;
+                }
+            }
+        }
+        return Completion.NORMAL;
+    }
+
+    @Override
+    void replaceChild(Node oldChild, Node newChild) {
+        if (condition == oldChild) {
+            condition = newChild;
+        } else if (body.contains(oldChild)) {
+            body.set(body.indexOf(oldChild), newChild);
+        } else {
+            super.replaceChild(oldChild, newChild);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,111 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+// Runs the scripts of examples/ and examples/regressions/ in every execution mode, both as a file
+// (parsed, resolved and optimized whole) and streamed from a channel one statement at a time, as
+// ScriptRunner runs them, and compares the output with that of the tree mode run as a file.
+// A mode may stop early where the tree mode does not, but only with an integer overflow or
+// because it does not support functions or arrays, and only after printing the same lines.
+class ExamplesTest {
+    // The directories of the scripts.
+    private static final List<Path> DIRECTORIES = List.of(Path.of("examples"), Path.of("examples/regressions"));
+    // The scripts that never end in the tree mode, where values grow without limit; they are run
+    // under the ScriptScheduler instead.
+    private static final Set<String> ENDLESS = Set.of("squaring_forever.go");
+
+    // The output of a run: the lines printed, and the message of the error that stopped it, or null.
+    private record Outcome(List<String> lines, String error) {
+    }
+
+    // A way of running a script.
+    private interface Run {
+        void run(Path script, ExecutionMode mode, OutputSink sink) throws IOException;
+    }
+
+    @TestFactory
+    List<DynamicTest> everyModePrintsWhatTheTreeModePrints() throws IOException {
+        List<DynamicTest> tests = new ArrayList<>();
+        for (Path directory : DIRECTORIES) {
+            for (Path script : ScriptRunner.scripts(directory)) {
+                if (ENDLESS.contains(script.getFileName().toString())) {
+                    continue;
+                }
+                for (ExecutionMode mode : ExecutionMode.values()) {
+                    tests.add(dynamicTest(script + " in " + mode + " mode, as a file",
+                            () -> check(script, mode, ExamplesTest::runFile)));
+                    tests.add(dynamicTest(script + " in " + mode + " mode, streamed",
+                            () -> check(script, mode, ExamplesTest::runStream)));
+                }
+            }
+        }
+        return tests;
+    }
+
+    @Test
+    void endlessScriptsStopUnderTheScheduler() throws Exception {
+        try (ScriptScheduler scheduler = new ScriptScheduler(1, ScriptScheduler.DEFAULT_QUANTUM)) {
+            for (String name : ENDLESS) {
+                String source = Files.readString(Path.of("examples/regressions", name));
+                BatchRunner.Result result = scheduler.submit(source, 1, 1_000_000, 60_000).get();
+                assertTrue(result.error() != null && result.errorMessage().startsWith("Integer too large"),
+                        name + " stopped with: " + (result.error() != null ? result.errorMessage() : "no error"));
+            }
+        }
+    }
+
+    // Runs a script in a mode and checks its output against that of the tree mode.
+    // @param script The script file.
+    // @param mode The execution mode.
+    // @param run How to run the script in the mode.
+    private static void check(Path script, ExecutionMode mode, Run run) throws IOException {
+        Outcome expected = outcome(script, ExecutionMode.TREE, ExamplesTest::runFile);
+        assertNull(expected.error(), "the tree mode failed");
+        Outcome actual = outcome(script, mode, run);
+        if (actual.error() == null) {
+            assertEquals(expected.lines(), actual.lines());
+            return;
+        }
+        boolean overflow = !mode.exactArithmetic() && actual.error().equals("integer overflow");
+        boolean unsupported = mode != ExecutionMode.TREE && mode != ExecutionMode.JIT
+                && actual.error().matches("(Functions|Arrays) are only supported in the tree and jit modes.*");
+        assertTrue(overflow || unsupported, "stopped with: " + actual.error());
+        assertEquals(expected.lines().subList(0, Math.min(actual.lines().size(), expected.lines().size())),
+                actual.lines(), "printed before stopping");
+    }
+
+    // Runs a script and captures what it prints and the error that stopped it.
+    private static Outcome outcome(Path script, ExecutionMode mode, Run run) throws IOException {
+        CapturingSink sink = new CapturingSink();
+        try {
+            run.run(script, mode, sink);
+        } catch (RuntimeException e) {
+            return new Outcome(sink.lines(), e.getMessage());
+        }
+        return new Outcome(sink.lines(), null);
+    }
+
+    // Runs a script file as ScriptRunner does.
+    private static void runFile(Path script, ExecutionMode mode, OutputSink sink) throws IOException {
+        ScriptRunner.run(script, mode, sink, false, null, null);
+    }
+
+    // Runs a script as ScriptRunner runs standard input.
+    private static void runStream(Path script, ExecutionMode mode, OutputSink sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(script)) {
+            ScriptRunner.stream(channel, mode, sink);
+        }
+    }
+}